@@ -2,8 +2,10 @@ package hskl.cn.serverless.executor;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class ExecutorServiceApplication {
 
     public static void main(String[] args) {
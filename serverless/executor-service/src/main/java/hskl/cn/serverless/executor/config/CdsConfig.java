@@ -0,0 +1,23 @@
+package hskl.cn.serverless.executor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Settings for per-function AppCDS archives.
+ *
+ * After the first successful execution of a function the executor runs it once
+ * more in a dump container that writes a dynamic CDS archive. The archive is
+ * stored in MinIO next to the JAR and used by later containers of the same JAR
+ * and runtime image.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "cds")
+public class CdsConfig {
+
+    private boolean enabled = true;
+    private int dumpTimeoutSeconds = 60;
+    private String cacheDir = System.getProperty("java.io.tmpdir") + "/cds-archives";
+}
@@ -0,0 +1,21 @@
+package hskl.cn.serverless.executor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Settings for merging identical executions that run at the same time.
+ *
+ * Off by default: with {@code enabled}, an execution of a function with the
+ * same payload as one already in flight waits for that execution and returns
+ * its result instead of invoking the function again, whether or not the
+ * function is deterministic.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "coalescing")
+public class CoalescingConfig {
+
+    private boolean enabled = false;
+}
@@ -8,27 +8,110 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 
 import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 @Data
 @Configuration
 @ConfigurationProperties(prefix = "docker")
 public class DockerConfig {
 
+    /**
+     * Qualifier of the client for attach and wait streams.
+     */
+    public static final String STREAMING_CLIENT = "streamingDockerClient";
+
     private String host = "unix:///var/run/docker.sock";
     private String runtimeImage = "eclipse-temurin:17-jre-alpine";
+    private Map<String, String> runtimeImages = new HashMap<>(Map.of(
+            "java17", "eclipse-temurin:17-jre-alpine",
+            "java21", "eclipse-temurin:21-jre-alpine"));
+
+    /**
+     * Serve function JARs from a named volume per JAR version instead of
+     * copying them into every container (see {@code ContainerFactory}).
+     */
+    private boolean jarVolumes = true;
+
+    /**
+     * Pull the runtime catalog at startup and report the executor ready only
+     * once it is present (see {@code RuntimeImageManager}).
+     */
+    private boolean prePull = true;
+    private long pullTimeoutSeconds = 300;
+    private long pullRetryIntervalMs = 60000;
+
+    /**
+     * How long an image found on the Docker host is assumed to stay there
+     * before it is inspected again (see {@code ContainerFactory}).
+     */
+    private long imageCacheTtlMs = 60000;
+
+    /**
+     * Connections to the Docker daemon, per client. A one-shot execution
+     * holds two streaming connections while its container runs (attach and
+     * wait, see {@code ContainerCompletion}), so on virtual threads this, not
+     * the request threads, bounds concurrent one-shot executions.
+     */
+    private int maxConnections = 100;
+
+    /**
+     * Read timeout of Docker API calls. Attach and wait streams are silent
+     * while a runtime is idle or a container runs, so they go through
+     * {@link #streamingDockerClient()}, which has no read timeout.
+     */
+    private long responseTimeoutSeconds = 45;
+
+    /**
+     * Image for a function's {@code runtime} (e.g. java17, java21); unknown
+     * runtimes use {@code runtimeImage}.
+     */
+    public String imageFor(String runtime) {
+        return runtime != null ? runtimeImages.getOrDefault(runtime, runtimeImage) : runtimeImage;
+    }
+
+    /**
+     * The runtime catalog: every image a function runtime may run on. Entries
+     * may be pinned by digest ({@code image@sha256:...}).
+     */
+    public Set<String> catalog() {
+        Set<String> catalog = new LinkedHashSet<>();
+        catalog.add(runtimeImage);
+        catalog.addAll(new TreeMap<>(runtimeImages).values());
+        return catalog;
+    }
 
     @Bean
+    @Primary
     public DockerClient dockerClient() {
+        return client(Duration.ofSeconds(responseTimeoutSeconds));
+    }
+
+    /**
+     * Client for attach and wait streams: the attachment of a warm runtime
+     * instance or zygote and the wait for a one-shot container or a build
+     * tool container.
+     */
+    @Bean(STREAMING_CLIENT)
+    public DockerClient streamingDockerClient() {
+        return client(null);
+    }
+
+    private DockerClient client(Duration responseTimeout) {
         DefaultDockerClientConfig config = DefaultDockerClientConfig.createDefaultConfigBuilder()
                 .withDockerHost(host)
                 .build();
         ApacheDockerHttpClient httpClient = new ApacheDockerHttpClient.Builder()
                 .dockerHost(config.getDockerHost())
-                .maxConnections(100)
+                .maxConnections(maxConnections)
                 .connectionTimeout(Duration.ofSeconds(30))
-                .responseTimeout(Duration.ofSeconds(45))
+                .responseTimeout(responseTimeout)
                 .build();
         return DockerClientImpl.getInstance(config, httpClient);
     }
@@ -0,0 +1,22 @@
+package hskl.cn.serverless.executor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Settings for reacting to function changes published by the registry.
+ *
+ * With {@code prefetch}, a new JAR is downloaded into the JAR cache as soon as
+ * it is uploaded; with {@code prewarm}, the function's {@code minInstances}
+ * are started right away instead of on the next pool maintenance run.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "function-events")
+public class FunctionEventConfig {
+
+    private boolean enabled = true;
+    private boolean prefetch = true;
+    private boolean prewarm = false;
+}
@@ -0,0 +1,27 @@
+package hskl.cn.serverless.executor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Settings for the baked per-function images.
+ *
+ * With {@code enabled}, each function JAR is baked into an image on its first
+ * execution and later containers start from it without copying JARs in;
+ * otherwise the JARs are copied into every container. {@code maxBytes} is the
+ * disk budget of all per-function images (baked and jlink) on the Docker host.
+ * A failed bake of an image tag is retried after {@code retryAfterFailureMs} at
+ * the earliest.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "function-image")
+public class FunctionImageConfig {
+
+    private boolean enabled = true;
+    private long maxBytes = 10L * 1024 * 1024 * 1024;
+    private long gcIntervalMs = 300000;
+    private int buildTimeoutSeconds = 120;
+    private long retryAfterFailureMs = 3600000;
+}
@@ -0,0 +1,21 @@
+package hskl.cn.serverless.executor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Settings for the in-process backend that runs functions with
+ * {@code isolation=CLASSLOADER} inside the executor JVM.
+ *
+ * With the backend disabled those functions run in Docker like all others.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "in-process")
+public class InProcessConfig {
+
+    private boolean enabled = true;
+    private int threads = 8;
+    private int queueCapacity = 100;
+}
@@ -0,0 +1,32 @@
+package hskl.cn.serverless.executor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Settings for the node-local cache of function JARs.
+ *
+ * The cache directory is cleared on startup; {@code maxBytes} bounds the
+ * total size of cached JARs that are not in use.
+ *
+ * JARs of at least {@code parallelThresholdBytes} are downloaded from MinIO
+ * with up to {@code downloadThreads} concurrent ranged GETs of at least
+ * {@code minPartBytes} each; {@code downloadThreads = 1} always streams the
+ * JAR in one request.
+ *
+ * Up to {@code fetchThreads} JARs are downloaded in the background while the
+ * containers of executions are created; cached JARs need no fetch thread.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "jar-cache")
+public class JarCacheConfig {
+
+    private String directory = System.getProperty("java.io.tmpdir") + "/executor-jar-cache";
+    private long maxBytes = 1024L * 1024 * 1024;
+    private int downloadThreads = 4;
+    private int fetchThreads = 16;
+    private long parallelThresholdBytes = 16L * 1024 * 1024;
+    private long minPartBytes = 4L * 1024 * 1024;
+}
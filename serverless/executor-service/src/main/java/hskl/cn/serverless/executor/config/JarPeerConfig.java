@@ -0,0 +1,25 @@
+package hskl.cn.serverless.executor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Settings for fetching function JARs from other executor replicas.
+ *
+ * {@code advertisedUrl} is the base URL under which peers reach this executor;
+ * if empty, it is derived from the host address and the server port. Peers that
+ * have not announced themselves for {@code peerTtlMs} are forgotten.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "jar-peers")
+public class JarPeerConfig {
+
+    private boolean enabled = true;
+    private String advertisedUrl = "";
+    private long announceIntervalMs = 30000;
+    private long peerTtlMs = 90000;
+    private long timeoutMs = 10000;
+    private int maxAttempts = 2;
+}
@@ -0,0 +1,36 @@
+package hskl.cn.serverless.executor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Settings for the per-function runtime images built with jdeps and jlink.
+ *
+ * {@code jdkImages} are the full JDK images that run jdeps/jlink per runtime;
+ * the linked runtime is copied onto {@code baseImage}, which must use the same
+ * C library (musl for the alpine JDKs). {@code extraModules} are always linked
+ * because jdeps cannot see modules that are only used reflectively, such as
+ * {@code jdk.unsupported} for Gson's use of {@code sun.misc.Unsafe}. A failed
+ * build of a JAR version is retried after {@code retryAfterFailureMs} at the
+ * earliest.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "jlink")
+public class JlinkConfig {
+
+    private boolean enabled = true;
+    private String baseImage = "alpine:3.19";
+    private Map<String, String> jdkImages = new HashMap<>(Map.of(
+            "java17", "eclipse-temurin:17-jdk-alpine",
+            "java21", "eclipse-temurin:21-jdk-alpine"));
+    private List<String> extraModules = new ArrayList<>(List.of("jdk.unsupported"));
+    private int buildTimeoutSeconds = 300;
+    private long retryAfterFailureMs = 3600000;
+}
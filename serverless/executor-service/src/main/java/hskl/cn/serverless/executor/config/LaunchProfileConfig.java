@@ -0,0 +1,24 @@
+package hskl.cn.serverless.executor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Settings for the JVM launch profiles of function containers.
+ *
+ * The heap is sized to {@code heapPercent} of the function's {@code memoryMb};
+ * the rest is left for metaspace, code cache and thread stacks. Functions with
+ * {@code launchProfile=AUTO} run with the throughput profile once the moving
+ * average of their execution time reaches {@code autoThroughputThresholdMs}.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "launch-profile")
+public class LaunchProfileConfig {
+
+    private int heapPercent = 75;
+    private int shortLivedStackSizeKb = 512;
+    private long autoThroughputThresholdMs = 1000;
+    private double autoSmoothing = 0.2;
+}
@@ -0,0 +1,32 @@
+package hskl.cn.serverless.executor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Settings for the per-function pools of runtime instances.
+ *
+ * Pool sizes come from the registry ({@code minInstances}/{@code maxInstances});
+ * these properties only control how the executor maintains the pools. With the
+ * pool disabled every execution runs in a one-shot container.
+ *
+ * Zygotes are generic, already booted runtime containers kept per runtime
+ * (java17, java21, ...). A cold start of a function takes a zygote and loads
+ * the function into it instead of booting a new JVM. Zygotes are created with
+ * {@code zygoteMemoryMb} and the throughput launch profile and only used for
+ * functions with exactly that memory size and profile.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "pool")
+public class PoolConfig {
+
+    private boolean enabled = true;
+    private int refillThreads = 2;
+    private long maintenanceIntervalMs = 30000;
+    private long startupTimeoutMs = 30000;
+    private long idleTimeoutMs = 300000;
+    private int zygotesPerRuntime = 1;
+    private int zygoteMemoryMb = 256;
+}
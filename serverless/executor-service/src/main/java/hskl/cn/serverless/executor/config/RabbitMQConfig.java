@@ -17,6 +17,8 @@ public class RabbitMQConfig {
     public static final String EXECUTION_ROUTING_KEY = "function.execute";
     public static final String RESULT_QUEUE = "function.result";
     public static final String RESULT_ROUTING_KEY = "function.result";
+    public static final String JAR_PEERS_EXCHANGE = "jar.peers";
+    public static final String FUNCTION_EVENTS_EXCHANGE = "function.events";
 
     @Bean
     public Queue executionQueue() {
@@ -51,6 +53,44 @@ public class RabbitMQConfig {
         return BindingBuilder.bind(resultQueue).to(executionExchange).with(RESULT_ROUTING_KEY);
     }
 
+    @Bean
+    public FanoutExchange jarPeersExchange() {
+        return new FanoutExchange(JAR_PEERS_EXCHANGE);
+    }
+
+    /**
+     * Per-replica queue for JAR announcements of the other executors.
+     */
+    @Bean
+    public Queue jarPeersQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding jarPeersBinding(@Qualifier("jarPeersQueue") Queue jarPeersQueue,
+                                   @Qualifier("jarPeersExchange") FanoutExchange jarPeersExchange) {
+        return BindingBuilder.bind(jarPeersQueue).to(jarPeersExchange);
+    }
+
+    @Bean
+    public FanoutExchange functionEventsExchange() {
+        return new FanoutExchange(FUNCTION_EVENTS_EXCHANGE);
+    }
+
+    /**
+     * Per-replica queue for the registry's function change events.
+     */
+    @Bean
+    public Queue functionEventsQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding functionEventsBinding(@Qualifier("functionEventsQueue") Queue functionEventsQueue,
+                                         @Qualifier("functionEventsExchange") FanoutExchange functionEventsExchange) {
+        return BindingBuilder.bind(functionEventsQueue).to(functionEventsExchange);
+    }
+
     @Bean
     public MessageConverter jsonMessageConverter() {
         return new Jackson2JsonMessageConverter();
@@ -0,0 +1,28 @@
+package hskl.cn.serverless.executor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Settings for the in-process cache of function metadata read from the registry.
+ *
+ * Entries younger than {@code refreshAfterMs} are served as they are; older
+ * entries are still served while they are refreshed in the background, up to
+ * {@code expireAfterMs}. If the registry cannot be reached, entries up to
+ * {@code staleIfErrorMs} old are served instead of failing the execution.
+ * Unknown functions are remembered for {@code notFoundTtlMs}.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "registry-cache")
+public class RegistryCacheConfig {
+
+    private boolean enabled = true;
+    private int maxEntries = 1000;
+    private long refreshAfterMs = 5000;
+    private long expireAfterMs = 60000;
+    private long staleIfErrorMs = 600000;
+    private long notFoundTtlMs = 2000;
+    private int refreshThreads = 2;
+}
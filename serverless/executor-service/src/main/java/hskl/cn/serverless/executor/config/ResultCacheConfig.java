@@ -0,0 +1,23 @@
+package hskl.cn.serverless.executor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Settings for caching results of functions flagged as deterministic.
+ *
+ * Successful results are kept for {@code ttlMs}; {@code maxBytes} bounds the
+ * estimated memory of all cached results, and results larger than
+ * {@code maxResultBytes} are not cached at all.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "result-cache")
+public class ResultCacheConfig {
+
+    private boolean enabled = true;
+    private long ttlMs = 300000;
+    private long maxBytes = 64L * 1024 * 1024;
+    private long maxResultBytes = 1024L * 1024;
+}
@@ -17,4 +17,9 @@ public class WebClientConfig {
                 .baseUrl(registryServiceUrl)
                 .build();
     }
+
+    @Bean
+    public WebClient peerWebClient() {
+        return WebClient.builder().build();
+    }
 }
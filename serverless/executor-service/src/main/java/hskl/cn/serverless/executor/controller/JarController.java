@@ -0,0 +1,64 @@
+package hskl.cn.serverless.executor.controller;
+
+import hskl.cn.serverless.executor.service.JarCache;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/api/v1/jars")
+@RequiredArgsConstructor
+@Tag(name = "JAR Cache", description = "Interne API, über die sich Executor-Replikas gecachte JARs teilen")
+public class JarController {
+
+    private final JarCache jarCache;
+
+    @Operation(summary = "Gecachtes JAR abrufen",
+               description = "Liefert ein JAR aus dem lokalen Cache des Executors. Wird von anderen Executor-Replikas vor dem Download aus MinIO abgefragt.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "JAR gefunden"),
+            @ApiResponse(responseCode = "404", description = "JAR ist nicht im Cache")
+    })
+    @GetMapping("/{sha256}")
+    public ResponseEntity<StreamingResponseBody> getJar(
+            @Parameter(description = "SHA-256 des JARs", example = "3f2a9c1b7d4e...")
+            @PathVariable String sha256) throws Exception {
+        Optional<Path> jarFile = jarCache.acquireCached(sha256);
+        if (jarFile.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        Path file = jarFile.get();
+        long size;
+        try {
+            size = Files.size(file);
+        } catch (Exception e) {
+            jarCache.release(file);
+            throw e;
+        }
+        StreamingResponseBody body = out -> {
+            try {
+                Files.copy(file, out);
+            } finally {
+                jarCache.release(file);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .contentLength(size)
+                .body(body);
+    }
+}
@@ -47,6 +47,14 @@ public class ExecutionResponse {
             example = "2026-01-23T21:48:03")
     private LocalDateTime completedAt;
 
+    @Schema(description = "Ergebnis stammt aus dem Result-Cache (deterministische Function, gleicher Payload)", 
+            example = "false")
+    private boolean cached;
+
+    @Schema(description = "Ergebnis einer gleichzeitig laufenden, identischen Ausführung (gleiche Function, gleicher Payload)", 
+            example = "false")
+    private boolean coalesced;
+
     @Schema(description = "Mögliche Status einer Function-Ausführung")
     public enum ExecutionStatus {
         @Schema(description = "Ausführung wartet")
@@ -0,0 +1,30 @@
+package hskl.cn.serverless.executor.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * Change of a function, published by the registry after it committed.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FunctionEvent {
+
+    private Type type;
+    private UUID functionId;
+    private String functionName;
+    private String jarPath;
+    private String jarHash;
+    private String status;
+    private long timestamp;
+
+    public enum Type {
+        CREATED, UPDATED, JAR_UPLOADED, STATUS_CHANGED, DELETED
+    }
+}
@@ -5,6 +5,12 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.UUID;
 
 @Data
@@ -18,7 +24,47 @@ public class FunctionInfo {
     private String runtime;
     private String handler;
     private String jarPath;
+    private String jarHash;
     private String status;
     private Integer timeoutSeconds;
     private Integer memoryMb;
+    private Integer minInstances;
+    private Integer maxInstances;
+    private String isolation;
+    private Integer concurrency;
+    private String launchProfile;
+    private Boolean deterministic;
+    private String runtimeImage;
+    @Builder.Default
+    private List<LayerInfo> layers = new ArrayList<>();
+
+    /**
+     * Version of everything on the function's classpath: the JAR hash, or a
+     * hash over the JAR hash and the layer hashes if the function uses layers.
+     * Falls back to the JAR path for functions without a hash.
+     */
+    public String version() {
+        if (jarHash == null || layers == null || layers.isEmpty()) {
+            return jarHash != null ? jarHash : jarPath;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(jarHash.getBytes(StandardCharsets.UTF_8));
+            for (LayerInfo layer : layers) {
+                digest.update(("\n" + layer.getName() + "@" + layer.getJarHash()).getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Version of a running instance of the function: {@link #version()} plus
+     * the settings an instance is started with. Warm instances and loaded
+     * class loaders of another instance version are retired.
+     */
+    public String instanceVersion() {
+        return version() + ";" + handler + ";" + runtime + ";" + runtimeImage + ";" + memoryMb + ";" + launchProfile;
+    }
 }
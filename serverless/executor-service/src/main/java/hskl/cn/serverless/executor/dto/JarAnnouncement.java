@@ -0,0 +1,25 @@
+package hskl.cn.serverless.executor.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Message an executor broadcasts to its peers with the SHA-256 hashes of the
+ * JARs in its local cache.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class JarAnnouncement {
+
+    private String nodeId;
+    private String url;
+    @Builder.Default
+    private List<String> hashes = new ArrayList<>();
+}
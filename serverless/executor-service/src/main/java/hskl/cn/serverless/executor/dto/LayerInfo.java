@@ -0,0 +1,17 @@
+package hskl.cn.serverless.executor.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LayerInfo {
+
+    private String name;
+    private String jarPath;
+    private String jarHash;
+}
@@ -0,0 +1,221 @@
+package hskl.cn.serverless.executor.service;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.command.WaitContainerResultCallback;
+import hskl.cn.serverless.executor.config.CdsConfig;
+import hskl.cn.serverless.executor.config.DockerConfig;
+import hskl.cn.serverless.executor.dto.FunctionInfo;
+import io.minio.GetObjectArgs;
+import io.minio.MinioClient;
+import io.minio.UploadObjectArgs;
+import io.minio.errors.ErrorResponseException;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provides per-function AppCDS archives.
+ *
+ * After the first successful execution of a function JAR, the same payload is
+ * replayed once in a separate dump container that writes a dynamic CDS archive
+ * of every class the JVM loaded (Gson, the function classes, the runtime). The
+ * archive is uploaded to MinIO next to the JAR, under
+ * {@code <jar dir>/cds/<jar hash>-<runtime image>.jsa}, and cached locally.
+ * Later containers of the same JAR map the classes from the archive instead of
+ * loading them.
+ *
+ * An archive only fits the JDK that wrote it, so it is keyed by the runtime
+ * image; if it still does not match (e.g. the image tag was rebuilt) the JVM
+ * ignores it because containers are started with {@code -Xshare:auto}. An
+ * archive that a runtime instance failed to start with is discarded (see
+ * {@link #discard}) and dumped again.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CdsArchiveService {
+
+    private final ContainerFactory containerFactory;
+    private final JarCache jarCache;
+    private final DockerClient dockerClient;
+    @Qualifier(DockerConfig.STREAMING_CLIENT)
+    private final DockerClient streamingDockerClient;
+    private final MinioClient minioClient;
+    private final CdsConfig cdsConfig;
+
+    @Value("${minio.bucket:functions}")
+    private String minioBucket;
+
+    private final Set<String> missing = ConcurrentHashMap.newKeySet();
+    private final Set<String> dumping = ConcurrentHashMap.newKeySet();
+    private final ExecutorService dumpExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "cds-dump");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Returns the local copy of the function's archive, downloading it from
+     * MinIO on first use.
+     *
+     * @return empty if CDS is disabled or no archive has been dumped yet
+     */
+    public Optional<Path> archiveFor(FunctionInfo function) {
+        if (!cdsConfig.isEnabled() || function.getJarHash() == null || function.getJarPath() == null) {
+            return Optional.empty();
+        }
+        String objectKey = objectKey(function);
+        Path local = localPath(objectKey);
+        if (Files.exists(local)) {
+            return Optional.of(local);
+        }
+        if (missing.contains(objectKey)) {
+            return Optional.empty();
+        }
+        try (InputStream is = minioClient.getObject(
+                GetObjectArgs.builder()
+                        .bucket(minioBucket)
+                        .object(objectKey)
+                        .build())) {
+            Files.createDirectories(local.getParent());
+            Path download = Files.createTempFile(local.getParent(), "cds", ".part");
+            Files.copy(is, download, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(download, local, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Downloaded CDS archive {} for function {}", objectKey, function.getName());
+            return Optional.of(local);
+        } catch (ErrorResponseException e) {
+            missing.add(objectKey);
+            return Optional.empty();
+        } catch (Exception e) {
+            log.warn("Could not download CDS archive {}: {}", objectKey, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Called after a runtime instance failed to start with the function's
+     * archive. Deletes the local copy and treats the archive as missing, so
+     * later starts go without it and the next successful execution dumps a
+     * new one, which replaces the archive in MinIO.
+     */
+    public void discard(FunctionInfo function) {
+        if (function.getJarHash() == null || function.getJarPath() == null) {
+            return;
+        }
+        String objectKey = objectKey(function);
+        missing.add(objectKey);
+        try {
+            Files.deleteIfExists(localPath(objectKey));
+            log.warn("Discarded CDS archive {} of function {}", objectKey, function.getName());
+        } catch (Exception e) {
+            log.warn("Could not delete CDS archive {}: {}", objectKey, e.getMessage());
+        }
+    }
+
+    /**
+     * Called after a successful execution; dumps an archive in the background
+     * if the function JAR has none yet.
+     */
+    public void onSuccess(FunctionInfo function, String payloadJson) {
+        if (!cdsConfig.isEnabled() || function.getJarHash() == null || function.getJarPath() == null) {
+            return;
+        }
+        String objectKey = objectKey(function);
+        if (!missing.contains(objectKey) || !dumping.add(objectKey)) {
+            return;
+        }
+        try {
+            dumpExecutor.execute(() -> {
+                try {
+                    dump(function, payloadJson, objectKey);
+                } catch (Exception e) {
+                    log.warn("Could not dump CDS archive for function {}: {}", function.getName(), e.getMessage());
+                } finally {
+                    dumping.remove(objectKey);
+                }
+            });
+        } catch (Exception e) {
+            dumping.remove(objectKey);
+        }
+    }
+
+    private void dump(FunctionInfo function, String payloadJson, String objectKey) throws Exception {
+        Path jarFile = jarCache.acquire(function);
+        String containerId = null;
+        try {
+            containerId = containerFactory.createCdsDumpContainer(function, jarFile,
+                    "fn-cds-" + UUID.randomUUID().toString().substring(0, 8));
+            containerFactory.copyPayloadToContainer(containerId, payloadJson);
+            dockerClient.startContainerCmd(containerId).exec();
+            Integer exitCode = streamingDockerClient.waitContainerCmd(containerId)
+                    .exec(new WaitContainerResultCallback())
+                    .awaitStatusCode(cdsConfig.getDumpTimeoutSeconds(), TimeUnit.SECONDS);
+            if (exitCode == null || exitCode != 0) {
+                log.warn("CDS dump of function {} exited with {}", function.getName(), exitCode);
+                return;
+            }
+
+            Path local = localPath(objectKey);
+            Files.createDirectories(local.getParent());
+            Path archive = Files.createTempFile(local.getParent(), "cds", ".part");
+            try {
+                if (!containerFactory.copyFileFromContainer(containerId, ContainerFactory.CDS_ARCHIVE_PATH, archive)) {
+                    log.warn("CDS dump of function {} wrote no archive", function.getName());
+                    return;
+                }
+                minioClient.uploadObject(
+                        UploadObjectArgs.builder()
+                                .bucket(minioBucket)
+                                .object(objectKey)
+                                .filename(archive.toString())
+                                .build());
+                Files.move(archive, local, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(archive);
+            }
+            missing.remove(objectKey);
+            log.info("Stored CDS archive {} for function {}", objectKey, function.getName());
+        } finally {
+            if (containerId != null) {
+                containerFactory.removeContainer(containerId);
+            }
+            jarCache.release(jarFile);
+        }
+    }
+
+    /**
+     * Object key of the archive: next to the JAR, by function version (JAR and
+     * layers) and runtime image.
+     */
+    String objectKey(FunctionInfo function) {
+        String jarPath = function.getJarPath();
+        String dir = jarPath.contains("/") ? jarPath.substring(0, jarPath.lastIndexOf('/') + 1) : "";
+        String image = containerFactory.imageFor(function).replaceAll("[^A-Za-z0-9._-]", "_");
+        return dir + "cds/" + function.version() + "-" + image + ".jsa";
+    }
+
+    private Path localPath(String objectKey) {
+        return Paths.get(cdsConfig.getCacheDir(), objectKey.replace('/', '_'));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dumpExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,132 @@
+package hskl.cn.serverless.executor.service;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.model.Frame;
+import com.github.dockerjava.api.model.StreamType;
+import com.github.dockerjava.api.model.WaitResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Tracks a one-shot container until it exits.
+ *
+ * The executor attaches to the created container before it starts, so stdout
+ * and stderr are collected from the first byte, and waits for the started
+ * container with {@code waitContainerCmd}, which answers with the exit code as
+ * soon as the container exits. The container is complete once its exit code is
+ * known and the attach stream has ended, without inspecting it afterwards.
+ * Both streams are read on docker-java's threads; the execution only waits in
+ * {@link #await}.
+ */
+@Slf4j
+public class ContainerCompletion implements Closeable {
+
+    private final String containerId;
+    private final StringBuilder stdout = new StringBuilder();
+    private final StringBuilder stderr = new StringBuilder();
+    private final CompletableFuture<Void> outputRead = new CompletableFuture<>();
+    private final CompletableFuture<Integer> exitCode = new CompletableFuture<>();
+
+    private Closeable attachment;
+    private Closeable wait;
+
+    public ContainerCompletion(String containerId) {
+        this.containerId = containerId;
+    }
+
+    /**
+     * Attaches to the (created, not yet started) container. Must be called
+     * before the container starts so no output is missed.
+     */
+    public void attach(DockerClient dockerClient) throws InterruptedException {
+        ResultCallback.Adapter<Frame> callback = new ResultCallback.Adapter<>() {
+            @Override
+            public void onNext(Frame frame) {
+                String text = new String(frame.getPayload(), StandardCharsets.UTF_8);
+                (frame.getStreamType() == StreamType.STDERR ? stderr : stdout).append(text);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                log.error("Error reading output of container {}", containerId, throwable);
+                outputRead.complete(null);
+            }
+
+            @Override
+            public void onComplete() {
+                outputRead.complete(null);
+            }
+        };
+        attachment = dockerClient.attachContainerCmd(containerId)
+                .withStdOut(true)
+                .withStdErr(true)
+                .withFollowStream(true)
+                .exec(callback);
+        callback.awaitStarted();
+    }
+
+    /**
+     * Waits for the started container to exit in the background.
+     */
+    public void watch(DockerClient dockerClient) {
+        wait = dockerClient.waitContainerCmd(containerId).exec(new ResultCallback.Adapter<WaitResponse>() {
+            @Override
+            public void onNext(WaitResponse response) {
+                exitCode.complete(response.getStatusCode());
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                exitCode.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                exitCode.complete(null);
+            }
+        });
+    }
+
+    /**
+     * Waits until the container exited and its output was read.
+     *
+     * @return the exit code, null if Docker did not report one
+     * @throws TimeoutException if the container did not exit within the timeout
+     */
+    public Integer await(long timeout, TimeUnit unit) throws Exception {
+        try {
+            return exitCode.thenCombine(outputRead, (code, read) -> code).get(timeout, unit);
+        } catch (java.util.concurrent.ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    public String stdout() {
+        return stdout.toString();
+    }
+
+    public String stderr() {
+        return stderr.toString();
+    }
+
+    @Override
+    public void close() {
+        closeQuietly(attachment);
+        closeQuietly(wait);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {}
+        }
+    }
+}
@@ -0,0 +1,684 @@
+package hskl.cn.serverless.executor.service;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.command.CreateContainerCmd;
+import com.github.dockerjava.api.command.CreateContainerResponse;
+import com.github.dockerjava.api.exception.NotFoundException;
+import com.github.dockerjava.api.model.AccessMode;
+import com.github.dockerjava.api.model.Bind;
+import com.github.dockerjava.api.model.HostConfig;
+import com.github.dockerjava.api.model.Volume;
+import hskl.cn.serverless.executor.config.DockerConfig;
+import hskl.cn.serverless.executor.config.FunctionImageConfig;
+import hskl.cn.serverless.executor.dto.FunctionInfo;
+import hskl.cn.serverless.executor.dto.LayerInfo;
+import hskl.cn.serverless.runtime.FunctionLauncher;
+import hskl.cn.serverless.runtime.FunctionRuntime;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates function containers and manages the files inside them.
+ *
+ * Bind mounts break in Docker-in-Docker, so JARs reach the container in one of
+ * three ways, in order of preference: baked into the function's image (see
+ * {@link FunctionImageService}), on a named volume that holds the JARs of one
+ * function version and is mounted read-only at {@code /app} (named volumes
+ * live inside the daemon, so they work with the {@code dind} sidecar), or
+ * copied in through Docker's copy-to-container API. Layer JARs (shared
+ * libraries, see {@link #layerPath}) travel the same way as the function JAR.
+ * Files that differ per container (payload, CDS archive) live in {@code /tmp}.
+ *
+ * Two kinds of containers exist: one-shot containers invoke the handler once
+ * with the payload copied in as a file, and runtime containers run the long-lived
+ * {@link hskl.cn.serverless.runtime.FunctionRuntime} and serve invocations over
+ * stdin/stdout (see {@link RuntimeInstance}). Zygotes are runtime containers
+ * started without a function (see {@link ZygotePool}). The image is chosen by
+ * the function's {@code runtime} unless the JARs are baked into an image.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ContainerFactory {
+
+    public static final String JAR_PATH = "/app/function.jar";
+    public static final String PAYLOAD_PATH = "/tmp/payload.json";
+    public static final String CDS_ARCHIVE_PATH = "/tmp/function.jsa";
+
+    private static final int TAG_HASH_LENGTH = 12;
+
+    /**
+     * Sends the JVM's own log output (e.g. a CDS archive that does not match)
+     * to stderr. Its default is stdout, which carries the runtime's frames and
+     * the one-shot result.
+     */
+    static final List<String> JVM_LOGGING = List.of("-Xlog:disable", "-Xlog:all=warning:stderr");
+
+    /**
+     * Modification time of every file copied into a container. CDS archives
+     * record the mtime of each classpath JAR and are rejected if it differs,
+     * so the copies must look identical across containers and executor restarts.
+     */
+    static final Date COPIED_FILE_MTIME = new Date(946684800000L);
+
+    private final DockerClient dockerClient;
+    @Qualifier(DockerConfig.STREAMING_CLIENT)
+    private final DockerClient streamingDockerClient;
+    private final DockerConfig dockerConfig;
+    private final FunctionRuntimeJar functionRuntimeJar;
+    private final LaunchProfileService launchProfileService;
+    private final FunctionImageConfig functionImageConfig;
+    private final JarCache jarCache;
+    private final RuntimeImageManager runtimeImageManager;
+
+    /** Images seen on this Docker host, with the time they were last seen. */
+    private final Map<String, Long> localImages = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Void>> jarVolumes = new ConcurrentHashMap<>();
+
+    /**
+     * Image the function's containers run on: the function's own runtime image
+     * (see {@link RuntimeImageBuilder}) if it exists on this Docker host,
+     * otherwise the image of its runtime.
+     */
+    public String imageFor(FunctionInfo function) {
+        String image = function.getRuntimeImage();
+        if (image != null && isLocal(image)) {
+            return image;
+        }
+        return dockerConfig.imageFor(function.getRuntime());
+    }
+
+    /**
+     * Tag of the function's baked image: the function JAR and the
+     * function-runtime JAR layered on {@link #imageFor}. The tag is derived
+     * from the JAR hash, the base image and the runtime JAR, so it changes
+     * whenever one of them does.
+     */
+    public String bakedImageTag(FunctionInfo function) throws IOException {
+        String repository = "fn-" + function.getName().toLowerCase().replaceAll("[^a-z0-9._-]", "-");
+        String base = sha256(imageFor(function) + "\n" + functionRuntimeJar.checksum());
+        return repository + ":" + shortHash(function.version()) + "-" + shortHash(base);
+    }
+
+    /**
+     * The function's baked image if it exists on this Docker host.
+     */
+    public Optional<String> bakedImageFor(FunctionInfo function) {
+        if (!functionImageConfig.isEnabled() || function.getJarHash() == null) {
+            return Optional.empty();
+        }
+        try {
+            String tag = bakedImageTag(function);
+            return isLocal(tag) ? Optional.of(tag) : Optional.empty();
+        } catch (IOException e) {
+            log.debug("Could not look up baked image of function {}: {}", function.getName(), e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Marks an image as present on this Docker host after it was built.
+     */
+    public void imageBuilt(String image) {
+        localImages.put(image, System.currentTimeMillis());
+    }
+
+    /**
+     * Forgets an image after it was removed from this Docker host.
+     */
+    public void imageRemoved(String image) {
+        localImages.remove(image);
+    }
+
+    /**
+     * Name of the volume that holds the function's JARs, derived from the
+     * function, its version (see {@link FunctionInfo#version}) and the
+     * function-runtime JAR.
+     */
+    public String jarVolumeName(FunctionInfo function) throws IOException {
+        return "fn-jar-" + function.getName().toLowerCase().replaceAll("[^a-z0-9._-]", "-")
+                + "-" + shortHash(function.version()) + "-" + shortHash(functionRuntimeJar.checksum());
+    }
+
+    /**
+     * Path of a layer JAR in the container.
+     */
+    public static String layerPath(LayerInfo layer) {
+        return "/app/layer-" + layer.getName() + ".jar";
+    }
+
+    /**
+     * Returns the volume with the function's JARs, creating and filling it on
+     * first use in this executor. Only filling waits for the JAR.
+     *
+     * @return empty if JAR volumes are disabled or the volume could not be filled
+     */
+    public Optional<String> jarVolumeFor(FunctionInfo function, CompletableFuture<Path> jarFile) {
+        if (!dockerConfig.isJarVolumes() || function.getJarHash() == null || jarFile == null) {
+            return Optional.empty();
+        }
+        String volume;
+        try {
+            volume = jarVolumeName(function);
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+        CompletableFuture<Void> filled = new CompletableFuture<>();
+        CompletableFuture<Void> existing = jarVolumes.putIfAbsent(volume, filled);
+        try {
+            if (existing != null) {
+                existing.join();
+                return Optional.of(volume);
+            }
+            fillJarVolume(function, await(jarFile), volume);
+            filled.complete(null);
+            return Optional.of(volume);
+        } catch (Exception e) {
+            jarVolumes.remove(volume, filled);
+            filled.completeExceptionally(e);
+            log.warn("Could not fill JAR volume {}, copying JARs instead: {}", volume, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Forgets a JAR volume after it was removed from this Docker host.
+     */
+    public void jarVolumeRemoved(String volume) {
+        jarVolumes.remove(volume);
+    }
+
+    /**
+     * Creates the volume (or reuses it after an executor restart) and copies
+     * the JARs onto it through a container that is never started.
+     */
+    private void fillJarVolume(FunctionInfo function, Path jarFile, String volume) throws Exception {
+        dockerClient.createVolumeCmd()
+                .withName(volume)
+                .withLabels(Map.of("function", function.getName(), "jar-hash", function.version()))
+                .exec();
+        CreateContainerResponse container = create(dockerClient.createContainerCmd(imageFor(function))
+                .withName("fn-jar-fill-" + UUID.randomUUID().toString().substring(0, 8))
+                .withCmd("true")
+                .withHostConfig(HostConfig.newHostConfig()
+                        .withNetworkMode("none")
+                        .withBinds(new Bind(volume, new Volume("/app"))))
+                .withLabels(Map.of("jar-volume", volume)));
+        try {
+            copyFileToContainer(container.getId(), functionRuntimeJar.path(), FunctionRuntimeJar.CONTAINER_PATH);
+            copyFileToContainer(container.getId(), jarFile, JAR_PATH);
+            copyLayersToContainer(container.getId(), function);
+        } finally {
+            removeContainer(container.getId());
+        }
+        log.info("Filled JAR volume {} for function {}", volume, function.getName());
+    }
+
+    /**
+     * Whether the image is present on this Docker host. Only presence is
+     * remembered, for {@code docker.image-cache-ttl-ms}, so images built later
+     * are found and images removed behind the executor's back are noticed
+     * (also when a container cannot be created, see {@link #create}).
+     */
+    private boolean isLocal(String image) {
+        Long seenAt = localImages.get(image);
+        if (seenAt != null && System.currentTimeMillis() - seenAt < dockerConfig.getImageCacheTtlMs()) {
+            return true;
+        }
+        try {
+            dockerClient.inspectImageCmd(image).exec();
+            localImages.put(image, System.currentTimeMillis());
+            return true;
+        } catch (NotFoundException e) {
+            localImages.remove(image);
+            return false;
+        }
+    }
+
+    /**
+     * Creates the container, forgetting its image if Docker no longer has it.
+     */
+    private CreateContainerResponse create(CreateContainerCmd command) {
+        try {
+            return command.exec();
+        } catch (NotFoundException e) {
+            imageRemoved(command.getImage());
+            runtimeImageManager.imageRemoved(command.getImage());
+            throw e;
+        }
+    }
+
+    /**
+     * Creates a container on the given image with the function JAR, its layers
+     * and the function-runtime JAR in {@code /app}, e.g. to analyse them with
+     * JDK tools. The container is not started.
+     */
+    public String createToolContainer(String image, FunctionInfo function, Path jarFile, List<String> command,
+                                      String name, Map<String, String> labels) throws Exception {
+        CreateContainerResponse container = create(dockerClient.createContainerCmd(image)
+                .withName(name)
+                .withCmd(command)
+                .withHostConfig(HostConfig.newHostConfig()
+                        .withNetworkMode("none"))
+                .withWorkingDir("/app")
+                .withLabels(labels));
+
+        String containerId = container.getId();
+        try {
+            copyFileToContainer(containerId, functionRuntimeJar.path(), FunctionRuntimeJar.CONTAINER_PATH);
+            copyFileToContainer(containerId, jarFile, JAR_PATH);
+            copyLayersToContainer(containerId, function);
+        } catch (Exception e) {
+            removeContainer(containerId);
+            throw e;
+        }
+        return containerId;
+    }
+
+    /**
+     * Creates a one-shot container for the function and copies the payload and
+     * the JAR into it. The JAR may still be fetched while the container is
+     * created; it is copied in last. The JVM runs with the options of the
+     * launch profile; with a CDS archive it maps the function's classes from
+     * it. The container is not started.
+     */
+    public String createFunctionContainer(FunctionInfo function, CompletableFuture<Path> jarFile, Path cdsArchive,
+                                          LaunchProfile profile, String payloadJson, String name,
+                                          Map<String, String> labels) throws Exception {
+        List<String> jvmOptions = new ArrayList<>(launchProfileService.jvmOptions(profile, function.getMemoryMb()));
+        jvmOptions.addAll(useCdsArchive(cdsArchive));
+        return createOneShotContainer(function, jarFile, cdsArchive, jvmOptions, payloadJson, name, labels);
+    }
+
+    /**
+     * Creates a one-shot container that writes a dynamic CDS archive of all
+     * classes it loaded to {@link #CDS_ARCHIVE_PATH} when the JVM exits.
+     * The container is not started.
+     */
+    public String createCdsDumpContainer(FunctionInfo function, Path jarFile, String name) throws Exception {
+        List<String> jvmOptions = new ArrayList<>(launchProfileService.jvmOptions(
+                launchProfileService.select(function), function.getMemoryMb()));
+        jvmOptions.add("-XX:ArchiveClassesAtExit=" + CDS_ARCHIVE_PATH);
+        return createOneShotContainer(function, CompletableFuture.completedFuture(jarFile), null, jvmOptions, null,
+                name, Map.of("cds-dump", "true"));
+    }
+
+    private String createOneShotContainer(FunctionInfo function, CompletableFuture<Path> jarFile, Path cdsArchive,
+                                          List<String> jvmOptions, String payloadJson, String name,
+                                          Map<String, String> labels) throws Exception {
+        Map<String, String> allLabels = new HashMap<>(labels);
+        allLabels.put("function", function.getName());
+        JarDelivery delivery = jarDelivery(function, jarFile, cdsArchive);
+        CreateContainerResponse container = create(dockerClient.createContainerCmd(delivery.image())
+                .withName(name)
+                .withCmd(runtimeCommand(FunctionLauncher.class, function, jvmOptions, JAR_PATH, PAYLOAD_PATH))
+                .withHostConfig(HostConfig.newHostConfig()
+                        .withMemory((long) function.getMemoryMb() * 1024 * 1024)
+                        .withCpuCount(1L)
+                        .withNetworkMode("none")
+                        .withBinds(delivery.binds()))
+                .withWorkingDir("/app")
+                .withLabels(allLabels));
+
+        String containerId = container.getId();
+        try {
+            if (payloadJson != null) {
+                copyPayloadToContainer(containerId, payloadJson);
+            }
+            deliver(containerId, delivery);
+        } catch (Exception e) {
+            removeContainer(containerId);
+            throw e;
+        }
+        return containerId;
+    }
+
+    /**
+     * Creates a runtime container, attaches to it and starts it. Returns once the
+     * runtime has loaded the function and is ready for invocations. As with
+     * {@link #createFunctionContainer}, the JAR may still be fetched while the
+     * container is created.
+     */
+    public RuntimeInstance startRuntimeInstance(FunctionInfo function, CompletableFuture<Path> jarFile,
+                                                Path cdsArchive, LaunchProfile profile, String version,
+                                                long startupTimeoutMs) throws Exception {
+        List<String> jvmOptions = new ArrayList<>(launchProfileService.jvmOptions(profile, function.getMemoryMb()));
+        jvmOptions.addAll(useCdsArchive(cdsArchive));
+        JarDelivery delivery = jarDelivery(function, jarFile, cdsArchive);
+        return startInstance(delivery, function.getName(), version, function.getMemoryMb(), profile,
+                runtimeCommand(FunctionRuntime.class, function, jvmOptions, JAR_PATH),
+                Map.of("function", function.getName(), "runtime-instance", "true"), startupTimeoutMs);
+    }
+
+    /**
+     * Starts a zygote: a runtime container for the given runtime without a
+     * function. The function is loaded later with {@link RuntimeInstance#load}.
+     * Zygotes become long-lived pooled instances, so they use the throughput profile.
+     */
+    public RuntimeInstance startZygote(String runtime, int memoryMb, long startupTimeoutMs) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add("java");
+        command.addAll(JVM_LOGGING);
+        command.addAll(launchProfileService.jvmOptions(LaunchProfile.THROUGHPUT, memoryMb));
+        command.addAll(List.of("-cp", FunctionRuntimeJar.CONTAINER_PATH, FunctionRuntime.class.getName()));
+        runtimeImageManager.ensurePresent(dockerConfig.imageFor(runtime));
+        JarDelivery delivery = new JarDelivery(dockerConfig.imageFor(runtime), List.of(),
+                Map.of(FunctionRuntimeJar.CONTAINER_PATH, functionRuntimeJar.path()), null, null);
+        return startInstance(delivery, "zygote-" + runtime, null, memoryMb, LaunchProfile.THROUGHPUT, command,
+                Map.of("zygote", runtime, "runtime-instance", "true"), startupTimeoutMs);
+    }
+
+    /**
+     * Copies the function JAR into a running zygote and loads the function
+     * from it (see {@link RuntimeInstance#load}).
+     */
+    public void loadIntoZygote(RuntimeInstance zygote, FunctionInfo function, Path jarFile, long timeoutMs)
+            throws Exception {
+        copyFileToContainer(zygote.getContainerId(), jarFile, JAR_PATH);
+        zygote.load(function.getName(), function.instanceVersion(), function.getHandler(), JAR_PATH, timeoutMs);
+    }
+
+    private RuntimeInstance startInstance(JarDelivery delivery, String namePrefix, String version, int memoryMb,
+                                          LaunchProfile profile, List<String> command, Map<String, String> labels,
+                                          long startupTimeoutMs) throws Exception {
+        String name = "fn-" + namePrefix + "-" + UUID.randomUUID().toString().substring(0, 8);
+        CreateContainerResponse container = create(dockerClient.createContainerCmd(delivery.image())
+                .withName(name)
+                .withCmd(command)
+                .withHostConfig(HostConfig.newHostConfig()
+                        .withMemory((long) memoryMb * 1024 * 1024)
+                        .withCpuCount(1L)
+                        .withNetworkMode("none")
+                        .withBinds(delivery.binds()))
+                .withWorkingDir("/app")
+                .withAttachStdin(true)
+                .withStdinOpen(true)
+                .withStdInOnce(false)
+                .withTty(false)
+                .withLabels(labels));
+
+        String containerId = container.getId();
+        RuntimeInstance instance = new RuntimeInstance(containerId, labels.get("function"), version, profile);
+        try {
+            deliver(containerId, delivery);
+            instance.attach(streamingDockerClient);
+            dockerClient.startContainerCmd(containerId).exec();
+            instance.awaitReady(startupTimeoutMs);
+            log.info("Started runtime instance {} ({})", containerId, name);
+            return instance;
+        } catch (Exception e) {
+            instance.close();
+            removeContainer(containerId);
+            throw e;
+        }
+    }
+
+    /**
+     * Decides how the function's JARs reach its container: from the baked
+     * image, from the JAR volume, or copied in. The CDS archive is always
+     * copied. Only a JAR volume that still has to be filled waits for the
+     * JAR here; JARs to copy are awaited by {@link #deliver}.
+     */
+    private JarDelivery jarDelivery(FunctionInfo function, CompletableFuture<Path> jarFile, Path cdsArchive)
+            throws Exception {
+        Map<String, Path> files = new LinkedHashMap<>();
+        List<Bind> binds = new ArrayList<>();
+        CompletableFuture<Path> jarToCopy = null;
+        Optional<String> bakedImage = bakedImageFor(function);
+        String image = bakedImage.orElseGet(() -> imageFor(function));
+        runtimeImageManager.ensurePresent(image);
+        if (bakedImage.isEmpty()) {
+            Optional<String> jarVolume = jarVolumeFor(function, jarFile);
+            if (jarVolume.isPresent()) {
+                binds.add(new Bind(jarVolume.get(), new Volume("/app"), AccessMode.ro));
+            } else {
+                files.put(FunctionRuntimeJar.CONTAINER_PATH, functionRuntimeJar.path());
+                jarToCopy = jarFile;
+            }
+        }
+        if (cdsArchive != null) {
+            files.put(CDS_ARCHIVE_PATH, cdsArchive);
+        }
+        return new JarDelivery(image, binds, files, function, jarToCopy);
+    }
+
+    /**
+     * Image, volume mounts and local files to copy for a container, plus the
+     * function whose JAR and layers are copied once fetched ({@code null} if
+     * they come with the image or a volume).
+     */
+    private record JarDelivery(String image, List<Bind> binds, Map<String, Path> files, FunctionInfo function,
+                               CompletableFuture<Path> jarFile) {}
+
+    /**
+     * Copies the files of a delivery into a created container: local files
+     * first, then the function JAR as soon as its fetch completes, then the
+     * layer JARs.
+     */
+    private void deliver(String containerId, JarDelivery delivery) throws Exception {
+        copyFilesToContainer(containerId, delivery.files());
+        if (delivery.jarFile() != null) {
+            copyFileToContainer(containerId, await(delivery.jarFile()), JAR_PATH);
+            copyLayersToContainer(containerId, delivery.function());
+        }
+    }
+
+    /**
+     * Waits for a JAR fetched in the background and rethrows its failure.
+     */
+    private static Path await(CompletableFuture<Path> jarFile) throws Exception {
+        try {
+            return jarFile.get();
+        } catch (java.util.concurrent.ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    /**
+     * Builds the command that runs a function-runtime entry point with the
+     * function JAR on the classpath. The registered handler is passed last so
+     * the runtime can resolve it instead of the JAR's Main-Class.
+     */
+    private static List<String> runtimeCommand(Class<?> mainClass, FunctionInfo function, List<String> jvmOptions,
+                                               String... args) {
+        List<String> command = new ArrayList<>();
+        command.add("java");
+        command.addAll(JVM_LOGGING);
+        command.addAll(jvmOptions);
+        command.addAll(List.of("-cp", classpath(function), mainClass.getName()));
+        command.addAll(List.of(args));
+        if (function.getHandler() != null && !function.getHandler().isBlank()) {
+            command.add(function.getHandler());
+        }
+        return command;
+    }
+
+    /**
+     * Container classpath of the function: the function runtime, the function
+     * JAR, then its layers in order.
+     */
+    public static String classpath(FunctionInfo function) {
+        StringBuilder classpath = new StringBuilder(FunctionRuntimeJar.CONTAINER_PATH + ":" + JAR_PATH);
+        for (LayerInfo layer : function.getLayers()) {
+            classpath.append(':').append(layerPath(layer));
+        }
+        return classpath.toString();
+    }
+
+    /**
+     * JVM options that map classes from the CDS archive. With
+     * {@code -Xshare:auto} the JVM falls back to normal class loading if the
+     * archive does not match the JDK or the classpath; the warning it logs
+     * goes to stderr (see {@link #JVM_LOGGING}).
+     */
+    private static List<String> useCdsArchive(Path cdsArchive) {
+        return cdsArchive != null
+                ? List.of("-XX:SharedArchiveFile=" + CDS_ARCHIVE_PATH, "-Xshare:auto")
+                : List.of();
+    }
+
+    /**
+     * Copies a single file out of a (possibly stopped) container.
+     *
+     * @return false if the file does not exist in the container
+     */
+    public boolean copyFileFromContainer(String containerId, String sourcePath, Path target) throws Exception {
+        try (InputStream tar = dockerClient.copyArchiveFromContainerCmd(containerId, sourcePath).exec();
+             TarArchiveInputStream tarIn = new TarArchiveInputStream(tar)) {
+            TarArchiveEntry entry;
+            while ((entry = tarIn.getNextEntry()) != null) {
+                if (entry.isFile()) {
+                    Files.copy(tarIn, target, StandardCopyOption.REPLACE_EXISTING);
+                    return true;
+                }
+            }
+            return false;
+        } catch (NotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes the invocation payload into a created (not yet started) container.
+     */
+    public void copyPayloadToContainer(String containerId, String payloadJson) throws Exception {
+        copyToContainer(containerId, PAYLOAD_PATH, payloadJson.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void removeContainer(String containerId) {
+        try {
+            dockerClient.removeContainerCmd(containerId).withForce(true).exec();
+        } catch (Exception e) {
+            log.debug("Failed to remove container {}: {}", containerId, e.getMessage());
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String shortHash(String hash) {
+        return hash.substring(0, Math.min(TAG_HASH_LENGTH, hash.length()));
+    }
+
+    private void copyLayersToContainer(String containerId, FunctionInfo function) throws Exception {
+        List<Path> layerFiles = jarCache.acquireLayers(function);
+        try {
+            for (int i = 0; i < layerFiles.size(); i++) {
+                copyFileToContainer(containerId, layerFiles.get(i), layerPath(function.getLayers().get(i)));
+            }
+        } finally {
+            layerFiles.forEach(jarCache::release);
+        }
+    }
+
+    private void copyFilesToContainer(String containerId, Map<String, Path> files) throws Exception {
+        for (Map.Entry<String, Path> file : files.entrySet()) {
+            copyFileToContainer(containerId, file.getValue(), file.getKey());
+        }
+    }
+
+    /**
+     * Copies a file into a Docker container using the Docker API.
+     *
+     * Docker's copyArchiveToContainer API takes a TAR stream; this works
+     * reliably in Docker-in-Docker scenarios where bind mounts would fail
+     * due to path resolution issues. The archive is streamed from disk (see
+     * {@link #tarFor}), so the file is never held on the heap.
+     */
+    private void copyFileToContainer(String containerId, Path sourceFile, String destPath) throws Exception {
+        Path tar = tarFor(sourceFile, destPath.substring(destPath.lastIndexOf('/') + 1));
+        try (InputStream tarInput = Files.newInputStream(tar)) {
+            copyTarToContainer(containerId, destPath, tarInput);
+        }
+    }
+
+    /**
+     * Returns a TAR archive of the file under the given entry name, stored
+     * next to the file as {@code <file>.<entry name>.tar}. Copied files are
+     * immutable (cached JARs and CDS archives are content-addressed), so the
+     * archive is written once and every later copy streams it unchanged.
+     * Whoever deletes the file deletes its archives, too (see {@link JarCache}).
+     */
+    Path tarFor(Path sourceFile, String entryName) throws IOException {
+        Path tar = sourceFile.resolveSibling(sourceFile.getFileName() + "." + entryName + ".tar");
+        if (Files.exists(tar)
+                && Files.getLastModifiedTime(tar).compareTo(Files.getLastModifiedTime(sourceFile)) >= 0) {
+            return tar;
+        }
+        Path part = Files.createTempFile(tar.getParent(), "tar", ".part");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(part));
+                 TarArchiveOutputStream tarOut = new TarArchiveOutputStream(out)) {
+                tarOut.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+                TarArchiveEntry entry = new TarArchiveEntry(entryName);
+                entry.setSize(Files.size(sourceFile));
+                entry.setModTime(COPIED_FILE_MTIME);
+                tarOut.putArchiveEntry(entry);
+                Files.copy(sourceFile, tarOut);
+                tarOut.closeArchiveEntry();
+                tarOut.finish();
+            }
+            Files.move(part, tar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(part);
+        }
+        return tar;
+    }
+
+    private void copyToContainer(String containerId, String destPath, byte[] content) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream tarOut = new TarArchiveOutputStream(baos)) {
+            TarArchiveEntry entry = new TarArchiveEntry(destPath.substring(destPath.lastIndexOf('/') + 1));
+            entry.setSize(content.length);
+            tarOut.putArchiveEntry(entry);
+            tarOut.write(content);
+            tarOut.closeArchiveEntry();
+            tarOut.finish();
+        }
+        copyTarToContainer(containerId, destPath, new ByteArrayInputStream(baos.toByteArray()));
+    }
+
+    private void copyTarToContainer(String containerId, String destPath, InputStream tar) {
+        // Extract directory from destPath
+        String destDir = destPath.substring(0, destPath.lastIndexOf('/'));
+        if (destDir.isEmpty()) {
+            destDir = "/";
+        }
+
+        // Copy the TAR archive to the container
+        dockerClient.copyArchiveToContainerCmd(containerId)
+                .withTarInputStream(tar)
+                .withRemotePath(destDir)
+                .exec();
+    }
+}
@@ -0,0 +1,629 @@
+package hskl.cn.serverless.executor.service;
+
+import hskl.cn.serverless.executor.config.PoolConfig;
+import hskl.cn.serverless.executor.dto.FunctionInfo;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps long-lived runtime instances per function so executions skip JVM
+ * startup, class loading and JIT warm-up.
+ *
+ * An execution leases an instance, invokes the function in it and releases it
+ * again. An instance accepts up to the function's {@code concurrency} leases at
+ * once; instances with free capacity are reused most-recently-used first, so
+ * load is packed onto few instances and surplus instances age out. A function
+ * has at most {@code maxInstances} instances; {@code minInstances} of them are
+ * kept running even when idle, the rest are stopped after
+ * {@code pool.idle-timeout-ms}. Instances belong to one instance version (the
+ * JAR hash plus the settings they are started with, see
+ * {@link FunctionInfo#instanceVersion()}) and are replaced when it changes.
+ * New instances are preferably made from a {@link ZygotePool} zygote,
+ * otherwise started with the function's CDS archive if there is one (see
+ * {@link CdsArchiveService}). Start times are recorded as
+ * {@code executor.cold.start}, tagged by source, launch profile and CDS use.
+ *
+ * The slot methods limit one-shot executions to {@code maxInstances} when the
+ * pool is disabled.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ContainerPool {
+
+    private final ContainerFactory containerFactory;
+    private final JarCache jarCache;
+    private final RegistryClient registryClient;
+    private final PoolConfig poolConfig;
+    private final ZygotePool zygotePool;
+    private final CdsArchiveService cdsArchiveService;
+    private final LaunchProfileService launchProfileService;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, FunctionPool> pools = new ConcurrentHashMap<>();
+    private ExecutorService refillExecutor;
+
+    /**
+     * Leases an instance of the function: one with free capacity if available,
+     * otherwise a new one if the function is below {@code maxInstances},
+     * otherwise the next instance that frees up within the timeout.
+     *
+     * @return null if no instance became available within the timeout
+     */
+    public RuntimeInstance lease(FunctionInfo function, long timeout, TimeUnit unit) throws Exception {
+        FunctionPool pool = poolFor(function);
+        int concurrency = concurrency(function);
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (true) {
+            List<RuntimeInstance> retired = new ArrayList<>();
+            RuntimeInstance instance;
+            boolean start = false;
+            pool.lock.lock();
+            try {
+                instance = pool.leaseAvailable(concurrency, retired);
+                if (instance == null && retired.isEmpty()) {
+                    if (pool.slots.tryAcquire()) {
+                        pool.instances++;
+                        start = true;
+                    } else {
+                        long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                        if (remainingMs <= 0) {
+                            return null;
+                        }
+                        pool.changed.await(remainingMs, TimeUnit.MILLISECONDS);
+                    }
+                }
+            } finally {
+                pool.lock.unlock();
+            }
+            retired.forEach(this::closeAsync);
+            if (instance != null) {
+                return instance;
+            }
+            if (start) {
+                try {
+                    instance = startInstance(function);
+                } catch (Exception e) {
+                    pool.lock.lock();
+                    try {
+                        pool.abandonStart();
+                    } finally {
+                        pool.lock.unlock();
+                    }
+                    throw e;
+                }
+                pool.lock.lock();
+                try {
+                    pool.add(instance, 1, concurrency);
+                } finally {
+                    pool.lock.unlock();
+                }
+                return instance;
+            }
+        }
+    }
+
+    /**
+     * Returns a lease. Dead instances and instances of an outdated JAR are
+     * stopped once their last lease is returned.
+     */
+    public void release(RuntimeInstance instance) {
+        FunctionPool pool = pools.get(instance.getFunctionName());
+        if (pool == null) {
+            closeAsync(instance);
+            return;
+        }
+        boolean retired;
+        pool.lock.lock();
+        try {
+            retired = pool.giveBack(instance, concurrency(pool.function));
+        } finally {
+            pool.lock.unlock();
+        }
+        if (retired) {
+            closeAsync(instance);
+        }
+    }
+
+    /**
+     * Stops a leased instance that must not be reused, e.g. after a timeout.
+     * Other invocations still running in the instance fail.
+     */
+    public void discard(RuntimeInstance instance) {
+        FunctionPool pool = pools.get(instance.getFunctionName());
+        if (pool != null) {
+            pool.lock.lock();
+            try {
+                pool.retire(instance);
+            } finally {
+                pool.lock.unlock();
+            }
+        }
+        closeAsync(instance);
+    }
+
+    /**
+     * Reserves one of the function's {@code maxInstances} slots for a one-shot execution.
+     *
+     * @return false if no slot became free within the timeout
+     */
+    public boolean acquireSlot(FunctionInfo function, long timeout, TimeUnit unit) throws InterruptedException {
+        return poolFor(function).slots.tryAcquire(timeout, unit);
+    }
+
+    public void releaseSlot(FunctionInfo function) {
+        poolFor(function).slots.release();
+    }
+
+    /**
+     * Number of the function's instances without any lease.
+     */
+    public int idleCount(String functionName) {
+        FunctionPool pool = pools.get(functionName);
+        if (pool == null) {
+            return 0;
+        }
+        pool.lock.lock();
+        try {
+            return (int) pool.leases.values().stream().filter(n -> n == 0).count();
+        } finally {
+            pool.lock.unlock();
+        }
+    }
+
+    public int instanceCount(String functionName) {
+        FunctionPool pool = pools.get(functionName);
+        if (pool == null) {
+            return 0;
+        }
+        pool.lock.lock();
+        try {
+            return pool.instances;
+        } finally {
+            pool.lock.unlock();
+        }
+    }
+
+    /**
+     * Syncs the pools with the registry: starts instances up to
+     * {@code minInstances}, stops instances idle for longer than the idle
+     * timeout and drains pools of functions that are gone or not ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${pool.maintenance-interval-ms:30000}",
+            fixedDelayString = "${pool.maintenance-interval-ms:30000}")
+    public void maintain() {
+        if (!poolConfig.isEnabled()) {
+            return;
+        }
+        List<FunctionInfo> functions;
+        try {
+            functions = registryClient.getAllFunctions();
+        } catch (Exception e) {
+            log.warn("Could not sync instance pools with registry: {}", e.getMessage());
+            pools.values().forEach(pool -> {
+                reapIdle(pool);
+                replenish(pool);
+            });
+            return;
+        }
+
+        Set<String> readyFunctions = functions.stream()
+                .filter(f -> "READY".equals(f.getStatus()) && f.getJarPath() != null)
+                .map(FunctionInfo::getName)
+                .collect(Collectors.toSet());
+
+        pools.forEach((name, pool) -> {
+            if (!readyFunctions.contains(name)) {
+                drain(pool);
+            }
+        });
+        functions.stream()
+                .filter(f -> readyFunctions.contains(f.getName()))
+                .map(this::poolFor)
+                .forEach(pool -> {
+                    reapIdle(pool);
+                    replenish(pool);
+                });
+    }
+
+    /**
+     * Applies changed metadata of a function right away instead of on the next
+     * maintenance run: idle instances of an outdated JAR are stopped and, with
+     * {@code prewarm}, instances up to {@code minInstances} are started.
+     */
+    public void refresh(FunctionInfo function, boolean prewarm) {
+        if (!poolConfig.isEnabled()) {
+            return;
+        }
+        if (prewarm) {
+            replenish(poolFor(function));
+        } else if (pools.containsKey(function.getName())) {
+            poolFor(function);
+        }
+    }
+
+    /**
+     * Stops the idle instances of a function that was deleted or is no longer
+     * ready; leased instances are stopped when they are released.
+     */
+    public void drain(String functionName) {
+        FunctionPool pool = pools.get(functionName);
+        if (pool != null) {
+            drain(pool);
+        }
+    }
+
+    private void drain(FunctionPool pool) {
+        List<RuntimeInstance> drained;
+        pool.lock.lock();
+        try {
+            drained = pool.retireIdle();
+        } finally {
+            pool.lock.unlock();
+        }
+        drained.forEach(this::closeAsync);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (refillExecutor != null) {
+            refillExecutor.shutdownNow();
+        }
+        pools.values().forEach(pool -> {
+            List<RuntimeInstance> instances;
+            pool.lock.lock();
+            try {
+                instances = new ArrayList<>(pool.leases.keySet());
+            } finally {
+                pool.lock.unlock();
+            }
+            instances.forEach(instance -> {
+                instance.close();
+                containerFactory.removeContainer(instance.getContainerId());
+            });
+        });
+    }
+
+    private FunctionPool poolFor(FunctionInfo function) {
+        FunctionPool pool = pools.computeIfAbsent(function.getName(), k -> new FunctionPool(function));
+        List<RuntimeInstance> stale;
+        pool.lock.lock();
+        try {
+            stale = pool.update(function);
+        } finally {
+            pool.lock.unlock();
+        }
+        if (!stale.isEmpty()) {
+            log.info("Function {} changed, stopping {} idle instances", function.getName(), stale.size());
+            stale.forEach(this::closeAsync);
+        }
+        return pool;
+    }
+
+    /**
+     * Starts an instance of the function, preferably by loading it into a
+     * zygote; falls back to a new runtime container, which is created while
+     * the JAR is fetched.
+     */
+    private RuntimeInstance startInstance(FunctionInfo function) throws Exception {
+        long startedAt = System.nanoTime();
+        CompletableFuture<Path> jarFile = jarCache.acquireAsync(function);
+        try {
+            LaunchProfile profile = launchProfileService.select(function);
+            RuntimeInstance zygote = zygotePool.fits(function, profile)
+                    ? zygotePool.take(function).orElse(null)
+                    : null;
+            Path cdsArchive = cdsArchiveService.archiveFor(function).orElse(null);
+            if (zygote != null) {
+                try {
+                    containerFactory.loadIntoZygote(zygote, function, jarFile.join(),
+                            poolConfig.getStartupTimeoutMs());
+                    log.debug("Loaded function {} into zygote {}", function.getName(), zygote.getContainerId());
+                    recordColdStart("zygote", zygote.getLaunchProfile(), false, startedAt);
+                    return zygote;
+                } catch (Exception e) {
+                    log.warn("Could not load function {} into zygote, starting a new container: {}",
+                            function.getName(), e.getMessage());
+                    closeAsync(zygote);
+                }
+            }
+            RuntimeInstance instance;
+            try {
+                instance = containerFactory.startRuntimeInstance(function, jarFile, cdsArchive, profile,
+                        function.instanceVersion(), poolConfig.getStartupTimeoutMs());
+            } catch (Exception e) {
+                if (cdsArchive != null) {
+                    cdsArchiveService.discard(function);
+                }
+                throw e;
+            }
+            recordColdStart("container", profile, cdsArchive != null, startedAt);
+            return instance;
+        } finally {
+            jarCache.releaseAsync(jarFile);
+        }
+    }
+
+    private void recordColdStart(String source, LaunchProfile profile, boolean cds, long startedAt) {
+        Timer.builder("executor.cold.start")
+                .description("Time to start a runtime instance with the function loaded")
+                .tag("source", source)
+                .tag("profile", String.valueOf(profile))
+                .tag("cds", String.valueOf(cds))
+                .register(meterRegistry)
+                .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+    }
+
+    private void replenish(FunctionPool pool) {
+        FunctionInfo function = pool.function;
+        pool.lock.lock();
+        try {
+            while (pool.instances < minInstances(function) && pool.slots.tryAcquire()) {
+                pool.instances++;
+                refillExecutor().execute(() -> startWarm(pool, function));
+            }
+        } finally {
+            pool.lock.unlock();
+        }
+    }
+
+    private void startWarm(FunctionPool pool, FunctionInfo function) {
+        RuntimeInstance instance;
+        try {
+            instance = startInstance(function);
+        } catch (Exception e) {
+            log.warn("Failed to start warm instance for function {}: {}", function.getName(), e.getMessage());
+            pool.lock.lock();
+            try {
+                pool.abandonStart();
+            } finally {
+                pool.lock.unlock();
+            }
+            return;
+        }
+        boolean kept;
+        pool.lock.lock();
+        try {
+            kept = pool.add(instance, 0, concurrency(function));
+        } finally {
+            pool.lock.unlock();
+        }
+        if (kept) {
+            log.debug("Started warm instance {} for function {}", instance.getContainerId(), function.getName());
+        } else {
+            closeAsync(instance);
+        }
+    }
+
+    private void reapIdle(FunctionPool pool) {
+        long cutoff = System.currentTimeMillis() - poolConfig.getIdleTimeoutMs();
+        List<RuntimeInstance> stopped = new ArrayList<>();
+        pool.lock.lock();
+        try {
+            List<RuntimeInstance> candidates = new ArrayList<>(pool.available);
+            candidates.sort(Comparator.comparingLong(RuntimeInstance::getLastUsedAt));
+            for (RuntimeInstance instance : candidates) {
+                if (pool.leases.getOrDefault(instance, -1) != 0) {
+                    continue;
+                }
+                boolean dead = !instance.isAlive();
+                boolean expired = instance.getLastUsedAt() < cutoff && pool.instances > minInstances(pool.function);
+                if ((dead || expired) && pool.retire(instance)) {
+                    log.debug("Stopping {} instance {} of function {}", dead ? "dead" : "idle",
+                            instance.getContainerId(), instance.getFunctionName());
+                    stopped.add(instance);
+                }
+            }
+        } finally {
+            pool.lock.unlock();
+        }
+        stopped.forEach(this::closeAsync);
+    }
+
+    private void closeAsync(RuntimeInstance instance) {
+        instance.close();
+        refillExecutor().execute(() -> containerFactory.removeContainer(instance.getContainerId()));
+    }
+
+    private synchronized ExecutorService refillExecutor() {
+        if (refillExecutor == null) {
+            refillExecutor = Executors.newFixedThreadPool(poolConfig.getRefillThreads(), r -> {
+                Thread thread = new Thread(r, "instance-pool-refill");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return refillExecutor;
+    }
+
+    private static int minInstances(FunctionInfo function) {
+        return function.getMinInstances() != null ? function.getMinInstances() : 0;
+    }
+
+    private static int maxInstances(FunctionInfo function) {
+        return function.getMaxInstances() != null && function.getMaxInstances() > 0
+                ? function.getMaxInstances() : Integer.MAX_VALUE;
+    }
+
+    private static int concurrency(FunctionInfo function) {
+        return function.getConcurrency() != null && function.getConcurrency() > 0 ? function.getConcurrency() : 1;
+    }
+
+    /**
+     * Instances of one function. All methods except construction must be
+     * called while holding {@code lock}; waiting leases are woken through
+     * {@code changed} whenever capacity frees up. A lock rather than the
+     * pool's monitor, so a virtual thread waiting for a lease unmounts from
+     * its carrier instead of pinning it.
+     */
+    private static class FunctionPool {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition changed = lock.newCondition();
+        private final Slots slots;
+        /** Live instances and their number of leases. */
+        private final Map<RuntimeInstance, Integer> leases = new IdentityHashMap<>();
+        /** Usable instances with free capacity, most recently used first. */
+        private final Deque<RuntimeInstance> available = new ArrayDeque<>();
+        /** Live instances plus instances being started. */
+        private int instances;
+        private volatile FunctionInfo function;
+        private String version;
+        private int maxInstances;
+
+        FunctionPool(FunctionInfo function) {
+            this.function = function;
+            this.version = function.instanceVersion();
+            this.maxInstances = maxInstances(function);
+            this.slots = new Slots(maxInstances);
+        }
+
+        /**
+         * Applies the latest metadata and retires idle instances of an outdated
+         * JAR, handler, runtime, memory size or launch profile.
+         */
+        List<RuntimeInstance> update(FunctionInfo latest) {
+            function = latest;
+            int max = maxInstances(latest);
+            if (max != maxInstances) {
+                slots.resize(max - maxInstances);
+                maxInstances = max;
+            }
+            if (Objects.equals(version, latest.instanceVersion())) {
+                return List.of();
+            }
+            version = latest.instanceVersion();
+            return retireIdle();
+        }
+
+        /**
+         * Takes a lease on the most recently used instance with free capacity.
+         * Unusable instances found on the way are dropped; idle ones are
+         * retired and returned through {@code retired}.
+         */
+        RuntimeInstance leaseAvailable(int concurrency, List<RuntimeInstance> retired) {
+            Iterator<RuntimeInstance> it = available.iterator();
+            while (it.hasNext()) {
+                RuntimeInstance instance = it.next();
+                if (!usable(instance)) {
+                    it.remove();
+                    if (leases.get(instance) == 0 && retire(instance)) {
+                        retired.add(instance);
+                    }
+                    continue;
+                }
+                int leased = leases.merge(instance, 1, Integer::sum);
+                if (leased >= concurrency) {
+                    it.remove();
+                }
+                return instance;
+            }
+            return null;
+        }
+
+        /**
+         * Adds a started instance with the given number of leases.
+         *
+         * @return false if the instance is already outdated and was retired
+         */
+        boolean add(RuntimeInstance instance, int leased, int concurrency) {
+            leases.put(instance, leased);
+            if (leased > 0 || usable(instance)) {
+                if (leased < concurrency) {
+                    available.offerFirst(instance);
+                }
+                changed.signalAll();
+                return true;
+            }
+            retire(instance);
+            return false;
+        }
+
+        /**
+         * Returns a lease.
+         *
+         * @return true if the instance was retired and must be stopped
+         */
+        boolean giveBack(RuntimeInstance instance, int concurrency) {
+            Integer leased = leases.get(instance);
+            if (leased == null) {
+                return false;
+            }
+            int remaining = Math.max(0, leased - 1);
+            leases.put(instance, remaining);
+            available.remove(instance);
+            if (!usable(instance)) {
+                return remaining == 0 && retire(instance);
+            }
+            if (remaining < concurrency) {
+                available.offerFirst(instance);
+            }
+            changed.signalAll();
+            return false;
+        }
+
+        /**
+         * Removes an instance from the pool and frees its slot.
+         *
+         * @return false if the instance was not (or no longer) part of the pool
+         */
+        boolean retire(RuntimeInstance instance) {
+            if (leases.remove(instance) == null) {
+                return false;
+            }
+            available.remove(instance);
+            instances--;
+            slots.release();
+            changed.signalAll();
+            return true;
+        }
+
+        void abandonStart() {
+            instances--;
+            slots.release();
+            changed.signalAll();
+        }
+
+        List<RuntimeInstance> retireIdle() {
+            List<RuntimeInstance> idle = leases.entrySet().stream()
+                    .filter(e -> e.getValue() == 0)
+                    .map(Map.Entry::getKey)
+                    .toList();
+            idle.forEach(this::retire);
+            return idle;
+        }
+
+        private boolean usable(RuntimeInstance instance) {
+            return instance.isAlive() && Objects.equals(instance.getVersion(), version);
+        }
+    }
+
+    private static class Slots extends Semaphore {
+
+        Slots(int permits) {
+            super(permits);
+        }
+
+        void resize(int delta) {
+            if (delta > 0) {
+                release(delta);
+            } else {
+                reducePermits(-delta);
+            }
+        }
+    }
+}
@@ -2,42 +2,52 @@ package hskl.cn.serverless.executor.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.dockerjava.api.DockerClient;
-import com.github.dockerjava.api.async.ResultCallback;
-import com.github.dockerjava.api.command.CreateContainerResponse;
-import com.github.dockerjava.api.command.CopyArchiveToContainerCmd;
-import com.github.dockerjava.api.model.Frame;
-import com.github.dockerjava.api.model.HostConfig;
 import hskl.cn.serverless.executor.config.DockerConfig;
+import hskl.cn.serverless.executor.config.PoolConfig;
 import hskl.cn.serverless.executor.dto.ExecutionRequest;
 import hskl.cn.serverless.executor.dto.ExecutionResponse;
 import hskl.cn.serverless.executor.dto.ExecutionResponse.ExecutionStatus;
 import hskl.cn.serverless.executor.dto.FunctionInfo;
 import hskl.cn.serverless.executor.exception.ExecutionException;
-import io.minio.GetObjectArgs;
-import io.minio.MinioClient;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
-import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
-import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Executes serverless functions in isolated Docker containers.
  * 
- * This service downloads JAR files from MinIO and uses Docker's copy-to-container
- * API to transfer the JAR into a newly created container. This approach avoids
- * the volume mount path issues that occur in Docker-in-Docker scenarios.
+ * Trusted functions with {@code isolation=CLASSLOADER} run inside the executor
+ * JVM instead (see {@link InProcessExecutionService}).
+ *
+ * With the pool enabled, invocations are dispatched into long-lived runtime
+ * instances (see {@link ContainerPool} and {@link RuntimeInstance}), so the JVM
+ * start, class loading and JIT warm-up are paid once per instance instead of
+ * once per execution. With the pool disabled, each execution invokes the
+ * handler in its own container.
+ *
+ * Successful executions hand the payload to {@link CdsArchiveService}, which
+ * dumps a class-data-sharing archive for later container starts, and their
+ * duration to {@link LaunchProfileService}, which picks the JVM profile of
+ * later containers. A minimal jlink runtime image is built for each function
+ * JAR in the background (see {@link RuntimeImageBuilder}), and the JARs are
+ * baked into a per-function image that later containers start from (see
+ * {@link FunctionImageService}).
+ *
+ * Functions flagged as deterministic are answered from {@link ResultCache}
+ * when they were invoked with the same payload before; such responses are
+ * marked {@code cached}. With coalescing enabled, identical executions that
+ * arrive while one is in flight share its response (see
+ * {@link ExecutionCoalescer}); such responses are marked {@code coalesced}.
  */
 @Slf4j
 @Service
@@ -45,24 +55,31 @@ import java.util.concurrent.TimeUnit;
 public class DockerExecutionService {
 
     private final DockerClient dockerClient;
-    private final DockerConfig dockerConfig;
+    @Qualifier(DockerConfig.STREAMING_CLIENT)
+    private final DockerClient streamingDockerClient;
     private final RegistryClient registryClient;
     private final ObjectMapper objectMapper;
-    private final MinioClient minioClient;
-
-    @Value("${minio.bucket:functions}")
-    private String minioBucket;
+    private final ContainerFactory containerFactory;
+    private final JarCache jarCache;
+    private final ContainerPool containerPool;
+    private final PoolConfig poolConfig;
+    private final InProcessExecutionService inProcessExecutionService;
+    private final CdsArchiveService cdsArchiveService;
+    private final LaunchProfileService launchProfileService;
+    private final RuntimeImageBuilder runtimeImageBuilder;
+    private final FunctionImageService functionImageService;
+    private final ResultCache resultCache;
+    private final ExecutionCoalescer coalescer;
 
     /**
      * Executes a function in an isolated Docker container.
      * 
      * The execution flow:
      * 1. Validate function exists and is ready
-     * 2. Download JAR from MinIO
-     * 3. Create container (without starting)
-     * 4. Copy JAR into container using Docker API
-     * 5. Start container and capture output
-     * 6. Cleanup container and temp files
+     * 2a. isolation=CLASSLOADER: invoke the cached handler in-process
+     * 2b. Pool enabled: lease a runtime instance, send the invocation, wait for the response
+     * 2c. Pool disabled: reserve a maxInstances slot, create a container with JAR and payload,
+     *     start it (the launcher invokes the handler once), capture its output and clean up
      */
     public ExecutionResponse execute(ExecutionRequest request) {
         String executionId = UUID.randomUUID().toString();
@@ -80,96 +97,200 @@ public class DockerExecutionService {
             throw new ExecutionException("Function has no JAR uploaded");
         }
 
-        Path tempJarPath = null;
-        String containerId = null;
-        try {
-            // Download JAR from MinIO to temp file
-            tempJarPath = downloadJarFromMinio(function.getJarPath(), executionId);
-            log.info("Downloaded JAR to: {}", tempJarPath);
+        Optional<String> cachedResult = resultCache.lookup(function, request.getPayload());
+        if (cachedResult.isPresent()) {
+            log.debug("Execution {} served from result cache", executionId);
+            ExecutionResponse response = buildResponse(executionId, function.getName(), ExecutionStatus.SUCCESS,
+                    cachedResult.get(), null, startedAt);
+            response.setCached(true);
+            return response;
+        }
 
-            String payloadJson = objectMapper.writeValueAsString(request.getPayload());
+        if (coalescer.isEnabled()) {
+            ExecutionCoalescer.Result coalesced = coalescer.execute(
+                    resultCache.invocationKey(function, request.getPayload()),
+                    () -> executeAndCache(executionId, function, request, startedAt));
+            if (coalesced.joined()) {
+                log.debug("Execution {} joined an identical execution in flight", executionId);
+                ExecutionResponse shared = coalesced.response();
+                ExecutionResponse response = buildResponse(executionId, function.getName(), shared.getStatus(),
+                        null, shared.getError(), startedAt);
+                response.setResult(shared.getResult());
+                response.setCoalesced(true);
+                return response;
+            }
+            return coalesced.response();
+        }
+        return executeAndCache(executionId, function, request, startedAt);
+    }
 
-            // Create container WITHOUT volume mounts - we'll copy the JAR in
-            CreateContainerResponse container = dockerClient.createContainerCmd(dockerConfig.getRuntimeImage())
-                    .withName("fn-" + executionId)
-                    .withCmd("java", "-jar", "/app/function.jar", payloadJson)
-                    .withHostConfig(HostConfig.newHostConfig()
-                            .withMemory((long) function.getMemoryMb() * 1024 * 1024)
-                            .withCpuCount(1L)
-                            .withNetworkMode("none"))
-                    .withWorkingDir("/app")
-                    .withLabels(java.util.Map.of(
-                            "function", function.getName(),
-                            "execution-id", executionId
-                    ))
-                    .exec();
+    private ExecutionResponse executeAndCache(String executionId, FunctionInfo function, ExecutionRequest request,
+                                              LocalDateTime startedAt) {
+        ExecutionResponse response = dispatch(executionId, function, request, startedAt);
+        if (response.getStatus() == ExecutionStatus.SUCCESS && response.getResult() instanceof String result) {
+            resultCache.store(function, request.getPayload(), result);
+        }
+        return response;
+    }
 
-            containerId = container.getId();
-            log.info("Created container: {}", containerId);
+    private ExecutionResponse dispatch(String executionId, FunctionInfo function, ExecutionRequest request,
+                                       LocalDateTime startedAt) {
+        if (inProcessExecutionService.supports(function)) {
+            return executeInProcess(executionId, function, request, startedAt);
+        }
+        runtimeImageBuilder.buildIfMissing(function);
+        functionImageService.bakeIfMissing(function);
+        if (poolConfig.isEnabled()) {
+            return executeInRuntime(executionId, function, request, startedAt);
+        }
+        return executeOneShot(executionId, function, request, startedAt);
+    }
 
-            // Copy JAR into container using Docker API (works in Docker-in-Docker!)
-            copyFileToContainer(containerId, tempJarPath, "/app/function.jar");
-            log.info("Copied JAR into container");
+    /**
+     * Runs a trusted function inside the executor JVM (see {@link InProcessExecutionService}).
+     */
+    private ExecutionResponse executeInProcess(String executionId, FunctionInfo function,
+                                               ExecutionRequest request, LocalDateTime startedAt) {
+        try {
+            String payloadJson = objectMapper.writeValueAsString(request.getPayload());
+            String result = inProcessExecutionService.invoke(function, payloadJson);
+            return buildResponse(executionId, function.getName(), ExecutionStatus.SUCCESS,
+                    result.trim(), null, startedAt);
+        } catch (TimeoutException e) {
+            log.warn("Execution {} timed out", executionId);
+            return buildResponse(executionId, function.getName(), ExecutionStatus.TIMEOUT, null,
+                    "Execution timed out after " + function.getTimeoutSeconds() + " seconds", startedAt);
+        } catch (Exception e) {
+            log.error("Execution {} failed: {}", executionId, e.getMessage());
+            return buildResponse(executionId, function.getName(), ExecutionStatus.FAILED,
+                    null, Objects.toString(e.getMessage(), e.getClass().getName()).trim(), startedAt);
+        }
+    }
 
-            // Now start the container
-            dockerClient.startContainerCmd(containerId).exec();
+    /**
+     * Dispatches the invocation into a leased runtime instance. The instance is
+     * returned to the pool afterwards unless it timed out or died.
+     */
+    private ExecutionResponse executeInRuntime(String executionId, FunctionInfo function,
+                                               ExecutionRequest request, LocalDateTime startedAt) {
+        RuntimeInstance instance = null;
+        boolean reusable = false;
+        try {
+            String payloadJson = objectMapper.writeValueAsString(request.getPayload());
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(function.getTimeoutSeconds());
 
-            StringBuilder output = new StringBuilder();
-            CountDownLatch latch = new CountDownLatch(1);
+            instance = containerPool.lease(function, function.getTimeoutSeconds(), TimeUnit.SECONDS);
+            if (instance == null) {
+                log.warn("Execution {} found no free instance for function {}", executionId, function.getName());
+                return noInstanceResponse(executionId, function, startedAt);
+            }
+            log.debug("Execution {} dispatched to runtime instance {}", executionId, instance.getContainerId());
+
+            hskl.cn.serverless.runtime.Frame response;
+            long invokedAt = System.nanoTime();
+            try {
+                response = instance.invoke(payloadJson).get(
+                        Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                log.warn("Execution {} timed out", executionId);
+                return buildResponse(executionId, function.getName(), ExecutionStatus.TIMEOUT, null,
+                        "Execution timed out after " + function.getTimeoutSeconds() + " seconds", startedAt);
+            } catch (java.util.concurrent.ExecutionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+            reusable = true;
+
+            if (response.type() == hskl.cn.serverless.runtime.Frame.RESULT) {
+                cdsArchiveService.onSuccess(function, payloadJson);
+                launchProfileService.record(function, instance.getLaunchProfile(), "runtime",
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - invokedAt));
+                return buildResponse(executionId, function.getName(), ExecutionStatus.SUCCESS,
+                        response.bodyAsString().trim(), null, startedAt);
+            }
+            return buildResponse(executionId, function.getName(), ExecutionStatus.FAILED,
+                    null, response.bodyAsString().trim(), startedAt);
 
-            dockerClient.logContainerCmd(containerId)
-                    .withStdOut(true)
-                    .withStdErr(true)
-                    .withFollowStream(true)
-                    .exec(new ResultCallback<Frame>() {
-                        @Override
-                        public void onStart(Closeable closeable) {}
+        } catch (Exception e) {
+            log.error("Execution {} failed: {}", executionId, e.getMessage(), e);
+            return buildResponse(executionId, request.getFunctionName(), ExecutionStatus.FAILED,
+                    null, e.getMessage(), startedAt);
+        } finally {
+            if (instance != null) {
+                if (reusable) {
+                    containerPool.release(instance);
+                } else {
+                    containerPool.discard(instance);
+                }
+            }
+        }
+    }
 
-                        @Override
-                        public void onNext(Frame frame) {
-                            output.append(new String(frame.getPayload(), StandardCharsets.UTF_8));
-                        }
+    /**
+     * Invokes the function once in a fresh container. The result is the
+     * container's stdout; stderr carries the function's log output and errors.
+     *
+     * The JAR is fetched in the background while the execution waits for a
+     * slot and the container is created; if any step fails, the container is
+     * removed and the fetch abandoned.
+     */
+    private ExecutionResponse executeOneShot(String executionId, FunctionInfo function,
+                                             ExecutionRequest request, LocalDateTime startedAt) {
+        // Node-local copy of the JAR, downloaded from MinIO on a cache miss
+        CompletableFuture<Path> jarFile = jarCache.acquireAsync(function);
+        String containerId = null;
+        ContainerCompletion completion = null;
+        boolean slotAcquired = false;
+        try {
+            slotAcquired = containerPool.acquireSlot(function, function.getTimeoutSeconds(), TimeUnit.SECONDS);
+            if (!slotAcquired) {
+                log.warn("Execution {} found no free instance for function {}", executionId, function.getName());
+                return noInstanceResponse(executionId, function, startedAt);
+            }
 
-                        @Override
-                        public void onError(Throwable throwable) {
-                            log.error("Error reading container logs", throwable);
-                            latch.countDown();
-                        }
+            String payloadJson = objectMapper.writeValueAsString(request.getPayload());
 
-                        @Override
-                        public void onComplete() {
-                            latch.countDown();
-                        }
+            LaunchProfile profile = launchProfileService.select(function);
+            containerId = containerFactory.createFunctionContainer(function, jarFile,
+                    cdsArchiveService.archiveFor(function).orElse(null), profile, payloadJson,
+                    "fn-" + executionId, java.util.Map.of("execution-id", executionId));
+            log.info("Created container: {}", containerId);
 
-                        @Override
-                        public void close() {}
-                    });
+            completion = new ContainerCompletion(containerId);
+            completion.attach(streamingDockerClient);
 
-            boolean completed = latch.await(function.getTimeoutSeconds(), TimeUnit.SECONDS);
-            LocalDateTime completedAt = LocalDateTime.now();
-            long durationMs = java.time.Duration.between(startedAt, completedAt).toMillis();
+            // Now start the container
+            long containerStartedAt = System.nanoTime();
+            dockerClient.startContainerCmd(containerId).exec();
+            completion.watch(streamingDockerClient);
 
-            if (!completed) {
+            Integer exitCode;
+            try {
+                exitCode = completion.await(function.getTimeoutSeconds(), TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
                 log.warn("Execution {} timed out", executionId);
+                LocalDateTime completedAt = LocalDateTime.now();
                 return ExecutionResponse.builder()
                         .executionId(executionId)
                         .functionName(function.getName())
                         .status(ExecutionStatus.TIMEOUT)
                         .error("Execution timed out after " + function.getTimeoutSeconds() + " seconds")
-                        .durationMs(durationMs)
+                        .durationMs(java.time.Duration.between(startedAt, completedAt).toMillis())
                         .startedAt(startedAt)
                         .completedAt(completedAt)
                         .build();
             }
-
-            Integer exitCode = dockerClient.inspectContainerCmd(containerId).exec().getState().getExitCode();
+            LocalDateTime completedAt = LocalDateTime.now();
+            long durationMs = java.time.Duration.between(startedAt, completedAt).toMillis();
 
             if (exitCode != null && exitCode == 0) {
+                cdsArchiveService.onSuccess(function, payloadJson);
+                launchProfileService.record(function, profile, "one-shot",
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - containerStartedAt));
                 return ExecutionResponse.builder()
                         .executionId(executionId)
                         .functionName(function.getName())
                         .status(ExecutionStatus.SUCCESS)
-                        .result(output.toString().trim())
+                        .result(completion.stdout().trim())
                         .durationMs(durationMs)
                         .startedAt(startedAt)
                         .completedAt(completedAt)
@@ -179,7 +300,8 @@ public class DockerExecutionService {
                         .executionId(executionId)
                         .functionName(function.getName())
                         .status(ExecutionStatus.FAILED)
-                        .error(output.toString().trim())
+                        .error(!completion.stderr().isEmpty()
+                                ? completion.stderr().trim() : completion.stdout().trim())
                         .durationMs(durationMs)
                         .startedAt(startedAt)
                         .completedAt(completedAt)
@@ -197,80 +319,39 @@ public class DockerExecutionService {
                     .completedAt(LocalDateTime.now())
                     .build();
         } finally {
-            // Cleanup container
+            // Cleanup container; a container still running after a timeout is killed by the forced removal
+            if (completion != null) {
+                completion.close();
+            }
             if (containerId != null) {
-                try {
-                    dockerClient.stopContainerCmd(containerId).withTimeout(5).exec();
-                } catch (Exception ignored) {}
-                try {
-                    dockerClient.removeContainerCmd(containerId).withForce(true).exec();
-                } catch (Exception ignored) {}
+                containerFactory.removeContainer(containerId);
             }
-            // Cleanup temp JAR file
-            if (tempJarPath != null) {
-                try {
-                    Files.deleteIfExists(tempJarPath);
-                    Files.deleteIfExists(tempJarPath.getParent());
-                } catch (Exception ignored) {}
+            if (slotAcquired) {
+                containerPool.releaseSlot(function);
             }
+            // Unpin the cached JAR, or abandon its fetch
+            jarCache.releaseAsync(jarFile);
         }
     }
 
-    /**
-     * Downloads a JAR file from MinIO to a temporary location.
-     */
-    private Path downloadJarFromMinio(String jarPath, String executionId) throws Exception {
-        Path tempDir = Files.createTempDirectory("fn-" + executionId);
-        Path tempJarPath = tempDir.resolve("function.jar");
-
-        try (InputStream is = minioClient.getObject(
-                GetObjectArgs.builder()
-                        .bucket(minioBucket)
-                        .object(jarPath)
-                        .build())) {
-            Files.copy(is, tempJarPath, StandardCopyOption.REPLACE_EXISTING);
-        }
-
-        return tempJarPath;
+    private ExecutionResponse noInstanceResponse(String executionId, FunctionInfo function, LocalDateTime startedAt) {
+        return buildResponse(executionId, function.getName(), ExecutionStatus.TIMEOUT, null,
+                "No instance available within " + function.getTimeoutSeconds()
+                        + " seconds (maxInstances=" + function.getMaxInstances() + ")", startedAt);
     }
 
-    /**
-     * Copies a file into a Docker container using the Docker API.
-     * 
-     * This method creates a TAR archive containing the file and uses
-     * Docker's copyArchiveToContainer API to transfer it. This approach
-     * works reliably in Docker-in-Docker scenarios where volume mounts
-     * would fail due to path resolution issues.
-     */
-    private void copyFileToContainer(String containerId, Path sourceFile, String destPath) throws Exception {
-        // Docker API requires TAR format for copying files
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        try (TarArchiveOutputStream tarOut = new TarArchiveOutputStream(baos)) {
-            tarOut.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
-            
-            // Extract just the filename from destPath
-            String fileName = destPath.substring(destPath.lastIndexOf('/') + 1);
-            
-            TarArchiveEntry entry = new TarArchiveEntry(sourceFile.toFile(), fileName);
-            entry.setSize(Files.size(sourceFile));
-            tarOut.putArchiveEntry(entry);
-            Files.copy(sourceFile, tarOut);
-            tarOut.closeArchiveEntry();
-            tarOut.finish();
-        }
-
-        // Extract directory from destPath
-        String destDir = destPath.substring(0, destPath.lastIndexOf('/'));
-        if (destDir.isEmpty()) {
-            destDir = "/";
-        }
-
-        // Copy the TAR archive to the container
-        try (InputStream tarInput = new ByteArrayInputStream(baos.toByteArray())) {
-            dockerClient.copyArchiveToContainerCmd(containerId)
-                    .withTarInputStream(tarInput)
-                    .withRemotePath(destDir)
-                    .exec();
-        }
+    private ExecutionResponse buildResponse(String executionId, String functionName, ExecutionStatus status,
+                                            String result, String error, LocalDateTime startedAt) {
+        LocalDateTime completedAt = LocalDateTime.now();
+        return ExecutionResponse.builder()
+                .executionId(executionId)
+                .functionName(functionName)
+                .status(status)
+                .result(result)
+                .error(error)
+                .durationMs(java.time.Duration.between(startedAt, completedAt).toMillis())
+                .startedAt(startedAt)
+                .completedAt(completedAt)
+                .build();
     }
 }
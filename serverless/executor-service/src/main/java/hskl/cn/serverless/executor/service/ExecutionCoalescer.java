@@ -0,0 +1,88 @@
+package hskl.cn.serverless.executor.service;
+
+import hskl.cn.serverless.executor.config.CoalescingConfig;
+import hskl.cn.serverless.executor.dto.ExecutionResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Merges identical executions that are in flight at the same time.
+ *
+ * The first execution for a key (see {@link ResultCache#invocationKey}) runs;
+ * executions with the same key that arrive before it finished wait for it and
+ * receive its response. Nothing is kept once the execution finished, so unlike
+ * {@link ResultCache} this is safe for functions that are not deterministic:
+ * callers only share an invocation they could have raced against anyway.
+ *
+ * Executions are counted as {@code executor.coalescing.executions} by role
+ * (leader, follower).
+ */
+@Service
+@RequiredArgsConstructor
+public class ExecutionCoalescer {
+
+    private final CoalescingConfig config;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, CompletableFuture<ExecutionResponse>> inFlight = new ConcurrentHashMap<>();
+
+    private Counter leaders;
+    private Counter followers;
+
+    /**
+     * Response of a coalesced execution; {@code joined} if it was produced by
+     * another caller's execution.
+     */
+    public record Result(ExecutionResponse response, boolean joined) {
+    }
+
+    @PostConstruct
+    void init() {
+        leaders = Counter.builder("executor.coalescing.executions").tag("role", "leader").register(meterRegistry);
+        followers = Counter.builder("executor.coalescing.executions").tag("role", "follower").register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * Runs the execution, or waits for the identical one already in flight.
+     */
+    public Result execute(String key, Supplier<ExecutionResponse> execution) {
+        CompletableFuture<ExecutionResponse> own = new CompletableFuture<>();
+        CompletableFuture<ExecutionResponse> running = inFlight.putIfAbsent(key, own);
+        if (running != null) {
+            followers.increment();
+            try {
+                return new Result(running.join(), true);
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        leaders.increment();
+        try {
+            ExecutionResponse response = execution.get();
+            own.complete(response);
+            return new Result(response, false);
+        } catch (RuntimeException e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    int inFlight() {
+        return inFlight.size();
+    }
+}
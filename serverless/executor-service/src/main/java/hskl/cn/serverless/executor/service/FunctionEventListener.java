@@ -0,0 +1,99 @@
+package hskl.cn.serverless.executor.service;
+
+import hskl.cn.serverless.executor.config.FunctionEventConfig;
+import hskl.cn.serverless.executor.dto.FunctionEvent;
+import hskl.cn.serverless.executor.dto.FunctionInfo;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Applies function changes published by the registry on the
+ * {@code function.events} exchange as they happen, instead of waiting for
+ * the next execution or pool maintenance run.
+ *
+ * Every event first drops the function's cached registry metadata and the
+ * ETag of its JAR, so the next execution sees the change. Cached results of deleted functions are
+ * dropped as well.
+ *
+ * A deleted function is unloaded, its idle instances are stopped and its JAR
+ * is dropped from the cache. For other changes the current metadata is read
+ * from the registry: functions that are no longer ready are unloaded, others
+ * have outdated instances replaced and, with {@code function-events.prefetch},
+ * their JAR and layers downloaded before the first call arrives.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FunctionEventListener {
+
+    private final RegistryClient registryClient;
+    private final JarCache jarCache;
+    private final ContainerPool containerPool;
+    private final InProcessExecutionService inProcessExecutionService;
+    private final FunctionEventConfig config;
+    private final ResultCache resultCache;
+
+    @RabbitListener(queues = "#{functionEventsQueue.name}")
+    public void onEvent(FunctionEvent event) {
+        if (!config.isEnabled() || event.getType() == null || event.getFunctionName() == null) {
+            return;
+        }
+        log.debug("Function {} {}", event.getFunctionName(), event.getType());
+        registryClient.invalidate(event.getFunctionName());
+        if (event.getJarPath() != null) {
+            jarCache.invalidate(event.getJarPath());
+        }
+        try {
+            switch (event.getType()) {
+                case CREATED -> { }
+                case DELETED -> remove(event.getFunctionName(), event.getJarPath());
+                default -> refresh(event);
+            }
+        } catch (Exception e) {
+            log.warn("Could not apply {} of function {}: {}", event.getType(), event.getFunctionName(),
+                    e.getMessage());
+        }
+    }
+
+    private void refresh(FunctionEvent event) throws Exception {
+        Optional<FunctionInfo> latest = registryClient.getFunction(event.getFunctionName());
+        if (latest.isEmpty()) {
+            remove(event.getFunctionName(), event.getJarPath());
+            return;
+        }
+        FunctionInfo function = latest.get();
+        if (!"READY".equals(function.getStatus()) || function.getJarPath() == null) {
+            inProcessExecutionService.evict(function.getName());
+            containerPool.drain(function.getName());
+            return;
+        }
+        inProcessExecutionService.evictIfOutdated(function);
+        if (config.isPrefetch()) {
+            prefetch(function);
+        }
+        containerPool.refresh(function, config.isPrewarm());
+    }
+
+    private void remove(String functionName, String jarPath) {
+        inProcessExecutionService.evict(functionName);
+        resultCache.evict(functionName);
+        containerPool.drain(functionName);
+        if (jarPath != null) {
+            jarCache.evict(jarPath);
+        }
+    }
+
+    private void prefetch(FunctionInfo function) throws Exception {
+        Path jarFile = jarCache.acquire(function);
+        jarCache.release(jarFile);
+        List<Path> layerFiles = jarCache.acquireLayers(function);
+        layerFiles.forEach(jarCache::release);
+        log.debug("Prefetched JAR of function {}", function.getName());
+    }
+}
@@ -0,0 +1,314 @@
+package hskl.cn.serverless.executor.service;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.command.BuildImageResultCallback;
+import com.github.dockerjava.api.command.InspectVolumeResponse;
+import com.github.dockerjava.api.model.Image;
+import hskl.cn.serverless.executor.config.FunctionImageConfig;
+import hskl.cn.serverless.executor.dto.FunctionInfo;
+import hskl.cn.serverless.executor.dto.LayerInfo;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bakes function JARs into per-function images and garbage-collects them.
+ *
+ * On the first execution of a function JAR, the JAR, its layer JARs and the
+ * function-runtime JAR are layered onto the function's image (see {@link ContainerFactory#imageFor})
+ * and tagged {@link ContainerFactory#bakedImageTag}. Containers of the function
+ * then start from that image, so neither a TAR archive nor a copy into the
+ * container is on the execution path. Until the image exists, the JARs come
+ * from the function's JAR volume or are copied in. A tag whose bake failed is
+ * not baked again before {@code function-image.retry-after-failure-ms} has
+ * passed; a new JAR has a new tag and is baked right away.
+ *
+ * All per-function images (baked and jlink, recognised by their
+ * {@code function} label) count against {@code function-image.max-bytes}.
+ * Images of an older JAR version are removed as soon as a newer version is
+ * executed; beyond that, the least recently used images are removed until the
+ * budget is met. Images still used by a container cannot be removed and are
+ * retried on the next collection. JAR volumes of outdated versions (see
+ * {@link ContainerFactory#jarVolumeFor}) are removed the same way.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FunctionImageService {
+
+    static final String FUNCTION_LABEL = "function";
+    static final String JAR_HASH_LABEL = "jar-hash";
+
+    private final DockerClient dockerClient;
+    private final ContainerFactory containerFactory;
+    private final JarCache jarCache;
+    private final FunctionRuntimeJar functionRuntimeJar;
+    private final FunctionImageConfig config;
+
+    private final Map<String, String> currentJarHashes = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastUsed = new ConcurrentHashMap<>();
+    private final Set<String> building = ConcurrentHashMap.newKeySet();
+    /** Tags whose last bake failed, with the time it failed. */
+    private final Map<String, Long> failedAt = new ConcurrentHashMap<>();
+    private final ExecutorService buildExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "function-image-build");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Records the use of the function's images and bakes its image in the
+     * background unless it already exists, is being built or recently failed
+     * to build.
+     */
+    public void bakeIfMissing(FunctionInfo function) {
+        if (function.getJarHash() == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        currentJarHashes.put(function.getName(), function.version());
+        lastUsed.put(containerFactory.imageFor(function), now);
+        if (!config.isEnabled()) {
+            return;
+        }
+        Optional<String> baked = containerFactory.bakedImageFor(function);
+        if (baked.isPresent()) {
+            lastUsed.put(baked.get(), now);
+            return;
+        }
+        String tag;
+        try {
+            tag = containerFactory.bakedImageTag(function);
+        } catch (Exception e) {
+            log.warn("Could not tag image of function {}: {}", function.getName(), e.getMessage());
+            return;
+        }
+        if (recentlyFailed(tag) || !building.add(tag)) {
+            return;
+        }
+        try {
+            buildExecutor.execute(() -> {
+                try {
+                    bake(function, tag);
+                    failedAt.remove(tag);
+                    collectGarbage();
+                } catch (Exception e) {
+                    long failedNow = System.currentTimeMillis();
+                    failedAt.values().removeIf(failed -> failedNow - failed >= config.getRetryAfterFailureMs());
+                    failedAt.put(tag, failedNow);
+                    log.warn("Could not bake image for function {}: {}", function.getName(), e.getMessage());
+                } finally {
+                    building.remove(tag);
+                }
+            });
+        } catch (Exception e) {
+            building.remove(tag);
+        }
+    }
+
+    private boolean recentlyFailed(String tag) {
+        Long failed = failedAt.get(tag);
+        return failed != null && System.currentTimeMillis() - failed < config.getRetryAfterFailureMs();
+    }
+
+    private void bake(FunctionInfo function, String tag) throws Exception {
+        long startedAt = System.currentTimeMillis();
+        String baseImage = containerFactory.imageFor(function);
+        Path jarFile = jarCache.acquire(function);
+        List<Path> layerFiles = List.of();
+        Path context = Files.createTempFile("fn-image-" + function.getName(), ".tar");
+        try {
+            layerFiles = jarCache.acquireLayers(function);
+            writeBuildContext(baseImage, function, jarFile, layerFiles, context);
+            try (InputStream tar = Files.newInputStream(context)) {
+                dockerClient.buildImageCmd()
+                        .withTarInputStream(tar)
+                        .withTags(Set.of(tag))
+                        .withLabels(Map.of(FUNCTION_LABEL, function.getName(), JAR_HASH_LABEL, function.version()))
+                        .exec(new BuildImageResultCallback())
+                        .awaitImageId(config.getBuildTimeoutSeconds(), TimeUnit.SECONDS);
+            }
+        } finally {
+            jarCache.release(jarFile);
+            layerFiles.forEach(jarCache::release);
+            Files.deleteIfExists(context);
+        }
+        containerFactory.imageBuilt(tag);
+        lastUsed.put(tag, System.currentTimeMillis());
+        log.info("Baked image {} for function {} on {} in {} ms", tag, function.getName(), baseImage,
+                System.currentTimeMillis() - startedAt);
+    }
+
+    /**
+     * Writes a Docker build context with the JARs and a Dockerfile that
+     * copies them onto the base image. The entries carry the fixed mtime of
+     * copied files, so CDS archives accept the baked JARs as well.
+     */
+    private void writeBuildContext(String baseImage, FunctionInfo function, Path jarFile, List<Path> layerFiles,
+                                   Path context) throws Exception {
+        StringBuilder files = new StringBuilder("function-runtime.jar function.jar");
+        for (LayerInfo layer : function.getLayers()) {
+            files.append(' ').append(layerFileName(layer));
+        }
+        String dockerfile = "FROM " + baseImage + "\n"
+                + "COPY " + files + " /app/\n"
+                + "WORKDIR /app\n";
+        byte[] dockerfileBytes = dockerfile.getBytes(StandardCharsets.UTF_8);
+
+        try (OutputStream out = Files.newOutputStream(context);
+             TarArchiveOutputStream tarOut = new TarArchiveOutputStream(out)) {
+            tarOut.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+
+            TarArchiveEntry dockerfileEntry = new TarArchiveEntry("Dockerfile");
+            dockerfileEntry.setSize(dockerfileBytes.length);
+            tarOut.putArchiveEntry(dockerfileEntry);
+            tarOut.write(dockerfileBytes);
+            tarOut.closeArchiveEntry();
+
+            addFile(tarOut, functionRuntimeJar.path(), "function-runtime.jar");
+            addFile(tarOut, jarFile, "function.jar");
+            for (int i = 0; i < layerFiles.size(); i++) {
+                addFile(tarOut, layerFiles.get(i), layerFileName(function.getLayers().get(i)));
+            }
+            tarOut.finish();
+        }
+    }
+
+    private static String layerFileName(LayerInfo layer) {
+        String path = ContainerFactory.layerPath(layer);
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    private static void addFile(TarArchiveOutputStream tarOut, Path file, String name) throws Exception {
+        TarArchiveEntry entry = new TarArchiveEntry(name);
+        entry.setSize(Files.size(file));
+        entry.setModTime(ContainerFactory.COPIED_FILE_MTIME);
+        tarOut.putArchiveEntry(entry);
+        Files.copy(file, tarOut);
+        tarOut.closeArchiveEntry();
+    }
+
+    /**
+     * Removes per-function images and JAR volumes of outdated JAR versions,
+     * then the least recently used images until they fit into the disk
+     * budget. An image's size includes its base layers, so the budget errs on
+     * the safe side.
+     */
+    @Scheduled(initialDelayString = "${function-image.gc-interval-ms:300000}",
+            fixedDelayString = "${function-image.gc-interval-ms:300000}")
+    public synchronized void collectGarbage() {
+        collectJarVolumes();
+        List<Image> images;
+        try {
+            images = dockerClient.listImagesCmd().withLabelFilter(FUNCTION_LABEL).exec();
+        } catch (Exception e) {
+            log.warn("Could not list function images: {}", e.getMessage());
+            return;
+        }
+
+        List<TaggedImage> kept = new ArrayList<>();
+        long totalBytes = 0;
+        for (Image image : images) {
+            if (image.getRepoTags() == null) {
+                continue;
+            }
+            Map<String, String> labels = image.getLabels() != null ? image.getLabels() : Map.of();
+            boolean stale = isStale(labels);
+            for (String tag : image.getRepoTags()) {
+                if (tag.startsWith("<none>")) {
+                    continue;
+                }
+                long size = image.getSize() != null ? image.getSize() : 0;
+                if (stale && remove(tag)) {
+                    continue;
+                }
+                long usedAt = lastUsed.getOrDefault(tag,
+                        image.getCreated() != null ? image.getCreated() * 1000 : 0);
+                kept.add(new TaggedImage(tag, size, usedAt));
+                totalBytes += size;
+            }
+        }
+
+        kept.sort(Comparator.comparingLong(TaggedImage::usedAt));
+        for (TaggedImage image : kept) {
+            if (totalBytes <= config.getMaxBytes()) {
+                break;
+            }
+            if (remove(image.tag())) {
+                totalBytes -= image.size();
+            }
+        }
+    }
+
+    private void collectJarVolumes() {
+        List<InspectVolumeResponse> volumes;
+        try {
+            volumes = dockerClient.listVolumesCmd()
+                    .withFilter("label", List.of(FUNCTION_LABEL))
+                    .exec()
+                    .getVolumes();
+        } catch (Exception e) {
+            log.warn("Could not list JAR volumes: {}", e.getMessage());
+            return;
+        }
+        if (volumes == null) {
+            return;
+        }
+        for (InspectVolumeResponse volume : volumes) {
+            if (volume.getLabels() == null || !isStale(volume.getLabels())) {
+                continue;
+            }
+            try {
+                dockerClient.removeVolumeCmd(volume.getName()).exec();
+                containerFactory.jarVolumeRemoved(volume.getName());
+                log.info("Removed JAR volume {}", volume.getName());
+            } catch (Exception e) {
+                log.debug("Could not remove JAR volume {}: {}", volume.getName(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Whether an image or volume belongs to an older JAR version of a function
+     * that has been executed with a newer one.
+     */
+    private boolean isStale(Map<String, String> labels) {
+        String current = currentJarHashes.get(labels.get(FUNCTION_LABEL));
+        return current != null && !current.equals(labels.get(JAR_HASH_LABEL));
+    }
+
+    private boolean remove(String tag) {
+        try {
+            dockerClient.removeImageCmd(tag).exec();
+            containerFactory.imageRemoved(tag);
+            lastUsed.remove(tag);
+            log.info("Removed function image {}", tag);
+            return true;
+        } catch (Exception e) {
+            log.debug("Could not remove function image {}: {}", tag, e.getMessage());
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        buildExecutor.shutdownNow();
+    }
+
+    private record TaggedImage(String tag, long size, long usedAt) {}
+}
@@ -0,0 +1,105 @@
+package hskl.cn.serverless.executor.service;
+
+import hskl.cn.serverless.runtime.FunctionRuntime;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.jar.Manifest;
+
+/**
+ * Packages the function runtime classes into a JAR that is copied into
+ * runtime containers next to the function JAR.
+ *
+ * The classes are taken from the executor's own classpath (the function-runtime
+ * module), so the runtime always matches the executor's protocol version.
+ */
+@Slf4j
+@Component
+public class FunctionRuntimeJar {
+
+    public static final String CONTAINER_PATH = "/app/function-runtime.jar";
+
+    private static final String RUNTIME_PACKAGE = FunctionRuntime.class.getPackageName().replace('.', '/') + "/";
+
+    /** Guards the lazily built JAR; not a monitor, as building it does file I/O. */
+    private final ReentrantLock lock = new ReentrantLock();
+    private Path jarFile;
+    private String checksum;
+
+    public Path path() throws IOException {
+        lock.lock();
+        try {
+            if (jarFile == null || !Files.exists(jarFile)) {
+                jarFile = build();
+                checksum = null;
+            }
+            return jarFile;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * SHA-256 of the runtime JAR, e.g. to tag images that contain it.
+     */
+    public String checksum() throws IOException {
+        lock.lock();
+        try {
+            Path file = path();
+            if (checksum == null) {
+                try {
+                    MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                    checksum = HexFormat.of().formatHex(digest.digest(Files.readAllBytes(file)));
+                } catch (NoSuchAlgorithmException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return checksum;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Path build() throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, FunctionRuntime.class.getName());
+
+        Resource[] classes = new PathMatchingResourcePatternResolver(getClass().getClassLoader())
+                .getResources("classpath*:" + RUNTIME_PACKAGE + "**/*.class");
+
+        Path file = Files.createTempDirectory("function-runtime").resolve("function-runtime.jar");
+        Set<String> written = new HashSet<>();
+        try (JarOutputStream jar = new JarOutputStream(Files.newOutputStream(file), manifest)) {
+            for (Resource resource : classes) {
+                String url = resource.getURL().toString();
+                String entryName = url.substring(url.lastIndexOf(RUNTIME_PACKAGE));
+                if (!written.add(entryName)) {
+                    continue;
+                }
+                jar.putNextEntry(new JarEntry(entryName));
+                try (InputStream is = resource.getInputStream()) {
+                    is.transferTo(jar);
+                }
+                jar.closeEntry();
+            }
+        }
+        log.info("Built function runtime JAR with {} classes: {}", written.size(), file);
+        return file;
+    }
+}
@@ -0,0 +1,292 @@
+package hskl.cn.serverless.executor.service;
+
+import hskl.cn.serverless.executor.config.InProcessConfig;
+import hskl.cn.serverless.executor.dto.FunctionInfo;
+import hskl.cn.serverless.executor.exception.ExecutionException;
+import hskl.cn.serverless.runtime.FunctionHandler;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs trusted functions ({@code isolation=CLASSLOADER}) inside the executor JVM.
+ *
+ * Each function JAR is loaded into its own {@link URLClassLoader} whose parent
+ * is the platform class loader, so functions see neither the executor's classes
+ * nor each other's. The resolved handler is cached per function and instance
+ * version and reloaded when the JAR or the handler changes. A replaced or evicted class loader is
+ * closed, and its JARs released, only once the last invocation running on it
+ * has returned. Invocations run on a bounded thread pool with the function's
+ * timeout; a timed-out invocation is interrupted, but code that ignores
+ * interrupts keeps its thread (and its class loader) until it returns.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InProcessExecutionService {
+
+    public static final String ISOLATION = "CLASSLOADER";
+
+    private final JarCache jarCache;
+    private final InProcessConfig inProcessConfig;
+
+    private final Map<String, LoadedFunction> loaded = new ConcurrentHashMap<>();
+    /** Serializes loads per function; locks rather than monitors since loads download JARs. */
+    private final Map<String, ReentrantLock> loadLocks = new ConcurrentHashMap<>();
+    private ThreadPoolExecutor invoker;
+
+    public boolean supports(FunctionInfo function) {
+        return inProcessConfig.isEnabled() && ISOLATION.equals(function.getIsolation());
+    }
+
+    /**
+     * Invokes the function and returns its result.
+     *
+     * @throws TimeoutException if the function does not return within its timeout
+     * @throws ExecutionException if the function fails or the backend is saturated
+     */
+    public String invoke(FunctionInfo function, String payloadJson) throws Exception {
+        LoadedFunction target = load(function);
+        // Whoever claims the invocation first releases the class loader: the
+        // worker after the handler returned, or the caller if it never started
+        AtomicBoolean claimed = new AtomicBoolean();
+        Future<String> result;
+        try {
+            result = invoker().submit(() -> {
+                if (!claimed.compareAndSet(false, true)) {
+                    return null;
+                }
+                try {
+                    return target.invoke(payloadJson);
+                } finally {
+                    target.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            target.release();
+            throw new ExecutionException("In-process backend is saturated (" + inProcessConfig.getThreads()
+                    + " threads, " + inProcessConfig.getQueueCapacity() + " queued)");
+        }
+        try {
+            return result.get(function.getTimeoutSeconds(), TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            result.cancel(true);
+            if (claimed.compareAndSet(false, true)) {
+                target.release();
+            }
+            throw e;
+        } catch (java.util.concurrent.ExecutionException e) {
+            Throwable cause = e.getCause() instanceof HandlerFailure failure ? failure.getCause() : e.getCause();
+            StringWriter trace = new StringWriter();
+            cause.printStackTrace(new PrintWriter(trace));
+            throw new ExecutionException(trace.toString(), cause);
+        }
+    }
+
+    /**
+     * Unloads the function, e.g. after it was deleted.
+     */
+    public void evict(String functionName) {
+        LoadedFunction removed = loaded.remove(functionName);
+        if (removed != null) {
+            removed.release();
+        }
+    }
+
+    /**
+     * Unloads the function if the loaded JAR or handler is outdated, so the old
+     * class loader does not wait for the next invocation to be released.
+     */
+    public void evictIfOutdated(FunctionInfo function) {
+        LoadedFunction current = loaded.get(function.getName());
+        if (current != null && !Objects.equals(current.version, function.instanceVersion())) {
+            ReentrantLock lock = loadLock(function.getName());
+            lock.lock();
+            try {
+                if (loaded.remove(function.getName(), current)) {
+                    current.release();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (invoker != null) {
+            invoker.shutdownNow();
+        }
+        loaded.keySet().forEach(this::evict);
+    }
+
+    /**
+     * Returns the loaded function, loading its JAR if needed, with a reference
+     * taken for the invocation; the caller must {@link LoadedFunction#release} it.
+     */
+    private LoadedFunction load(FunctionInfo function) throws Exception {
+        String version = function.instanceVersion();
+        LoadedFunction current = loaded.get(function.getName());
+        if (current != null && Objects.equals(current.version, version) && current.retain()) {
+            return current;
+        }
+        ReentrantLock lock = loadLock(function.getName());
+        lock.lock();
+        try {
+            current = loaded.get(function.getName());
+            if (current != null && Objects.equals(current.version, version) && current.retain()) {
+                return current;
+            }
+            Path jarFile = jarCache.acquire(function);
+            List<Path> layerFiles;
+            try {
+                layerFiles = jarCache.acquireLayers(function);
+            } catch (Exception e) {
+                jarCache.release(jarFile);
+                throw e;
+            }
+            LoadedFunction fresh = loadJar(function, version, jarFile, layerFiles);
+            fresh.retain();
+            LoadedFunction replaced = loaded.put(function.getName(), fresh);
+            if (replaced != null) {
+                replaced.release();
+            }
+            log.info("Loaded function {} in-process ({})", function.getName(), fresh.handler.name());
+            return fresh;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReentrantLock loadLock(String functionName) {
+        return loadLocks.computeIfAbsent(functionName, k -> new ReentrantLock());
+    }
+
+    private LoadedFunction loadJar(FunctionInfo function, String version, Path jarFile, List<Path> layerFiles)
+            throws Exception {
+        List<URL> urls = new ArrayList<>();
+        urls.add(jarFile.toUri().toURL());
+        for (Path layerFile : layerFiles) {
+            urls.add(layerFile.toUri().toURL());
+        }
+        URLClassLoader classLoader = new URLClassLoader("fn-" + function.getName(),
+                urls.toArray(URL[]::new), ClassLoader.getPlatformClassLoader());
+        Thread thread = Thread.currentThread();
+        ClassLoader previous = thread.getContextClassLoader();
+        try {
+            thread.setContextClassLoader(classLoader);
+            FunctionHandler handler = FunctionHandler.resolve(function.getHandler(), jarFile, classLoader);
+            return new LoadedFunction(version, jarFile, layerFiles, classLoader, handler, jarCache);
+        } catch (Exception | LinkageError e) {
+            classLoader.close();
+            jarCache.release(jarFile);
+            layerFiles.forEach(jarCache::release);
+            throw new ExecutionException("Could not load function " + function.getName() + ": " + e, e);
+        } finally {
+            thread.setContextClassLoader(previous);
+        }
+    }
+
+    private synchronized ThreadPoolExecutor invoker() {
+        if (invoker == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            invoker = new ThreadPoolExecutor(inProcessConfig.getThreads(), inProcessConfig.getThreads(),
+                    60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(inProcessConfig.getQueueCapacity()), r -> {
+                        Thread thread = new Thread(r, "in-process-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            invoker.allowCoreThreadTimeOut(true);
+        }
+        return invoker;
+    }
+
+    /**
+     * A function JAR loaded into its class loader. It is referenced by the
+     * {@code loaded} map while current and by every invocation running on it;
+     * the class loader is closed and the JARs released when the last
+     * reference is released.
+     */
+    private static final class LoadedFunction {
+
+        private final String version;
+        private final Path jarFile;
+        private final List<Path> layerFiles;
+        private final URLClassLoader classLoader;
+        private final FunctionHandler handler;
+        private final JarCache jarCache;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        LoadedFunction(String version, Path jarFile, List<Path> layerFiles, URLClassLoader classLoader,
+                       FunctionHandler handler, JarCache jarCache) {
+            this.version = version;
+            this.jarFile = jarFile;
+            this.layerFiles = layerFiles;
+            this.classLoader = classLoader;
+            this.handler = handler;
+            this.jarCache = jarCache;
+        }
+
+        /**
+         * Takes a reference unless the function was already unloaded.
+         */
+        boolean retain() {
+            int count;
+            do {
+                count = references.get();
+                if (count == 0) {
+                    return false;
+                }
+            } while (!references.compareAndSet(count, count + 1));
+            return true;
+        }
+
+        void release() {
+            if (references.decrementAndGet() == 0) {
+                try {
+                    classLoader.close();
+                } catch (IOException ignored) {}
+                jarCache.release(jarFile);
+                layerFiles.forEach(jarCache::release);
+            }
+        }
+
+        String invoke(String payloadJson) throws HandlerFailure {
+            Thread thread = Thread.currentThread();
+            ClassLoader previous = thread.getContextClassLoader();
+            thread.setContextClassLoader(classLoader);
+            try {
+                return handler.invoke(payloadJson);
+            } catch (Throwable t) {
+                throw new HandlerFailure(t);
+            } finally {
+                thread.setContextClassLoader(previous);
+            }
+        }
+    }
+
+    /**
+     * Carries any {@link Throwable} of the handler out of the worker thread.
+     */
+    private static class HandlerFailure extends Exception {
+        HandlerFailure(Throwable cause) {
+            super(cause);
+        }
+    }
+}
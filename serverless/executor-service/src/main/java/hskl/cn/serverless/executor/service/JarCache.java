@@ -0,0 +1,584 @@
+package hskl.cn.serverless.executor.service;
+
+import hskl.cn.serverless.executor.config.JarCacheConfig;
+import hskl.cn.serverless.executor.dto.FunctionInfo;
+import hskl.cn.serverless.executor.dto.LayerInfo;
+import hskl.cn.serverless.executor.exception.ExecutionException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.minio.GetObjectArgs;
+import io.minio.MinioClient;
+import io.minio.StatObjectArgs;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Node-local cache of function JARs.
+ *
+ * JARs are keyed by object path and version (the SHA-256 from the registry,
+ * or the MinIO ETag for functions without one), so an execution only goes to
+ * MinIO when the JAR changed. ETags are looked up once per object path and
+ * kept until the function changes (see {@link #invalidate}). Concurrent requests for the same JAR share one
+ * download, and downloads are checked against the registered SHA-256. JARs
+ * with a known SHA-256 are fetched from a peer executor that has them cached
+ * (see {@link JarPeerService}) before falling back to MinIO. Large JARs are
+ * fetched from MinIO with concurrent ranged GETs written into a preallocated
+ * file; the throughput of both download modes is recorded as
+ * {@code executor.jar.download.throughput}.
+ *
+ * {@link #acquire} pins a JAR until the matching {@link #release}; unpinned
+ * JARs are evicted least-recently-used first once the cache exceeds
+ * {@code jar-cache.max-bytes}, older versions of a JAR as soon as a newer one
+ * is cached. Every download gets a file name of its own, so evicted files are
+ * deleted outside the cache's monitor without racing a new download.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class JarCache {
+
+    private final MinioClient minioClient;
+    private final JarCacheConfig config;
+    private final MeterRegistry meterRegistry;
+    private final JarPeerService peers;
+
+    @Value("${minio.bucket:functions}")
+    private String minioBucket;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Path, Entry> entriesByPath = new HashMap<>();
+    private final Map<String, CompletableFuture<Void>> downloads = new ConcurrentHashMap<>();
+    private final Map<String, String> etags = new ConcurrentHashMap<>();
+    private final AtomicLong downloadCount = new AtomicLong();
+    private long totalBytes;
+
+    private Counter hits;
+    private Counter misses;
+    private Counter evictions;
+    private Counter peerDownloads;
+    private Counter minioDownloads;
+    private DistributionSummary singleThroughput;
+    private DistributionSummary parallelThroughput;
+    private ExecutorService partExecutor;
+    private ExecutorService fetchExecutor;
+
+    @PostConstruct
+    void init() throws IOException {
+        Path directory = directory();
+        if (Files.isDirectory(directory)) {
+            try (Stream<Path> files = Files.list(directory)) {
+                files.forEach(JarCache::deleteQuietly);
+            }
+        }
+        Files.createDirectories(directory);
+        hits = Counter.builder("executor.jar.cache.requests").tag("result", "hit").register(meterRegistry);
+        misses = Counter.builder("executor.jar.cache.requests").tag("result", "miss").register(meterRegistry);
+        evictions = Counter.builder("executor.jar.cache.evictions").register(meterRegistry);
+        peerDownloads = Counter.builder("executor.jar.cache.downloads").tag("source", "peer").register(meterRegistry);
+        minioDownloads = Counter.builder("executor.jar.cache.downloads").tag("source", "minio").register(meterRegistry);
+        singleThroughput = throughputSummary("single");
+        parallelThroughput = throughputSummary("parallel");
+        AtomicInteger partThreads = new AtomicInteger();
+        partExecutor = Executors.newFixedThreadPool(Math.max(1, config.getDownloadThreads()), r -> {
+            Thread thread = new Thread(r, "jar-download-" + partThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger fetchThreads = new AtomicInteger();
+        fetchExecutor = Executors.newFixedThreadPool(Math.max(1, config.getFetchThreads()), r -> {
+            Thread thread = new Thread(r, "jar-fetch-" + fetchThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("executor.jar.cache.bytes", this, JarCache::totalBytes)
+                .description("Total size of cached function JARs")
+                .register(meterRegistry);
+    }
+
+    private DistributionSummary throughputSummary(String mode) {
+        return DistributionSummary.builder("executor.jar.download.throughput")
+                .description("Throughput of JAR downloads from MinIO")
+                .baseUnit("bytes/s")
+                .tag("mode", mode)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (partExecutor != null) {
+            partExecutor.shutdownNow();
+        }
+        if (fetchExecutor != null) {
+            fetchExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the cached JAR of the function, downloading it on a miss. The
+     * file stays in the cache until it is released.
+     */
+    public Path acquire(FunctionInfo function) throws Exception {
+        return acquire(function.getJarPath(), function.getJarHash());
+    }
+
+    /**
+     * Like {@link #acquire(FunctionInfo)}, but fetches the JAR in the
+     * background, so the caller can prepare the container meanwhile. Hand the
+     * future to {@link #releaseAsync} in any case.
+     *
+     * Only downloads occupy a fetch thread: a cached JAR is returned as a
+     * completed future, and a JAR that is being downloaded for another
+     * request is returned once that download finished.
+     */
+    public CompletableFuture<Path> acquireAsync(FunctionInfo function) {
+        String version = function.getJarHash() != null ? function.getJarHash() : etags.get(function.getJarPath());
+        CompletableFuture<Path> jarFile = new CompletableFuture<>();
+        if (version != null) {
+            String key = function.getJarPath() + "@" + version;
+            Path cached = pinCached(key);
+            if (cached != null) {
+                jarFile.complete(cached);
+                return jarFile;
+            }
+            CompletableFuture<Void> running = downloads.get(key);
+            if (running != null) {
+                running.whenComplete((done, e) -> acquireAsync(function).whenComplete(
+                        (path, error) -> complete(jarFile, path, error)));
+                return jarFile;
+            }
+        }
+        try {
+            fetchExecutor.execute(() -> {
+                try {
+                    complete(jarFile, acquire(function), null);
+                } catch (Exception e) {
+                    complete(jarFile, null, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            jarFile.completeExceptionally(e);
+        }
+        return jarFile;
+    }
+
+    /**
+     * Completes a future of {@link #acquireAsync}, releasing the JAR right
+     * away if the future was abandoned meanwhile.
+     */
+    private void complete(CompletableFuture<Path> jarFile, Path path, Throwable error) {
+        if (error != null) {
+            jarFile.completeExceptionally(error);
+        } else if (!jarFile.complete(path)) {
+            release(path);
+        }
+    }
+
+    /**
+     * Returns the cached JAR of a layer. Layers are shared between functions,
+     * so each layer version is cached once per node.
+     */
+    public Path acquire(LayerInfo layer) throws Exception {
+        if (layer.getJarPath() == null) {
+            throw new ExecutionException("Layer " + layer.getName() + " has no JAR uploaded");
+        }
+        return acquire(layer.getJarPath(), layer.getJarHash());
+    }
+
+    /**
+     * Acquires the function's layer JARs in classpath order; release each of
+     * them with {@link #release}.
+     */
+    public List<Path> acquireLayers(FunctionInfo function) throws Exception {
+        List<Path> acquired = new ArrayList<>();
+        try {
+            for (LayerInfo layer : function.getLayers()) {
+                acquired.add(acquire(layer));
+            }
+            return acquired;
+        } catch (Exception e) {
+            acquired.forEach(this::release);
+            throw e;
+        }
+    }
+
+    private Path acquire(String jarPath, String jarHash) throws Exception {
+        String version = jarHash != null ? jarHash : etag(jarPath);
+        String key = jarPath + "@" + version;
+        while (true) {
+            Path cached = pinCached(key);
+            if (cached != null) {
+                return cached;
+            }
+            CompletableFuture<Void> download = new CompletableFuture<>();
+            CompletableFuture<Void> running = downloads.putIfAbsent(key, download);
+            if (running != null) {
+                running.exceptionally(e -> null).join();
+                continue;
+            }
+            try {
+                misses.increment();
+                Path path = download(jarPath, jarHash, key);
+                Entry entry = new Entry(key, jarPath, jarHash, path, Files.size(path));
+                List<Path> evicted;
+                synchronized (this) {
+                    entries.put(key, entry);
+                    entriesByPath.put(path, entry);
+                    totalBytes += entry.size;
+                    entries.values().stream()
+                            .filter(other -> other != entry && other.jarPath.equals(jarPath))
+                            .forEach(other -> other.stale = true);
+                    evicted = evict();
+                }
+                evicted.forEach(JarCache::deleteWithArchives);
+                download.complete(null);
+                announce();
+                return path;
+            } catch (Exception e) {
+                download.completeExceptionally(e);
+                throw e;
+            } finally {
+                downloads.remove(key, download);
+            }
+        }
+    }
+
+    private synchronized Path pinCached(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        entry.pins++;
+        hits.increment();
+        return entry.path;
+    }
+
+    /**
+     * Releases a JAR returned by {@link #acquire}.
+     */
+    public void release(Path jarFile) {
+        List<Path> evicted = List.of();
+        synchronized (this) {
+            Entry entry = jarFile != null ? entriesByPath.get(jarFile) : null;
+            if (entry != null && entry.pins > 0) {
+                entry.pins--;
+                evicted = evict();
+            }
+        }
+        evicted.forEach(JarCache::deleteWithArchives);
+    }
+
+    /**
+     * Releases a JAR returned by {@link #acquireAsync}. A fetch that has not
+     * finished yet is abandoned; its JAR is released as soon as it arrives.
+     */
+    public void releaseAsync(CompletableFuture<Path> jarFile) {
+        if (jarFile != null) {
+            jarFile.cancel(false);
+            jarFile.thenAccept(this::release);
+        }
+    }
+
+    /**
+     * Drops all cached versions of the JAR at the given object path, e.g.
+     * after its function was deleted. Versions in use are dropped on release.
+     */
+    public void evict(String jarPath) {
+        etags.remove(jarPath);
+        List<Path> evicted;
+        synchronized (this) {
+            entries.values().stream()
+                    .filter(entry -> entry.jarPath.equals(jarPath))
+                    .forEach(entry -> entry.stale = true);
+            evicted = evict();
+        }
+        evicted.forEach(JarCache::deleteWithArchives);
+    }
+
+    /**
+     * Forgets the ETag looked up for the JAR at the given object path, e.g.
+     * after its function changed, so the next acquire asks MinIO again.
+     */
+    public void invalidate(String jarPath) {
+        etags.remove(jarPath);
+    }
+
+    /**
+     * Pins the cached JAR with the given SHA-256, e.g. to serve it to a peer.
+     * Release it with {@link #release}.
+     */
+    public synchronized Optional<Path> acquireCached(String sha256) {
+        for (Entry entry : entries.values()) {
+            if (sha256.equalsIgnoreCase(entry.sha256)) {
+                entry.pins++;
+                return Optional.of(entry.path);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * SHA-256 hashes of the cached JARs that peers can fetch from this node.
+     */
+    public synchronized List<String> hashes() {
+        return entries.values().stream()
+                .map(entry -> entry.sha256)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    /**
+     * Announces the cached JARs to the peers; repeated so that new replicas
+     * and peers that missed an announcement catch up.
+     */
+    @Scheduled(initialDelayString = "${jar-peers.announce-interval-ms:30000}",
+            fixedDelayString = "${jar-peers.announce-interval-ms:30000}")
+    public void announce() {
+        peers.announce(hashes());
+    }
+
+    public synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Drops unpinned entries that are stale or exceed the cache size. Called
+     * with the monitor held; the caller deletes the returned files after
+     * leaving it.
+     */
+    private List<Path> evict() {
+        List<Path> evicted = new ArrayList<>();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.pins == 0 && (entry.stale || totalBytes > config.getMaxBytes())) {
+                iterator.remove();
+                entriesByPath.remove(entry.path);
+                totalBytes -= entry.size;
+                evictions.increment();
+                evicted.add(entry.path);
+                log.debug("Evicted {} from the JAR cache", entry.key);
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Downloads the JAR into the cache directory, from a peer if one has it,
+     * otherwise from MinIO, verifying the SHA-256 if known.
+     */
+    private Path download(String jarPath, String sha256, String key) throws Exception {
+        Path target = directory().resolve(fileName(key, downloadCount.incrementAndGet()));
+        Path part = Files.createTempFile(directory(), "download", ".part");
+        try {
+            if (sha256 != null && peers.download(sha256, part)) {
+                peerDownloads.increment();
+            } else {
+                downloadFromMinio(jarPath, sha256, part);
+                minioDownloads.increment();
+            }
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Cached JAR {} ({} bytes)", jarPath, Files.size(target));
+            return target;
+        } finally {
+            deleteQuietly(part);
+        }
+    }
+
+    private void downloadFromMinio(String jarPath, String sha256, Path part) throws Exception {
+        long startedAt = System.nanoTime();
+        long size = config.getDownloadThreads() > 1 ? size(jarPath) : -1;
+        String actual;
+        boolean parallel = size >= config.getParallelThresholdBytes();
+        if (parallel) {
+            downloadRanges(jarPath, size, part);
+            actual = sha256(part);
+        } else {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (InputStream is = new DigestInputStream(minioClient.getObject(
+                    GetObjectArgs.builder()
+                            .bucket(minioBucket)
+                            .object(jarPath)
+                            .build()), digest)) {
+                Files.copy(is, part, StandardCopyOption.REPLACE_EXISTING);
+            }
+            actual = HexFormat.of().formatHex(digest.digest());
+        }
+        long elapsedNanos = Math.max(1, System.nanoTime() - startedAt);
+        double bytesPerSecond = Files.size(part) * 1e9 / elapsedNanos;
+        (parallel ? parallelThroughput : singleThroughput).record(bytesPerSecond);
+        log.debug("Downloaded {} from MinIO ({}) at {} MB/s", jarPath, parallel ? "parallel" : "single",
+                String.format("%.1f", bytesPerSecond / (1024 * 1024)));
+        if (sha256 != null && !sha256.equalsIgnoreCase(actual)) {
+            throw new ExecutionException("Checksum mismatch for " + jarPath + ": expected " + sha256
+                    + " but downloaded " + actual);
+        }
+    }
+
+    /**
+     * Downloads the object with concurrent ranged GETs into a file of its
+     * final size. The part size grows with the object so that each of the
+     * {@code downloadThreads} fetches one part; the calling thread fetches the
+     * first part itself.
+     */
+    private void downloadRanges(String jarPath, long size, Path part) throws Exception {
+        long partSize = Math.max(config.getMinPartBytes(),
+                (size + config.getDownloadThreads() - 1) / config.getDownloadThreads());
+        try (RandomAccessFile file = new RandomAccessFile(part.toFile(), "rw")) {
+            file.setLength(size);
+        }
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.WRITE)) {
+            List<Future<?>> parts = new ArrayList<>();
+            try {
+                for (long offset = partSize; offset < size; offset += partSize) {
+                    long start = offset;
+                    long length = Math.min(partSize, size - offset);
+                    parts.add(partExecutor.submit(() -> {
+                        downloadRange(jarPath, start, length, channel);
+                        return null;
+                    }));
+                }
+                downloadRange(jarPath, 0, Math.min(partSize, size), channel);
+                for (Future<?> range : parts) {
+                    range.get();
+                }
+            } catch (java.util.concurrent.ExecutionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            } finally {
+                parts.forEach(range -> range.cancel(true));
+            }
+        }
+    }
+
+    private void downloadRange(String jarPath, long offset, long length, FileChannel channel) throws Exception {
+        try (InputStream is = minioClient.getObject(
+                GetObjectArgs.builder()
+                        .bucket(minioBucket)
+                        .object(jarPath)
+                        .offset(offset)
+                        .length(length)
+                        .build())) {
+            byte[] buffer = new byte[64 * 1024];
+            long position = offset;
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                while (chunk.hasRemaining()) {
+                    position += channel.write(chunk, position);
+                }
+            }
+            if (position != offset + length) {
+                throw new IOException("Short read of " + jarPath + " at offset " + offset + ": got "
+                        + (position - offset) + " of " + length + " bytes");
+            }
+        }
+    }
+
+    private long size(String jarPath) throws Exception {
+        return minioClient.statObject(
+                StatObjectArgs.builder()
+                        .bucket(minioBucket)
+                        .object(jarPath)
+                        .build()).size();
+    }
+
+    static String sha256(Path file) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private String etag(String jarPath) throws Exception {
+        String etag = etags.get(jarPath);
+        if (etag == null) {
+            etag = minioClient.statObject(
+                    StatObjectArgs.builder()
+                            .bucket(minioBucket)
+                            .object(jarPath)
+                            .build()).etag();
+            etags.put(jarPath, etag);
+        }
+        return etag;
+    }
+
+    private Path directory() {
+        return Paths.get(config.getDirectory());
+    }
+
+    private static String fileName(String key, long download) throws Exception {
+        byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(hash) + "-" + download + ".jar";
+    }
+
+    /**
+     * Deletes a cached JAR and the TAR archives built from it
+     * (see {@link ContainerFactory#tarFor}).
+     */
+    private static void deleteWithArchives(Path jarFile) {
+        deleteQuietly(jarFile);
+        try (DirectoryStream<Path> archives = Files.newDirectoryStream(jarFile.getParent(),
+                jarFile.getFileName() + ".*.tar")) {
+            archives.forEach(JarCache::deleteQuietly);
+        } catch (IOException e) {
+            log.debug("Could not delete archives of {}: {}", jarFile, e.getMessage());
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {}
+    }
+
+    private static final class Entry {
+        private final String key;
+        private final String jarPath;
+        private final String sha256;
+        private final Path path;
+        private final long size;
+        private int pins = 1;
+        private boolean stale;
+
+        private Entry(String key, String jarPath, String sha256, Path path, long size) {
+            this.key = key;
+            this.jarPath = jarPath;
+            this.sha256 = sha256;
+            this.path = path;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package hskl.cn.serverless.executor.service;
+
+import hskl.cn.serverless.executor.config.JarPeerConfig;
+import hskl.cn.serverless.executor.config.RabbitMQConfig;
+import hskl.cn.serverless.executor.dto.JarAnnouncement;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+
+import java.net.InetAddress;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shares cached function JARs between executor replicas.
+ *
+ * Every executor broadcasts the SHA-256 hashes in its {@link JarCache} over the
+ * {@link RabbitMQConfig#JAR_PEERS_EXCHANGE} fanout exchange and serves the JARs
+ * under {@code /api/v1/jars/{sha256}}. On a cache miss, {@link #download} tries
+ * a few random peers that announced the hash before the cache falls back to
+ * MinIO, so scaling out does not multiply the load on MinIO. Every download
+ * is verified against the hash; a peer that sends other bytes is skipped.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class JarPeerService {
+
+    static final String JAR_PATH = "/api/v1/jars/";
+
+    private final RabbitTemplate rabbitTemplate;
+    private final WebClient peerWebClient;
+    private final JarPeerConfig config;
+
+    @Value("${server.port:8081}")
+    private int serverPort;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, Peer> peers = new ConcurrentHashMap<>();
+    private volatile String url;
+
+    /**
+     * Broadcasts the hashes of the JARs this executor can serve.
+     */
+    public void announce(Collection<String> hashes) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        try {
+            rabbitTemplate.convertAndSend(RabbitMQConfig.JAR_PEERS_EXCHANGE, "", JarAnnouncement.builder()
+                    .nodeId(nodeId)
+                    .url(url())
+                    .hashes(new ArrayList<>(hashes))
+                    .build());
+        } catch (Exception e) {
+            log.debug("Could not announce cached JARs: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Tells the peers that this executor no longer serves JARs.
+     */
+    @PreDestroy
+    public void shutdown() {
+        announce(List.of());
+    }
+
+    @RabbitListener(queues = "#{jarPeersQueue.name}")
+    public void onAnnouncement(JarAnnouncement announcement) {
+        if (nodeId.equals(announcement.getNodeId()) || announcement.getUrl() == null) {
+            return;
+        }
+        if (announcement.getHashes() == null || announcement.getHashes().isEmpty()) {
+            peers.remove(announcement.getNodeId());
+            return;
+        }
+        peers.put(announcement.getNodeId(), new Peer(announcement.getUrl(),
+                Set.copyOf(announcement.getHashes()), System.currentTimeMillis()));
+    }
+
+    /**
+     * Base URLs of the peers that announced the JAR, in random order.
+     */
+    List<String> peersWith(String sha256) {
+        long expiredBefore = System.currentTimeMillis() - config.getPeerTtlMs();
+        peers.values().removeIf(peer -> peer.announcedAt() < expiredBefore);
+        List<String> urls = new ArrayList<>();
+        for (Peer peer : peers.values()) {
+            if (peer.hashes().contains(sha256)) {
+                urls.add(peer.url());
+            }
+        }
+        Collections.shuffle(urls);
+        return urls;
+    }
+
+    /**
+     * Downloads the JAR with the given hash from a peer into the target file.
+     *
+     * @return false if no peer could deliver the JAR with a matching hash
+     */
+    public boolean download(String sha256, Path target) {
+        if (!config.isEnabled()) {
+            return false;
+        }
+        List<String> candidates = peersWith(sha256);
+        for (String peer : candidates.subList(0, Math.min(config.getMaxAttempts(), candidates.size()))) {
+            try {
+                Flux<DataBuffer> body = peerWebClient.get()
+                        .uri(peer + JAR_PATH + sha256)
+                        .retrieve()
+                        .bodyToFlux(DataBuffer.class);
+                DataBufferUtils.write(body, target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                StandardOpenOption.TRUNCATE_EXISTING)
+                        .block(Duration.ofMillis(config.getTimeoutMs()));
+                String actual = JarCache.sha256(target);
+                if (sha256.equalsIgnoreCase(actual)) {
+                    log.info("Fetched JAR {} from peer {}", sha256, peer);
+                    return true;
+                }
+                log.warn("Peer {} sent JAR {} with hash {}", peer, sha256, actual);
+            } catch (Exception e) {
+                log.debug("Could not fetch JAR {} from peer {}: {}", sha256, peer, e.getMessage());
+            }
+        }
+        return false;
+    }
+
+    private String url() {
+        if (url == null) {
+            String advertised = config.getAdvertisedUrl();
+            if (advertised == null || advertised.isBlank()) {
+                try {
+                    advertised = "http://" + InetAddress.getLocalHost().getHostAddress() + ":" + serverPort;
+                } catch (Exception e) {
+                    advertised = "http://localhost:" + serverPort;
+                }
+            }
+            url = advertised.endsWith("/") ? advertised.substring(0, advertised.length() - 1) : advertised;
+        }
+        return url;
+    }
+
+    private record Peer(String url, Set<String> hashes, long announcedAt) {}
+}
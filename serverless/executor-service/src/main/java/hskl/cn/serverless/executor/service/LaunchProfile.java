@@ -0,0 +1,17 @@
+package hskl.cn.serverless.executor.service;
+
+/**
+ * JVM profile a function container is started with (see {@link LaunchProfileService}).
+ */
+public enum LaunchProfile {
+
+    /**
+     * Fast startup for functions that run briefly: C1 only, Serial GC, small thread stacks.
+     */
+    SHORT_LIVED,
+
+    /**
+     * Best steady-state latency for long or frequently invoked functions: C2, Parallel GC.
+     */
+    THROUGHPUT
+}
@@ -0,0 +1,97 @@
+package hskl.cn.serverless.executor.service;
+
+import hskl.cn.serverless.executor.config.LaunchProfileConfig;
+import hskl.cn.serverless.executor.dto.FunctionInfo;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chooses the JVM launch profile of a function and builds its JVM options.
+ *
+ * Functions registered with {@code SHORT_LIVED} or {@code THROUGHPUT} always
+ * get that profile. With {@code AUTO} (the default) the executor keeps an
+ * exponentially weighted moving average of each function's execution time:
+ * functions start out short-lived and switch to throughput once the average
+ * reaches {@code launch-profile.auto-throughput-threshold-ms}. The switch
+ * applies to containers started afterwards.
+ *
+ * Execution times are recorded as {@code executor.invocation}, tagged by
+ * profile and mode ({@code runtime} for invocations in a running instance,
+ * {@code one-shot} for a complete container run), so the choice can be
+ * compared with the profile's {@code executor.cold.start} times.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LaunchProfileService {
+
+    private final LaunchProfileConfig config;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Double> averageDurationMs = new ConcurrentHashMap<>();
+
+    public LaunchProfile select(FunctionInfo function) {
+        if ("SHORT_LIVED".equals(function.getLaunchProfile())) {
+            return LaunchProfile.SHORT_LIVED;
+        }
+        if ("THROUGHPUT".equals(function.getLaunchProfile())) {
+            return LaunchProfile.THROUGHPUT;
+        }
+        Double average = averageDurationMs.get(function.getName());
+        return average != null && average >= config.getAutoThroughputThresholdMs()
+                ? LaunchProfile.THROUGHPUT
+                : LaunchProfile.SHORT_LIVED;
+    }
+
+    /**
+     * JVM options for the profile in a container with {@code memoryMb} memory.
+     */
+    public List<String> jvmOptions(LaunchProfile profile, int memoryMb) {
+        List<String> options = new ArrayList<>();
+        options.add("-Xmx" + Math.max(16, memoryMb * config.getHeapPercent() / 100) + "m");
+        if (profile == LaunchProfile.SHORT_LIVED) {
+            options.add("-XX:TieredStopAtLevel=1");
+            options.add("-XX:+UseSerialGC");
+            options.add("-Xss" + config.getShortLivedStackSizeKb() + "k");
+        } else {
+            options.add("-XX:+UseParallelGC");
+        }
+        return options;
+    }
+
+    /**
+     * Records the duration of a successful execution and feeds it into the
+     * moving average used by {@code AUTO}.
+     */
+    public void record(FunctionInfo function, LaunchProfile profile, String mode, long durationMs) {
+        Timer.builder("executor.invocation")
+                .description("Execution time of functions by launch profile")
+                .tag("profile", profile.name())
+                .tag("mode", mode)
+                .register(meterRegistry)
+                .record(durationMs, TimeUnit.MILLISECONDS);
+
+        double smoothing = config.getAutoSmoothing();
+        Double before = averageDurationMs.get(function.getName());
+        Double after = averageDurationMs.merge(function.getName(), (double) durationMs,
+                (average, sample) -> average + smoothing * (sample - average));
+        boolean auto = function.getLaunchProfile() == null || "AUTO".equals(function.getLaunchProfile());
+        if (auto && before != null && aboveThreshold(before) != aboveThreshold(after)) {
+            log.info("Average execution time of function {} is now {} ms, AUTO profile switches to {}",
+                    function.getName(), Math.round(after), select(function));
+        }
+    }
+
+    private boolean aboveThreshold(double averageMs) {
+        return averageMs >= config.getAutoThroughputThresholdMs();
+    }
+}
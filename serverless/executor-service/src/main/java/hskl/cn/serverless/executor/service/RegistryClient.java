@@ -1,36 +1,280 @@
 package hskl.cn.serverless.executor.service;
 
+import hskl.cn.serverless.executor.config.RegistryCacheConfig;
 import hskl.cn.serverless.executor.dto.FunctionInfo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Client for the function registry.
+ *
+ * Function metadata read by {@link #getFunction} is cached in-process (see
+ * {@link RegistryCacheConfig}), bounded to {@code registry-cache.max-entries}
+ * functions, least-recently-used first. Concurrent lookups of a function that
+ * is not cached share one registry request. Entries past their refresh age
+ * are served while a background refresh runs; if the registry is down, older
+ * entries are served rather than failing the execution. Unknown functions are
+ * cached briefly as well. {@link FunctionEventListener} invalidates entries as
+ * soon as the registry publishes a change. Entries are revalidated with the
+ * registry's ETag, so an unchanged function costs a 304 without a body.
+ *
+ * Lookups are counted as {@code executor.registry.cache.requests} by result
+ * (hit, stale, miss), registry requests are timed as
+ * {@code executor.registry.cache.load} by outcome (found, not_modified,
+ * not_found, error).
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class RegistryClient {
 
     private final WebClient registryWebClient;
+    private final RegistryCacheConfig cacheConfig;
+    private final MeterRegistry meterRegistry;
+
+    private final LinkedHashMap<String, CachedFunction> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<Optional<FunctionInfo>>> loads = new ConcurrentHashMap<>();
+
+    private Counter hits;
+    private Counter staleHits;
+    private Counter misses;
+    private Counter staleIfError;
+    private ExecutorService refreshExecutor;
+
+    private record CachedFunction(Optional<FunctionInfo> function, String etag, long loadedAt) {
+
+        long age() {
+            return System.currentTimeMillis() - loadedAt;
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        hits = Counter.builder("executor.registry.cache.requests").tag("result", "hit").register(meterRegistry);
+        staleHits = Counter.builder("executor.registry.cache.requests").tag("result", "stale").register(meterRegistry);
+        misses = Counter.builder("executor.registry.cache.requests").tag("result", "miss").register(meterRegistry);
+        staleIfError = Counter.builder("executor.registry.cache.stale-if-error")
+                .description("Lookups served from the cache because the registry was unavailable")
+                .register(meterRegistry);
+        Gauge.builder("executor.registry.cache.size", this, RegistryClient::cacheSize)
+                .description("Number of functions in the metadata cache")
+                .register(meterRegistry);
+        AtomicInteger refreshThreads = new AtomicInteger();
+        refreshExecutor = Executors.newFixedThreadPool(Math.max(1, cacheConfig.getRefreshThreads()), r -> {
+            Thread thread = new Thread(r, "registry-refresh-" + refreshThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+        }
+    }
 
     public Optional<FunctionInfo> getFunction(String functionName) {
+        if (!cacheConfig.isEnabled()) {
+            return fetchFunction(functionName, null).function();
+        }
+        CachedFunction cached = cached(functionName);
+        if (cached != null) {
+            long age = cached.age();
+            long freshFor = cached.function().isPresent()
+                    ? cacheConfig.getRefreshAfterMs() : cacheConfig.getNotFoundTtlMs();
+            if (age < freshFor) {
+                hits.increment();
+                return cached.function();
+            }
+            if (cached.function().isPresent() && age < cacheConfig.getExpireAfterMs()) {
+                staleHits.increment();
+                refreshInBackground(functionName);
+                return cached.function();
+            }
+        }
+        misses.increment();
         try {
-            FunctionInfo function = registryWebClient
+            return load(functionName).join();
+        } catch (CompletionException e) {
+            if (cached != null && cached.function().isPresent() && cached.age() < cacheConfig.getStaleIfErrorMs()) {
+                staleIfError.increment();
+                log.warn("Registry unavailable, using cached metadata of function {} ({} ms old): {}",
+                        functionName, cached.age(), e.getCause().getMessage());
+                return cached.function();
+            }
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : e;
+        }
+    }
+
+    /**
+     * Drops the cached metadata of the function, so the next lookup reads it
+     * from the registry. A registry request already in flight is not cached.
+     */
+    public synchronized void invalidate(String functionName) {
+        cache.remove(functionName);
+        loads.remove(functionName);
+    }
+
+    public List<FunctionInfo> getAllFunctions() {
+        try {
+            List<FunctionInfo> functions = registryWebClient
+                    .get()
+                    .uri("/api/v1/functions")
+                    .retrieve()
+                    .bodyToFlux(FunctionInfo.class)
+                    .collectList()
+                    .block();
+            return functions != null ? functions : List.of();
+        } catch (Exception e) {
+            log.error("Failed to list functions from registry: {}", e.getMessage());
+            throw new RuntimeException("Failed to list functions from registry", e);
+        }
+    }
+
+    /**
+     * Records the runtime image built for the function's JAR with the given hash.
+     */
+    public void updateRuntimeImage(String functionName, String image, String jarHash) {
+        try {
+            registryWebClient
+                    .put()
+                    .uri("/api/v1/functions/name/{name}/runtime-image", functionName)
+                    .bodyValue(Map.of("image", image, "jarHash", jarHash))
+                    .retrieve()
+                    .toBodilessEntity()
+                    .block();
+        } catch (Exception e) {
+            log.error("Failed to update runtime image in registry: {}", e.getMessage());
+            throw new RuntimeException("Failed to update runtime image in registry", e);
+        }
+    }
+
+    /**
+     * Reads the function from the registry, unless a request for it is already
+     * in flight, in which case that request's result is shared.
+     */
+    private CompletableFuture<Optional<FunctionInfo>> load(String functionName) {
+        CompletableFuture<Optional<FunctionInfo>> load = new CompletableFuture<>();
+        CompletableFuture<Optional<FunctionInfo>> running = loads.putIfAbsent(functionName, load);
+        if (running != null) {
+            return running;
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            CachedFunction previous = cached(functionName);
+            CachedFunction loaded = fetchFunction(functionName, previous);
+            outcome = loaded == previous ? "not_modified" : loaded.function().isPresent() ? "found" : "not_found";
+            if (loaded == previous) {
+                loaded = new CachedFunction(previous.function(), previous.etag(), System.currentTimeMillis());
+            }
+            store(functionName, load, loaded);
+            load.complete(loaded.function());
+        } catch (RuntimeException e) {
+            loads.remove(functionName, load);
+            load.completeExceptionally(e);
+        } finally {
+            sample.stop(Timer.builder("executor.registry.cache.load")
+                    .description("Duration of function metadata requests to the registry")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+        return load;
+    }
+
+    private void refreshInBackground(String functionName) {
+        if (loads.containsKey(functionName)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> load(functionName).exceptionally(e -> {
+                log.warn("Could not refresh metadata of function {}: {}", functionName, e.getMessage());
+                return Optional.empty();
+            }));
+        } catch (Exception e) {
+            log.debug("Could not schedule refresh of function {}: {}", functionName, e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the function from the registry. If a previously read version is
+     * given, the registry is asked to confirm it via its ETag and the same
+     * instance is returned if it is still current.
+     */
+    private CachedFunction fetchFunction(String functionName, CachedFunction previous) {
+        String etag = previous != null && previous.function().isPresent() ? previous.etag() : null;
+        try {
+            ResponseEntity<FunctionInfo> response = registryWebClient
                     .get()
                     .uri("/api/v1/functions/name/{name}", functionName)
+                    .headers(headers -> {
+                        if (etag != null) {
+                            headers.setIfNoneMatch(etag);
+                        }
+                    })
                     .retrieve()
-                    .bodyToMono(FunctionInfo.class)
+                    .toEntity(FunctionInfo.class)
                     .block();
-            return Optional.ofNullable(function);
+            if (response != null && response.getStatusCode() == HttpStatus.NOT_MODIFIED && etag != null) {
+                return previous;
+            }
+            return new CachedFunction(Optional.ofNullable(response != null ? response.getBody() : null),
+                    response != null ? response.getHeaders().getETag() : null, System.currentTimeMillis());
         } catch (WebClientResponseException.NotFound e) {
             log.warn("Function not found: {}", functionName);
-            return Optional.empty();
+            return new CachedFunction(Optional.empty(), null, System.currentTimeMillis());
         } catch (Exception e) {
             log.error("Failed to get function from registry: {}", e.getMessage());
             throw new RuntimeException("Failed to get function from registry", e);
         }
     }
+
+    private synchronized CachedFunction cached(String functionName) {
+        return cache.get(functionName);
+    }
+
+    /**
+     * Caches the result of a registry request unless the function was
+     * invalidated while the request was in flight.
+     */
+    private synchronized void store(String functionName, CompletableFuture<Optional<FunctionInfo>> load,
+                                    CachedFunction cached) {
+        if (!loads.remove(functionName, load)) {
+            return;
+        }
+        cache.put(functionName, cached);
+        Iterator<String> eldest = cache.keySet().iterator();
+        while (cache.size() > cacheConfig.getMaxEntries() && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    synchronized int cacheSize() {
+        return cache.size();
+    }
 }
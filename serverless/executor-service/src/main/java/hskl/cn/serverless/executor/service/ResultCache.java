@@ -0,0 +1,167 @@
+package hskl.cn.serverless.executor.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import hskl.cn.serverless.executor.config.ResultCacheConfig;
+import hskl.cn.serverless.executor.dto.FunctionInfo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Cache of successful results of functions flagged as deterministic.
+ *
+ * Results are keyed by function name, classpath version
+ * ({@link FunctionInfo#version()}), handler and a SHA-256 over the payload
+ * serialized with map keys sorted, so payloads that only differ in key order
+ * share an entry and a new JAR, layer or handler never serves results of the
+ * old one. Entries
+ * expire after {@code result-cache.ttl-ms}; once the estimated size of all
+ * results exceeds {@code result-cache.max-bytes}, the least recently used are
+ * evicted first.
+ *
+ * Lookups are counted as {@code executor.result.cache.requests} by result
+ * (hit, miss).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ResultCache {
+
+    /** Rough per-entry overhead of the map entry, key and record. */
+    private static final long ENTRY_OVERHEAD_BYTES = 160;
+
+    private final ResultCacheConfig config;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private ObjectMapper canonicalMapper;
+    private Counter hits;
+    private Counter misses;
+    private Counter evictions;
+
+    private record Entry(String functionName, String result, long bytes, long expiresAt) {
+    }
+
+    @PostConstruct
+    void init() {
+        canonicalMapper = objectMapper.copy().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+        hits = Counter.builder("executor.result.cache.requests").tag("result", "hit").register(meterRegistry);
+        misses = Counter.builder("executor.result.cache.requests").tag("result", "miss").register(meterRegistry);
+        evictions = Counter.builder("executor.result.cache.evictions").register(meterRegistry);
+        Gauge.builder("executor.result.cache.bytes", this, ResultCache::totalBytes)
+                .description("Estimated size of cached function results")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Whether results of the function may be cached.
+     */
+    public boolean supports(FunctionInfo function) {
+        return config.isEnabled() && Boolean.TRUE.equals(function.getDeterministic());
+    }
+
+    /**
+     * Returns the cached result of invoking the function with the payload.
+     */
+    public Optional<String> lookup(FunctionInfo function, Map<String, Object> payload) {
+        if (!supports(function)) {
+            return Optional.empty();
+        }
+        Optional<String> result = get(invocationKey(function, payload));
+        (result.isPresent() ? hits : misses).increment();
+        return result;
+    }
+
+    /**
+     * Caches the successful result of invoking the function with the payload.
+     */
+    public void store(FunctionInfo function, Map<String, Object> payload, String result) {
+        if (!supports(function) || result == null) {
+            return;
+        }
+        String key = invocationKey(function, payload);
+        long bytes = ENTRY_OVERHEAD_BYTES + 2L * (key.length() + result.length());
+        if (bytes > config.getMaxResultBytes()) {
+            log.debug("Not caching result of {} ({} bytes)", function.getName(), bytes);
+            return;
+        }
+        put(key, new Entry(function.getName(), result, bytes, System.currentTimeMillis() + config.getTtlMs()));
+    }
+
+    /**
+     * Drops all cached results of the function.
+     */
+    public synchronized void evict(String functionName) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.functionName().equals(functionName)) {
+                iterator.remove();
+                totalBytes -= entry.bytes();
+            }
+        }
+    }
+
+    synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    private synchronized Optional<String> get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (entry.expiresAt() <= System.currentTimeMillis()) {
+            entries.remove(key);
+            totalBytes -= entry.bytes();
+            return Optional.empty();
+        }
+        return Optional.of(entry.result());
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            totalBytes -= previous.bytes();
+        }
+        totalBytes += entry.bytes();
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (totalBytes > config.getMaxBytes() && eldest.hasNext()) {
+            Entry evicted = eldest.next();
+            eldest.remove();
+            totalBytes -= evicted.bytes();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Key identifying an invocation of the function's current version with the
+     * payload; also used by {@link ExecutionCoalescer}.
+     */
+    public String invocationKey(FunctionInfo function, Map<String, Object> payload) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonicalMapper.writeValueAsBytes(payload));
+            return function.getName() + "@" + function.version() + "/" + function.getHandler() + "#"
+                    + HexFormat.of().formatHex(digest);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not hash payload of " + function.getName(), e);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package hskl.cn.serverless.executor.service;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.command.BuildImageResultCallback;
+import com.github.dockerjava.api.command.WaitContainerResultCallback;
+import hskl.cn.serverless.executor.config.DockerConfig;
+import hskl.cn.serverless.executor.config.JlinkConfig;
+import hskl.cn.serverless.executor.dto.FunctionInfo;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds a minimal runtime image per function JAR.
+ *
+ * jdeps lists the JDK modules the function JAR and the function runtime need,
+ * jlink links a runtime of only those modules (with a CDS base archive), and
+ * the runtime is copied onto a small base image tagged
+ * {@code fn-jre-<function>:<jar hash>}. The tag is recorded in the registry;
+ * {@link ContainerFactory#imageFor} then starts the function's containers on
+ * it wherever the image exists. Each executor builds the image for its own
+ * Docker host the first time it runs the function; until then the function
+ * runs on the full runtime image. A tag whose build failed is not built again
+ * before {@code jlink.retry-after-failure-ms} has passed; a new JAR has a new
+ * tag and is built right away.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RuntimeImageBuilder {
+
+    private static final String OUTPUT_PATH = "/out/jre";
+    private static final int TAG_HASH_LENGTH = 12;
+
+    private final DockerClient dockerClient;
+    @Qualifier(DockerConfig.STREAMING_CLIENT)
+    private final DockerClient streamingDockerClient;
+    private final ContainerFactory containerFactory;
+    private final JarCache jarCache;
+    private final RegistryClient registryClient;
+    private final JlinkConfig jlinkConfig;
+    private final RuntimeImageManager runtimeImageManager;
+
+    private final Set<String> building = ConcurrentHashMap.newKeySet();
+    /** Tags whose last build failed, with the time it failed. */
+    private final Map<String, Long> failedAt = new ConcurrentHashMap<>();
+    private final ExecutorService buildExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "jlink-build");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Builds the function's runtime image in the background unless it
+     * already exists on this Docker host, is being built or recently failed
+     * to build.
+     */
+    public void buildIfMissing(FunctionInfo function) {
+        if (!jlinkConfig.isEnabled() || function.getJarHash() == null
+                || jdkImageFor(function) == null) {
+            return;
+        }
+        String tag = tagFor(function);
+        if (tag.equals(containerFactory.imageFor(function)) || recentlyFailed(tag) || !building.add(tag)) {
+            return;
+        }
+        try {
+            buildExecutor.execute(() -> {
+                try {
+                    build(function, tag);
+                    failedAt.remove(tag);
+                } catch (Exception e) {
+                    long now = System.currentTimeMillis();
+                    failedAt.values().removeIf(failed -> now - failed >= jlinkConfig.getRetryAfterFailureMs());
+                    failedAt.put(tag, now);
+                    log.warn("Could not build runtime image for function {}: {}", function.getName(), e.getMessage());
+                } finally {
+                    building.remove(tag);
+                }
+            });
+        } catch (Exception e) {
+            building.remove(tag);
+        }
+    }
+
+    private boolean recentlyFailed(String tag) {
+        Long failed = failedAt.get(tag);
+        return failed != null && System.currentTimeMillis() - failed < jlinkConfig.getRetryAfterFailureMs();
+    }
+
+    private void build(FunctionInfo function, String tag) throws Exception {
+        long startedAt = System.currentTimeMillis();
+        String jdkImage = jdkImageFor(function);
+        Path jarFile = jarCache.acquire(function);
+        Path context = Files.createTempFile("fn-jlink-" + function.getName(), ".tar");
+        String containerId = null;
+        try {
+            runtimeImageManager.ensurePresent(jdkImage);
+            containerId = containerFactory.createToolContainer(jdkImage, function, jarFile, jlinkCommand(function),
+                    "fn-jlink-" + UUID.randomUUID().toString().substring(0, 8), Map.of("jlink", function.getName()));
+            dockerClient.startContainerCmd(containerId).exec();
+            Integer exitCode = streamingDockerClient.waitContainerCmd(containerId)
+                    .exec(new WaitContainerResultCallback())
+                    .awaitStatusCode(jlinkConfig.getBuildTimeoutSeconds(), TimeUnit.SECONDS);
+            if (exitCode == null || exitCode != 0) {
+                throw new IllegalStateException("jlink exited with " + exitCode);
+            }
+
+            writeBuildContext(containerId, context);
+            try (InputStream tar = Files.newInputStream(context)) {
+                dockerClient.buildImageCmd()
+                        .withTarInputStream(tar)
+                        .withTags(Set.of(tag))
+                        .withLabels(Map.of("function", function.getName(), "jar-hash", function.version()))
+                        .exec(new BuildImageResultCallback())
+                        .awaitImageId(jlinkConfig.getBuildTimeoutSeconds(), TimeUnit.SECONDS);
+            }
+            containerFactory.imageBuilt(tag);
+            log.info("Built runtime image {} for function {} in {} ms", tag, function.getName(),
+                    System.currentTimeMillis() - startedAt);
+        } finally {
+            if (containerId != null) {
+                containerFactory.removeContainer(containerId);
+            }
+            jarCache.release(jarFile);
+            Files.deleteIfExists(context);
+        }
+        registryClient.updateRuntimeImage(function.getName(), tag, function.getJarHash());
+    }
+
+    /**
+     * Shell command that lists the modules required by the function, its
+     * layers and the runtime with jdeps and links them into {@link #OUTPUT_PATH}.
+     */
+    List<String> jlinkCommand(FunctionInfo function) {
+        String classpath = ContainerFactory.classpath(function);
+        String extraModules = String.join(",", jlinkConfig.getExtraModules());
+        String script = "set -e; "
+                + "modules=$(jdeps --ignore-missing-deps --print-module-deps --multi-release base"
+                + " --class-path " + classpath + " " + classpath.replace(':', ' ') + "); "
+                + "modules=${modules:-java.base}" + (extraModules.isEmpty() ? "" : "," + extraModules) + "; "
+                + "echo \"Linking modules: $modules\"; "
+                + "jlink --add-modules \"$modules\" --strip-debug --no-man-pages --no-header-files"
+                + " --generate-cds-archive --output " + OUTPUT_PATH;
+        return List.of("sh", "-c", script);
+    }
+
+    /**
+     * Writes a Docker build context with the linked runtime and a Dockerfile
+     * that copies it onto the base image.
+     */
+    private void writeBuildContext(String containerId, Path context) throws Exception {
+        String dockerfile = "FROM " + jlinkConfig.getBaseImage() + "\n"
+                + "COPY jre /opt/jre\n"
+                + "ENV JAVA_HOME=/opt/jre PATH=/opt/jre/bin:$PATH\n"
+                + "WORKDIR /app\n";
+        byte[] dockerfileBytes = dockerfile.getBytes(StandardCharsets.UTF_8);
+
+        try (OutputStream out = Files.newOutputStream(context);
+             TarArchiveOutputStream tarOut = new TarArchiveOutputStream(out);
+             InputStream runtime = dockerClient.copyArchiveFromContainerCmd(containerId, OUTPUT_PATH).exec();
+             TarArchiveInputStream tarIn = new TarArchiveInputStream(runtime)) {
+            tarOut.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            tarOut.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+
+            TarArchiveEntry dockerfileEntry = new TarArchiveEntry("Dockerfile");
+            dockerfileEntry.setSize(dockerfileBytes.length);
+            tarOut.putArchiveEntry(dockerfileEntry);
+            tarOut.write(dockerfileBytes);
+            tarOut.closeArchiveEntry();
+
+            TarArchiveEntry entry;
+            while ((entry = tarIn.getNextEntry()) != null) {
+                tarOut.putArchiveEntry(entry);
+                if (entry.isFile()) {
+                    tarIn.transferTo(tarOut);
+                }
+                tarOut.closeArchiveEntry();
+            }
+        }
+    }
+
+    private String jdkImageFor(FunctionInfo function) {
+        return jlinkConfig.getJdkImages().get(function.getRuntime() != null ? function.getRuntime() : "java17");
+    }
+
+    /**
+     * Image tag for the function's current JAR and layers; Docker repository
+     * names must be lower case.
+     */
+    static String tagFor(FunctionInfo function) {
+        String repository = "fn-jre-" + function.getName().toLowerCase().replaceAll("[^a-z0-9._-]", "-");
+        String hash = function.version();
+        return repository + ":" + hash.substring(0, Math.min(TAG_HASH_LENGTH, hash.length()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        buildExecutor.shutdownNow();
+    }
+}
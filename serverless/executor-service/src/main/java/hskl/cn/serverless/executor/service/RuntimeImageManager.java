@@ -0,0 +1,159 @@
+package hskl.cn.serverless.executor.service;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.command.InspectImageResponse;
+import com.github.dockerjava.api.command.PullImageResultCallback;
+import com.github.dockerjava.api.exception.NotFoundException;
+import hskl.cn.serverless.executor.config.DockerConfig;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps the runtime catalog ({@link DockerConfig#catalog}) present on this
+ * executor's Docker host.
+ *
+ * All catalog images are pulled in the background once the executor has
+ * started, and pulls that failed are retried every
+ * {@code docker.pull-retry-interval-ms}. As a health indicator (part of the
+ * readiness group) the manager reports the executor ready only once every
+ * catalog image is present, so no execution pays for a pull. Catalog entries
+ * pinned by digest ({@code image@sha256:...}) are pulled and run by digest;
+ * for tag references the digest found locally is reported.
+ */
+@Slf4j
+@Service("runtimeImages")
+@RequiredArgsConstructor
+public class RuntimeImageManager implements HealthIndicator {
+
+    private final DockerClient dockerClient;
+    private final DockerConfig dockerConfig;
+
+    private final Map<String, String> digests = new ConcurrentHashMap<>();
+    private final Map<String, String> failures = new ConcurrentHashMap<>();
+    private final AtomicBoolean pulling = new AtomicBoolean();
+    private final ExecutorService pullExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "runtime-image-pull");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${docker.pull-retry-interval-ms:60000}",
+            fixedDelayString = "${docker.pull-retry-interval-ms:60000}")
+    public void pullCatalog() {
+        if (!dockerConfig.isPrePull() || missing().isEmpty() || !pulling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            pullExecutor.execute(() -> {
+                try {
+                    for (String image : missing()) {
+                        try {
+                            ensurePresent(image);
+                        } catch (Exception e) {
+                            log.warn("Could not pull runtime image {}: {}", image, e.getMessage());
+                        }
+                    }
+                } finally {
+                    pulling.set(false);
+                }
+            });
+        } catch (Exception e) {
+            pulling.set(false);
+        }
+    }
+
+    /**
+     * Pulls the image unless it is present on this Docker host.
+     */
+    public void ensurePresent(String image) throws InterruptedException {
+        if (digests.containsKey(image)) {
+            return;
+        }
+        try {
+            digests.put(image, digestOf(dockerClient.inspectImageCmd(image).exec()));
+            return;
+        } catch (NotFoundException e) {
+            log.info("Pulling runtime image {}", image);
+        }
+        long startedAt = System.currentTimeMillis();
+        try {
+            boolean completed = dockerClient.pullImageCmd(image)
+                    .exec(new PullImageResultCallback())
+                    .awaitCompletion(dockerConfig.getPullTimeoutSeconds(), TimeUnit.SECONDS);
+            if (!completed) {
+                throw new IllegalStateException("Pull of " + image + " timed out after "
+                        + dockerConfig.getPullTimeoutSeconds() + " s");
+            }
+            digests.put(image, digestOf(dockerClient.inspectImageCmd(image).exec()));
+            failures.remove(image);
+            log.info("Pulled runtime image {} ({}) in {} ms", image, digests.get(image),
+                    System.currentTimeMillis() - startedAt);
+        } catch (RuntimeException e) {
+            failures.put(image, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+            throw e;
+        }
+    }
+
+    /**
+     * Forgets an image that turned out to be gone from this Docker host, so
+     * the next {@link #ensurePresent} pulls it again.
+     */
+    public void imageRemoved(String image) {
+        digests.remove(image);
+    }
+
+    /**
+     * Catalog images that are not known to be present yet.
+     */
+    List<String> missing() {
+        return dockerConfig.catalog().stream()
+                .filter(image -> !digests.containsKey(image))
+                .toList();
+    }
+
+    @Override
+    public Health health() {
+        if (!dockerConfig.isPrePull()) {
+            return Health.up().withDetail("prePull", false).build();
+        }
+        Map<String, String> images = new LinkedHashMap<>();
+        for (String image : dockerConfig.catalog()) {
+            String digest = digests.get(image);
+            String failure = failures.get(image);
+            images.put(image, digest != null ? digest : failure != null ? "failed: " + failure : "pulling");
+        }
+        Health.Builder health = missing().isEmpty() ? Health.up() : Health.down();
+        return health.withDetail("images", images).build();
+    }
+
+    private static String digestOf(InspectImageResponse image) {
+        List<String> repoDigests = image.getRepoDigests();
+        if (repoDigests != null && !repoDigests.isEmpty()) {
+            String repoDigest = repoDigests.get(0);
+            return repoDigest.substring(repoDigest.indexOf('@') + 1);
+        }
+        return image.getId();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pullExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,269 @@
+package hskl.cn.serverless.executor.service;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.model.StreamType;
+import hskl.cn.serverless.executor.exception.ExecutionException;
+import hskl.cn.serverless.runtime.Frame;
+import hskl.cn.serverless.runtime.FrameDecoder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A running function runtime container that serves many invocations.
+ *
+ * The executor is attached to the container's stdin/stdout: invocations are
+ * written as INVOKE frames to stdin, and RESULT/ERROR frames are read back from
+ * stdout and matched to the waiting caller by frame id. stderr carries the
+ * function's own output and is logged.
+ *
+ * A zygote instance starts without a function; {@link #load} loads a function
+ * JAR copied into its container and assigns it to that function.
+ */
+@Slf4j
+public class RuntimeInstance implements Closeable {
+
+    private static final int STDERR_TAIL_CHARS = 4096;
+
+    @Getter
+    private final String containerId;
+    @Getter
+    private volatile String functionName;
+    @Getter
+    private volatile String version;
+    @Getter
+    private final LaunchProfile launchProfile;
+
+    private final StdinPipe stdin = new StdinPipe();
+    private final FrameDecoder decoder = new FrameDecoder();
+    private final Map<Long, CompletableFuture<Frame>> pending = new ConcurrentHashMap<>();
+    private final CompletableFuture<Void> ready = new CompletableFuture<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final StringBuilder stderrTail = new StringBuilder();
+
+    private volatile boolean alive = true;
+    @Getter
+    private volatile long lastUsedAt = System.currentTimeMillis();
+    private Closeable attachment;
+
+    public RuntimeInstance(String containerId, String functionName, String version, LaunchProfile launchProfile) {
+        this.containerId = containerId;
+        this.functionName = functionName;
+        this.version = version;
+        this.launchProfile = launchProfile;
+    }
+
+    /**
+     * Attaches to the (created, not yet started) container. Must be called
+     * before the container starts so no output is missed.
+     */
+    public void attach(DockerClient dockerClient) throws InterruptedException {
+        ResultCallback.Adapter<com.github.dockerjava.api.model.Frame> callback = new ResultCallback.Adapter<>() {
+            @Override
+            public void onNext(com.github.dockerjava.api.model.Frame frame) {
+                if (frame.getStreamType() == StreamType.STDERR) {
+                    onStderr(frame.getPayload());
+                } else {
+                    onStdout(frame.getPayload());
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                terminate("Runtime connection failed: " + throwable.getMessage());
+            }
+
+            @Override
+            public void onComplete() {
+                terminate("Runtime container exited");
+            }
+        };
+        attachment = dockerClient.attachContainerCmd(containerId)
+                .withStdIn(stdin)
+                .withStdOut(true)
+                .withStdErr(true)
+                .withFollowStream(true)
+                .exec(callback);
+        callback.awaitStarted();
+    }
+
+    /**
+     * Waits until the runtime has loaded the function and sent READY.
+     */
+    public void awaitReady(long timeoutMs) throws Exception {
+        try {
+            ready.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (java.util.concurrent.ExecutionException e) {
+            throw new ExecutionException(e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            throw new ExecutionException("Runtime did not become ready within " + timeoutMs + " ms");
+        }
+    }
+
+    /**
+     * Loads a function into a zygote instance from a JAR already copied into
+     * its container. Afterwards the instance belongs to that function and
+     * version.
+     */
+    public void load(String functionName, String version, String handler, String jarPath, long timeoutMs)
+            throws Exception {
+        Frame response;
+        try {
+            response = send(Frame.load(nextId.getAndIncrement(), handler, jarPath))
+                    .get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (java.util.concurrent.ExecutionException e) {
+            throw new ExecutionException(e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            throw new ExecutionException("Runtime did not load the function within " + timeoutMs + " ms");
+        }
+        if (response.type() != Frame.READY) {
+            throw new ExecutionException("Runtime failed to load function " + functionName + ": "
+                    + response.bodyAsString());
+        }
+        this.functionName = functionName;
+        this.version = version;
+    }
+
+    /**
+     * Sends an invocation; the future completes with the RESULT or ERROR frame.
+     */
+    public CompletableFuture<Frame> invoke(String payloadJson) {
+        return send(Frame.of(nextId.getAndIncrement(), Frame.INVOKE, payloadJson));
+    }
+
+    public boolean isAlive() {
+        return alive;
+    }
+
+    @Override
+    public void close() {
+        terminate("Runtime instance closed");
+        stdin.close();
+        if (attachment != null) {
+            try {
+                attachment.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    private CompletableFuture<Frame> send(Frame request) {
+        CompletableFuture<Frame> response = new CompletableFuture<>();
+        pending.put(request.id(), response);
+        lastUsedAt = System.currentTimeMillis();
+        try {
+            stdin.send(request.toBytes());
+        } catch (IOException e) {
+            pending.remove(request.id());
+            response.completeExceptionally(e);
+        }
+        response.whenComplete((frame, error) -> lastUsedAt = System.currentTimeMillis());
+        return response;
+    }
+
+    private void onStdout(byte[] chunk) {
+        try {
+            for (Frame frame : decoder.feed(chunk)) {
+                if (frame.type() == Frame.READY && frame.id() == 0) {
+                    ready.complete(null);
+                    continue;
+                }
+                CompletableFuture<Frame> response = pending.remove(frame.id());
+                if (response != null) {
+                    response.complete(frame);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Corrupt output from runtime container {}: {}", containerId, e.getMessage());
+            terminate("Corrupt runtime output: " + e.getMessage());
+        }
+    }
+
+    private void onStderr(byte[] chunk) {
+        String text = new String(chunk, StandardCharsets.UTF_8);
+        log.debug("[{}] {}", functionName, text.stripTrailing());
+        synchronized (stderrTail) {
+            stderrTail.append(text);
+            if (stderrTail.length() > STDERR_TAIL_CHARS) {
+                stderrTail.delete(0, stderrTail.length() - STDERR_TAIL_CHARS);
+            }
+        }
+    }
+
+    private void terminate(String reason) {
+        if (!alive) {
+            return;
+        }
+        alive = false;
+        String detail;
+        synchronized (stderrTail) {
+            detail = stderrTail.length() > 0 ? reason + ": " + stderrTail.toString().trim() : reason;
+        }
+        ExecutionException error = new ExecutionException(detail);
+        ready.completeExceptionally(error);
+        pending.values().forEach(response -> response.completeExceptionally(error));
+        pending.clear();
+    }
+
+    /**
+     * stdin of the attach session. Frames are queued whole, so concurrent
+     * writers never interleave; the Docker transport thread drains the queue.
+     */
+    private static class StdinPipe extends InputStream {
+
+        private static final byte[] EOF = new byte[0];
+
+        private final BlockingQueue<byte[]> chunks = new LinkedBlockingQueue<>();
+        private byte[] current;
+        private int position;
+        private volatile boolean closed;
+
+        void send(byte[] data) throws IOException {
+            if (closed) {
+                throw new IOException("Runtime stdin is closed");
+            }
+            chunks.add(data);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int n = read(single, 0, 1);
+            return n == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (current == null || position == current.length) {
+                try {
+                    current = chunks.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return -1;
+                }
+                position = 0;
+                if (current == EOF) {
+                    chunks.add(EOF);
+                    return -1;
+                }
+            }
+            int n = Math.min(len, current.length - position);
+            System.arraycopy(current, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            chunks.add(EOF);
+        }
+    }
+}
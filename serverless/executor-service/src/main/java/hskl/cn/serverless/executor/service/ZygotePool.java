@@ -0,0 +1,180 @@
+package hskl.cn.serverless.executor.service;
+
+import hskl.cn.serverless.executor.config.DockerConfig;
+import hskl.cn.serverless.executor.config.PoolConfig;
+import hskl.cn.serverless.executor.dto.FunctionInfo;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps a few generic, already booted runtime containers ("zygotes") per
+ * runtime, so a cold start of a function that fits them (see {@link #fits})
+ * skips container creation and JVM boot. {@link ContainerPool} takes a zygote,
+ * copies the function JAR into it and from then on uses it as an instance of
+ * that function.
+ *
+ * Memory is proportional to {@code pool.zygotes-per-runtime} and not to the
+ * number of functions; taken zygotes are replaced in the background.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ZygotePool {
+
+    private static final String DEFAULT_RUNTIME = "java17";
+
+    private final ContainerFactory containerFactory;
+    private final DockerConfig dockerConfig;
+    private final PoolConfig poolConfig;
+
+    private final Map<String, BlockingQueue<RuntimeInstance>> idle = new ConcurrentHashMap<>();
+    /** Idle plus starting zygotes per runtime; a start reserves its slot here first. */
+    private final Map<String, AtomicInteger> counts = new ConcurrentHashMap<>();
+    private ExecutorService starter;
+
+    /**
+     * Whether a zygote can host the function started with {@code profile}:
+     * zygotes are started with a fixed memory limit and the throughput
+     * profile, which the function must both match so a zygote runs it with
+     * the same options as its own container would. Zygotes only load the
+     * function JAR, so functions with layers need their own instance.
+     */
+    public boolean fits(FunctionInfo function, LaunchProfile profile) {
+        return poolConfig.isEnabled() && poolConfig.getZygotesPerRuntime() > 0
+                && Objects.equals(function.getMemoryMb(), poolConfig.getZygoteMemoryMb())
+                && profile == LaunchProfile.THROUGHPUT
+                && function.getLayers().isEmpty();
+    }
+
+    /**
+     * Takes an idle zygote for the function's runtime, if one is available, and
+     * starts a replacement.
+     */
+    public Optional<RuntimeInstance> take(FunctionInfo function) {
+        String runtime = runtime(function);
+        BlockingQueue<RuntimeInstance> zygotes = idleFor(runtime);
+        RuntimeInstance zygote;
+        while ((zygote = zygotes.poll()) != null) {
+            countFor(runtime).decrementAndGet();
+            if (zygote.isAlive()) {
+                break;
+            }
+            discard(zygote);
+        }
+        replenish(runtime);
+        return Optional.ofNullable(zygote);
+    }
+
+    public int idleCount(String runtime) {
+        BlockingQueue<RuntimeInstance> zygotes = idle.get(runtime);
+        return zygotes != null ? zygotes.size() : 0;
+    }
+
+    /**
+     * Drops dead zygotes and starts new ones up to {@code pool.zygotes-per-runtime}
+     * for every configured runtime.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${pool.maintenance-interval-ms:30000}",
+            fixedDelayString = "${pool.maintenance-interval-ms:30000}")
+    public void maintain() {
+        if (!poolConfig.isEnabled()) {
+            return;
+        }
+        for (String runtime : dockerConfig.getRuntimeImages().keySet()) {
+            BlockingQueue<RuntimeInstance> zygotes = idleFor(runtime);
+            List<RuntimeInstance> dead = new ArrayList<>();
+            zygotes.forEach(zygote -> {
+                if (!zygote.isAlive()) {
+                    dead.add(zygote);
+                }
+            });
+            dead.stream().filter(zygotes::remove).forEach(zygote -> {
+                countFor(runtime).decrementAndGet();
+                discard(zygote);
+            });
+            replenish(runtime);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (starter != null) {
+            starter.shutdownNow();
+        }
+        idle.values().forEach(zygotes -> {
+            List<RuntimeInstance> drained = new ArrayList<>();
+            zygotes.drainTo(drained);
+            drained.forEach(this::discard);
+        });
+    }
+
+    /**
+     * Starts zygotes up to the target. Each start reserves its slot with a
+     * compare-and-set first, so concurrent callers cannot overshoot.
+     */
+    private void replenish(String runtime) {
+        BlockingQueue<RuntimeInstance> zygotes = idleFor(runtime);
+        AtomicInteger count = countFor(runtime);
+        while (true) {
+            int current = count.get();
+            if (current >= poolConfig.getZygotesPerRuntime()) {
+                return;
+            }
+            if (!count.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            starter().execute(() -> {
+                try {
+                    zygotes.offer(containerFactory.startZygote(runtime, poolConfig.getZygoteMemoryMb(),
+                            poolConfig.getStartupTimeoutMs()));
+                    log.debug("Started zygote for runtime {}", runtime);
+                } catch (Exception e) {
+                    count.decrementAndGet();
+                    log.warn("Failed to start zygote for runtime {}: {}", runtime, e.getMessage());
+                }
+            });
+        }
+    }
+
+    private AtomicInteger countFor(String runtime) {
+        return counts.computeIfAbsent(runtime, k -> new AtomicInteger());
+    }
+
+    private void discard(RuntimeInstance zygote) {
+        zygote.close();
+        containerFactory.removeContainer(zygote.getContainerId());
+    }
+
+    private BlockingQueue<RuntimeInstance> idleFor(String runtime) {
+        return idle.computeIfAbsent(runtime, k -> new LinkedBlockingQueue<>());
+    }
+
+    private synchronized ExecutorService starter() {
+        if (starter == null) {
+            starter = Executors.newFixedThreadPool(poolConfig.getRefillThreads(), r -> {
+                Thread thread = new Thread(r, "zygote-starter");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return starter;
+    }
+
+    private static String runtime(FunctionInfo function) {
+        return function.getRuntime() != null ? function.getRuntime() : DEFAULT_RUNTIME;
+    }
+}
@@ -0,0 +1,137 @@
+package hskl.cn.serverless.executor.service;
+
+import com.github.dockerjava.api.DockerClient;
+import hskl.cn.serverless.executor.config.CdsConfig;
+import hskl.cn.serverless.executor.config.DockerConfig;
+import hskl.cn.serverless.executor.dto.FunctionInfo;
+import io.minio.GetObjectArgs;
+import io.minio.MinioClient;
+import io.minio.errors.ErrorResponseException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("CdsArchiveService Tests")
+class CdsArchiveServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private ContainerFactory containerFactory;
+
+    @Mock
+    private JarCache jarCache;
+
+    @Mock
+    private DockerClient dockerClient;
+
+    @Mock
+    private MinioClient minioClient;
+
+    private CdsConfig cdsConfig;
+    private CdsArchiveService service;
+    private FunctionInfo function;
+
+    @BeforeEach
+    void setUp() {
+        cdsConfig = new CdsConfig();
+        cdsConfig.setCacheDir(tempDir.toString());
+        service = new CdsArchiveService(containerFactory, jarCache, dockerClient, dockerClient, minioClient, cdsConfig);
+        ReflectionTestUtils.setField(service, "minioBucket", "functions");
+        function = FunctionInfo.builder()
+                .id(UUID.randomUUID())
+                .name("hello")
+                .runtime("java17")
+                .jarPath("hello/hello.jar")
+                .jarHash("hash-v1")
+                .status("READY")
+                .build();
+        when(containerFactory.imageFor(any())).thenAnswer(i -> new DockerConfig().imageFor(
+                i.<FunctionInfo>getArgument(0).getRuntime()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    @DisplayName("should key the archive next to the JAR by JAR hash and runtime image")
+    void shouldKeyArchiveByHashAndImage() {
+        assertThat(service.objectKey(function)).isEqualTo("hello/cds/hash-v1-eclipse-temurin_17-jre-alpine.jsa");
+
+        function.setRuntime("java21");
+        assertThat(service.objectKey(function)).isEqualTo("hello/cds/hash-v1-eclipse-temurin_21-jre-alpine.jsa");
+    }
+
+    @Test
+    @DisplayName("should use the locally cached archive without asking MinIO")
+    void shouldUseLocalArchive() throws Exception {
+        Path local = tempDir.resolve(service.objectKey(function).replace('/', '_'));
+        Files.writeString(local, "archive");
+
+        assertThat(service.archiveFor(function)).contains(local);
+        verifyNoInteractions(minioClient);
+    }
+
+    @Test
+    @DisplayName("should remember missing archives and dump one after a successful execution")
+    void shouldRememberMissingArchive() throws Exception {
+        ErrorResponseException noSuchKey = mock(ErrorResponseException.class);
+        when(minioClient.getObject(any(GetObjectArgs.class))).thenThrow(noSuchKey);
+        when(jarCache.acquire(any(FunctionInfo.class))).thenThrow(new IllegalStateException("offline"));
+
+        assertThat(service.archiveFor(function)).isEmpty();
+        assertThat(service.archiveFor(function)).isEmpty();
+        verify(minioClient, times(1)).getObject(any(GetObjectArgs.class));
+
+        service.onSuccess(function, "{}");
+        verify(jarCache, timeout(2000)).acquire(function);
+    }
+
+    @Test
+    @DisplayName("should discard an archive a start failed with and dump a new one")
+    void shouldDiscardArchive() throws Exception {
+        Path local = tempDir.resolve(service.objectKey(function).replace('/', '_'));
+        Files.writeString(local, "archive of another JDK");
+        when(jarCache.acquire(any(FunctionInfo.class))).thenThrow(new IllegalStateException("offline"));
+
+        service.discard(function);
+
+        assertThat(local).doesNotExist();
+        assertThat(service.archiveFor(function)).isEmpty();
+        verifyNoInteractions(minioClient);
+        service.onSuccess(function, "{}");
+        verify(jarCache, timeout(2000)).acquire(function);
+    }
+
+    @Test
+    @DisplayName("should not dump when CDS is disabled")
+    void shouldNotDumpWhenDisabled() {
+        cdsConfig.setEnabled(false);
+
+        assertThat(service.archiveFor(function)).isEmpty();
+        service.onSuccess(function, "{}");
+
+        verifyNoInteractions(minioClient, jarCache);
+    }
+}
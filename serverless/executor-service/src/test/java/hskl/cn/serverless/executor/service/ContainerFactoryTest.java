@@ -0,0 +1,247 @@
+package hskl.cn.serverless.executor.service;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.command.CreateContainerCmd;
+import com.github.dockerjava.api.command.InspectImageCmd;
+import com.github.dockerjava.api.exception.NotFoundException;
+import hskl.cn.serverless.executor.config.DockerConfig;
+import hskl.cn.serverless.executor.config.FunctionImageConfig;
+import hskl.cn.serverless.executor.dto.FunctionInfo;
+import hskl.cn.serverless.executor.dto.LayerInfo;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ContainerFactory Tests")
+class ContainerFactoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private DockerClient dockerClient;
+
+    @Mock
+    private DockerConfig dockerConfig;
+
+    @Mock
+    private FunctionRuntimeJar functionRuntimeJar;
+
+    @Mock
+    private LaunchProfileService launchProfileService;
+
+    @Mock
+    private JarCache jarCache;
+
+    @Mock
+    private RuntimeImageManager runtimeImageManager;
+
+    private ContainerFactory containerFactory;
+    private Path jarFile;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        containerFactory = new ContainerFactory(dockerClient, dockerClient, dockerConfig, functionRuntimeJar,
+                launchProfileService, new FunctionImageConfig(), jarCache, runtimeImageManager);
+        jarFile = tempDir.resolve("cached.jar");
+        Files.writeString(jarFile, "jar-content");
+    }
+
+    @Test
+    @DisplayName("should write the TAR archive next to the file")
+    void shouldWriteTarNextToFile() throws Exception {
+        Path tar = containerFactory.tarFor(jarFile, "function.jar");
+
+        assertThat(tar).isEqualTo(tempDir.resolve("cached.jar.function.jar.tar"));
+        try (InputStream is = Files.newInputStream(tar);
+             TarArchiveInputStream tarIn = new TarArchiveInputStream(is)) {
+            TarArchiveEntry entry = tarIn.getNextEntry();
+            assertThat(entry.getName()).isEqualTo("function.jar");
+            assertThat(entry.getModTime().getTime()).isEqualTo(946684800000L);
+            assertThat(new String(tarIn.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("jar-content");
+        }
+        try (var files = Files.list(tempDir)) {
+            assertThat(files).hasSize(2);
+        }
+    }
+
+    @Test
+    @DisplayName("should reuse the TAR archive on later copies")
+    void shouldReuseTar() throws Exception {
+        Path tar = containerFactory.tarFor(jarFile, "function.jar");
+        FileTime written = FileTime.fromMillis(Files.getLastModifiedTime(jarFile).toMillis() + 1000);
+        Files.setLastModifiedTime(tar, written);
+
+        assertThat(containerFactory.tarFor(jarFile, "function.jar")).isEqualTo(tar);
+        assertThat(Files.getLastModifiedTime(tar)).isEqualTo(written);
+    }
+
+    @Test
+    @DisplayName("should rebuild the TAR archive when the file is newer")
+    void shouldRebuildStaleTar() throws Exception {
+        Path tar = containerFactory.tarFor(jarFile, "function.jar");
+        Files.setLastModifiedTime(tar, FileTime.fromMillis(0));
+
+        containerFactory.tarFor(jarFile, "function.jar");
+
+        assertThat(Files.getLastModifiedTime(tar).toMillis()).isPositive();
+    }
+
+    @Test
+    @DisplayName("should tag baked images by JAR hash and base image")
+    void shouldTagBakedImages() throws Exception {
+        FunctionInfo function = FunctionInfo.builder().name("My_Func").jarHash("0123456789abcdef").build();
+        when(dockerConfig.imageFor(null)).thenReturn("eclipse-temurin:17-jre-alpine");
+        when(functionRuntimeJar.checksum()).thenReturn("runtime-v1");
+        String tag = containerFactory.bakedImageTag(function);
+
+        assertThat(tag).matches("fn-my_func:0123456789ab-[0-9a-f]{12}");
+        when(functionRuntimeJar.checksum()).thenReturn("runtime-v2");
+        assertThat(containerFactory.bakedImageTag(function)).isNotEqualTo(tag);
+    }
+
+    @Test
+    @DisplayName("should name JAR volumes by function, JAR hash and runtime JAR")
+    void shouldNameJarVolumes() throws Exception {
+        FunctionInfo function = FunctionInfo.builder().name("My_Func").jarHash("0123456789abcdef").build();
+        when(functionRuntimeJar.checksum()).thenReturn("fedcba9876543210");
+
+        assertThat(containerFactory.jarVolumeName(function)).isEqualTo("fn-jar-my_func-0123456789ab-fedcba987654");
+    }
+
+    @Test
+    @DisplayName("should put layers on the classpath after the function JAR and version the volume by them")
+    void shouldIncludeLayers() throws Exception {
+        FunctionInfo function = FunctionInfo.builder().name("My_Func").jarHash("0123456789abcdef").build();
+        when(functionRuntimeJar.checksum()).thenReturn("fedcba9876543210");
+        String withoutLayers = containerFactory.jarVolumeName(function);
+        function.setLayers(List.of(new LayerInfo("gson", "_layers/gson/gson.jar", "aa"),
+                new LayerInfo("commons", "_layers/commons/commons.jar", "bb")));
+
+        assertThat(ContainerFactory.classpath(function))
+                .isEqualTo("/app/function-runtime.jar:/app/function.jar:/app/layer-gson.jar:/app/layer-commons.jar");
+        assertThat(containerFactory.jarVolumeName(function)).isNotEqualTo(withoutLayers);
+    }
+
+    @Test
+    @DisplayName("should remember present images for a while but look up missing ones every time")
+    void shouldCacheOnlyPresentImages() {
+        FunctionInfo function = FunctionInfo.builder().name("hello").runtime("java17").runtimeImage("fn-hello:jre")
+                .build();
+        InspectImageCmd inspect = mock(InspectImageCmd.class);
+        when(dockerClient.inspectImageCmd("fn-hello:jre")).thenReturn(inspect);
+        when(inspect.exec()).thenThrow(new NotFoundException("not built yet")).thenReturn(null);
+        when(dockerConfig.imageFor("java17")).thenReturn("eclipse-temurin:17-jre-alpine");
+        when(dockerConfig.getImageCacheTtlMs()).thenReturn(60000L);
+
+        assertThat(containerFactory.imageFor(function)).isEqualTo("eclipse-temurin:17-jre-alpine");
+        assertThat(containerFactory.imageFor(function)).isEqualTo("fn-hello:jre");
+        assertThat(containerFactory.imageFor(function)).isEqualTo("fn-hello:jre");
+        verify(inspect, times(2)).exec();
+    }
+
+    @Test
+    @DisplayName("should forget an image once a container cannot be created from it")
+    void shouldForgetImageWhenCreateFails() throws Exception {
+        FunctionInfo function = FunctionInfo.builder().name("hello").runtime("java21").runtimeImage("fn-hello:jre")
+                .build();
+        InspectImageCmd inspect = mock(InspectImageCmd.class);
+        when(dockerClient.inspectImageCmd("fn-hello:jre")).thenReturn(inspect);
+        when(inspect.exec()).thenReturn(null).thenThrow(new NotFoundException("pruned"));
+        when(dockerConfig.imageFor("java17")).thenReturn("fn-hello:jre");
+        when(dockerConfig.imageFor("java21")).thenReturn("eclipse-temurin:21-jre-alpine");
+        when(functionRuntimeJar.path()).thenReturn(jarFile);
+        CreateContainerCmd create = mock(CreateContainerCmd.class, Answers.RETURNS_SELF);
+        when(dockerClient.createContainerCmd("fn-hello:jre")).thenReturn(create);
+        when(create.getImage()).thenReturn("fn-hello:jre");
+        when(create.exec()).thenThrow(new NotFoundException("No such image: fn-hello:jre"));
+        assertThat(containerFactory.imageFor(function)).isEqualTo("fn-hello:jre");
+
+        assertThatThrownBy(() -> containerFactory.startZygote("java17", 256, 1000))
+                .isInstanceOf(NotFoundException.class);
+
+        verify(runtimeImageManager).imageRemoved("fn-hello:jre");
+        assertThat(containerFactory.imageFor(function)).isEqualTo("eclipse-temurin:21-jre-alpine");
+        verify(inspect, times(2)).exec();
+    }
+
+    @Test
+    @DisplayName("should keep the JVM's warning about a mismatched CDS archive off stdout")
+    void shouldKeepCdsWarningsOffStdout() throws Exception {
+        Path jar = tempDir.resolve("hello.jar");
+        Path archive = tempDir.resolve("hello.jsa");
+        writeHelloJar(jar);
+        java(jar, List.of("-XX:ArchiveClassesAtExit=" + archive), tempDir.resolve("dump.log"));
+        assertThat(archive).exists();
+        Files.setLastModifiedTime(jar, FileTime.fromMillis(0));
+
+        List<String> options = new ArrayList<>(ContainerFactory.JVM_LOGGING);
+        options.addAll(List.of("-XX:SharedArchiveFile=" + archive, "-Xshare:auto"));
+        Path stderr = tempDir.resolve("stderr.log");
+        String stdout = java(jar, options, stderr);
+
+        assertThat(stdout).isEqualTo("result");
+        assertThat(Files.readString(stderr)).contains("[cds");
+    }
+
+    /**
+     * Main class of the JAR the CDS test starts.
+     */
+    public static class Hello {
+        public static void main(String[] args) {
+            System.out.print("result");
+        }
+    }
+
+    private static void writeHelloJar(Path jar) throws Exception {
+        String entry = Hello.class.getName().replace('.', '/') + ".class";
+        try (InputStream classFile = Hello.class.getClassLoader().getResourceAsStream(entry);
+             OutputStream out = Files.newOutputStream(jar);
+             JarOutputStream jarOut = new JarOutputStream(out)) {
+            jarOut.putNextEntry(new JarEntry(entry));
+            classFile.transferTo(jarOut);
+            jarOut.closeEntry();
+        }
+    }
+
+    private static String java(Path jar, List<String> options, Path stderr) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(options);
+        command.addAll(List.of("-cp", jar.toString(), Hello.class.getName()));
+        Process process = new ProcessBuilder(command)
+                .redirectError(stderr.toFile())
+                .start();
+        String stdout = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertThat(process.waitFor(30, TimeUnit.SECONDS)).isTrue();
+        return stdout;
+    }
+}
@@ -0,0 +1,303 @@
+package hskl.cn.serverless.executor.service;
+
+import hskl.cn.serverless.executor.config.LaunchProfileConfig;
+import hskl.cn.serverless.executor.config.PoolConfig;
+import hskl.cn.serverless.executor.dto.FunctionInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("ContainerPool Tests")
+class ContainerPoolTest {
+
+    @Mock
+    private ContainerFactory containerFactory;
+
+    @Mock
+    private JarCache jarCache;
+
+    @Mock
+    private RegistryClient registryClient;
+
+    @Mock
+    private ZygotePool zygotePool;
+
+    @Mock
+    private CdsArchiveService cdsArchiveService;
+
+    private ContainerPool containerPool;
+    private PoolConfig poolConfig;
+    private SimpleMeterRegistry meterRegistry;
+    private FunctionInfo function;
+    private final AtomicInteger containerIds = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        poolConfig = new PoolConfig();
+        meterRegistry = new SimpleMeterRegistry();
+        containerPool = new ContainerPool(containerFactory, jarCache, registryClient, poolConfig, zygotePool,
+                cdsArchiveService, new LaunchProfileService(new LaunchProfileConfig(), meterRegistry), meterRegistry);
+        function = FunctionInfo.builder()
+                .id(UUID.randomUUID())
+                .name("warm-function")
+                .jarPath("warm-function/warm.jar")
+                .jarHash("hash-v1")
+                .status("READY")
+                .timeoutSeconds(30)
+                .memoryMb(256)
+                .minInstances(2)
+                .maxInstances(3)
+                .build();
+        when(jarCache.acquireAsync(any(FunctionInfo.class))).thenReturn(CompletableFuture.completedFuture(jarFile()));
+        when(cdsArchiveService.archiveFor(any())).thenReturn(Optional.empty());
+        when(containerFactory.startRuntimeInstance(any(), any(), any(), any(), anyString(), anyLong()))
+                .thenAnswer(i -> {
+                    RuntimeInstance instance = mock(RuntimeInstance.class);
+                    when(instance.getContainerId()).thenReturn("container-" + containerIds.incrementAndGet());
+                    when(instance.getFunctionName()).thenReturn(i.<FunctionInfo>getArgument(0).getName());
+                    when(instance.getVersion()).thenReturn(i.getArgument(4));
+                    when(instance.isAlive()).thenReturn(true);
+                    when(instance.getLastUsedAt()).thenReturn(System.currentTimeMillis());
+                    return instance;
+                });
+    }
+
+    @AfterEach
+    void tearDown() {
+        containerPool.shutdown();
+    }
+
+    @Test
+    @DisplayName("should start instances up to minInstances from registry")
+    void shouldFillPoolFromRegistry() throws Exception {
+        when(registryClient.getAllFunctions()).thenReturn(List.of(function));
+
+        containerPool.maintain();
+
+        awaitIdle(2);
+        verify(containerFactory, times(2)).startRuntimeInstance(any(), any(), any(), any(),
+                eq(function.instanceVersion()), anyLong());
+    }
+
+    @Test
+    @DisplayName("should reuse a released instance")
+    void shouldReuseReleasedInstance() throws Exception {
+        function.setMinInstances(0);
+
+        RuntimeInstance first = containerPool.lease(function, 0, TimeUnit.MILLISECONDS);
+        containerPool.release(first);
+        RuntimeInstance second = containerPool.lease(function, 0, TimeUnit.MILLISECONDS);
+
+        assertThat(second).isSameAs(first);
+        verify(containerFactory, times(1)).startRuntimeInstance(any(), any(), any(), any(), anyString(), anyLong());
+    }
+
+    @Test
+    @DisplayName("should limit instances to maxInstances")
+    void shouldLimitInstancesToMaxInstances() throws Exception {
+        function.setMinInstances(0);
+
+        RuntimeInstance first = containerPool.lease(function, 0, TimeUnit.MILLISECONDS);
+        assertThat(containerPool.lease(function, 0, TimeUnit.MILLISECONDS)).isNotNull();
+        assertThat(containerPool.lease(function, 0, TimeUnit.MILLISECONDS)).isNotNull();
+        assertThat(containerPool.lease(function, 10, TimeUnit.MILLISECONDS)).isNull();
+
+        containerPool.discard(first);
+        assertThat(containerPool.lease(function, 0, TimeUnit.MILLISECONDS)).isNotNull();
+        assertThat(containerPool.instanceCount(function.getName())).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("should share an instance up to its concurrency")
+    void shouldShareInstanceUpToConcurrency() throws Exception {
+        function.setMinInstances(0);
+        function.setMaxInstances(1);
+        function.setConcurrency(2);
+
+        RuntimeInstance first = containerPool.lease(function, 0, TimeUnit.MILLISECONDS);
+        RuntimeInstance second = containerPool.lease(function, 0, TimeUnit.MILLISECONDS);
+        assertThat(second).isSameAs(first);
+        assertThat(containerPool.lease(function, 10, TimeUnit.MILLISECONDS)).isNull();
+
+        containerPool.release(first);
+        assertThat(containerPool.lease(function, 0, TimeUnit.MILLISECONDS)).isSameAs(first);
+        assertThat(containerPool.instanceCount(function.getName())).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should hand a released instance to a waiting lease")
+    void shouldWakeWaitingLease() throws Exception {
+        function.setMinInstances(0);
+        function.setMaxInstances(1);
+        RuntimeInstance first = containerPool.lease(function, 0, TimeUnit.MILLISECONDS);
+
+        CompletableFuture<RuntimeInstance> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return containerPool.lease(function, 5, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(50);
+        containerPool.release(first);
+
+        assertThat(waiting.get(2, TimeUnit.SECONDS)).isSameAs(first);
+    }
+
+    @Test
+    @DisplayName("should stop idle instances when the JAR changes")
+    void shouldStopInstancesOfOldJar() throws Exception {
+        when(registryClient.getAllFunctions()).thenReturn(List.of(function));
+        containerPool.maintain();
+        awaitIdle(2);
+
+        function.setJarHash("hash-v2");
+        function.setMinInstances(0);
+        RuntimeInstance instance = containerPool.lease(function, 0, TimeUnit.MILLISECONDS);
+
+        assertThat(instance.getVersion()).isEqualTo(function.instanceVersion());
+        verify(containerFactory, timeout(2000)).removeContainer("container-1");
+        verify(containerFactory, timeout(2000)).removeContainer("container-2");
+    }
+
+    @Test
+    @DisplayName("should stop idle instances when the handler, memory or launch profile changes")
+    void shouldStopInstancesOfOldSettings() throws Exception {
+        function.setMinInstances(0);
+        RuntimeInstance first = containerPool.lease(function, 0, TimeUnit.MILLISECONDS);
+        containerPool.release(first);
+
+        function.setHandler("com.example.OtherHandler");
+        RuntimeInstance second = containerPool.lease(function, 0, TimeUnit.MILLISECONDS);
+        containerPool.release(second);
+        function.setMemoryMb(512);
+        RuntimeInstance third = containerPool.lease(function, 0, TimeUnit.MILLISECONDS);
+        containerPool.release(third);
+        function.setLaunchProfile("SHORT_LIVED");
+        RuntimeInstance fourth = containerPool.lease(function, 0, TimeUnit.MILLISECONDS);
+
+        assertThat(List.of(first, second, third, fourth)).doesNotHaveDuplicates();
+        assertThat(fourth.getVersion()).isEqualTo(function.instanceVersion());
+        verify(containerFactory, timeout(2000)).removeContainer("container-1");
+        verify(containerFactory, timeout(2000)).removeContainer("container-2");
+        verify(containerFactory, timeout(2000)).removeContainer("container-3");
+    }
+
+    @Test
+    @DisplayName("should stop instances idle beyond the idle timeout down to minInstances")
+    void shouldReapIdleInstances() throws Exception {
+        poolConfig.setIdleTimeoutMs(-1);
+        function.setMinInstances(1);
+        when(registryClient.getAllFunctions()).thenReturn(List.of(function));
+
+        RuntimeInstance first = containerPool.lease(function, 0, TimeUnit.MILLISECONDS);
+        RuntimeInstance second = containerPool.lease(function, 0, TimeUnit.MILLISECONDS);
+        containerPool.release(first);
+        containerPool.release(second);
+
+        containerPool.maintain();
+
+        assertThat(containerPool.instanceCount(function.getName())).isEqualTo(1);
+        assertThat(containerPool.idleCount(function.getName())).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should load the function into a zygote when one is available")
+    void shouldUseZygote() throws Exception {
+        function.setMinInstances(0);
+        RuntimeInstance zygote = mock(RuntimeInstance.class);
+        when(zygotePool.fits(eq(function), any())).thenReturn(true);
+        when(zygotePool.take(function)).thenReturn(Optional.of(zygote));
+
+        RuntimeInstance instance = containerPool.lease(function, 0, TimeUnit.MILLISECONDS);
+
+        assertThat(instance).isSameAs(zygote);
+        verify(containerFactory).loadIntoZygote(eq(zygote), eq(function), any(), anyLong());
+        verify(containerFactory, never()).startRuntimeInstance(any(), any(), any(), any(), anyString(), anyLong());
+    }
+
+    @Test
+    @DisplayName("should fall back to a new container when the zygote cannot load the function")
+    void shouldFallBackWhenZygoteFails() throws Exception {
+        function.setMinInstances(0);
+        RuntimeInstance zygote = mock(RuntimeInstance.class);
+        when(zygote.getContainerId()).thenReturn("zygote-1");
+        when(zygotePool.fits(eq(function), any())).thenReturn(true);
+        when(zygotePool.take(function)).thenReturn(Optional.of(zygote));
+        doThrow(new IllegalStateException("boom")).when(containerFactory).loadIntoZygote(any(), any(), any(), anyLong());
+
+        RuntimeInstance instance = containerPool.lease(function, 0, TimeUnit.MILLISECONDS);
+
+        assertThat(instance).isNotSameAs(zygote);
+        verify(containerFactory, timeout(2000)).removeContainer("zygote-1");
+    }
+
+    @Test
+    @DisplayName("should start containers with the CDS archive and record cold starts per archive use")
+    void shouldStartWithCdsArchive() throws Exception {
+        function.setMinInstances(0);
+        Path archive = jarFile();
+        when(cdsArchiveService.archiveFor(function)).thenReturn(Optional.of(archive));
+
+        containerPool.lease(function, 0, TimeUnit.MILLISECONDS);
+
+        verify(containerFactory).startRuntimeInstance(eq(function), any(), eq(archive), any(),
+                eq(function.instanceVersion()), anyLong());
+        assertThat(meterRegistry.get("executor.cold.start").tag("cds", "true").tag("profile", "SHORT_LIVED")
+                .timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should discard the CDS archive when a container fails to start with it")
+    void shouldDiscardCdsArchiveAfterFailedStart() throws Exception {
+        function.setMinInstances(0);
+        Path archive = jarFile();
+        when(cdsArchiveService.archiveFor(function)).thenReturn(Optional.of(archive));
+        doThrow(new IOException("Invalid frame length")).when(containerFactory)
+                .startRuntimeInstance(eq(function), any(), eq(archive), any(), anyString(), anyLong());
+
+        assertThatThrownBy(() -> containerPool.lease(function, 0, TimeUnit.MILLISECONDS))
+                .hasMessageContaining("Invalid frame length");
+
+        verify(cdsArchiveService).discard(function);
+        assertThat(containerPool.instanceCount(function.getName())).isZero();
+    }
+
+    private Path jarFile() throws Exception {
+        Path jar = Files.createTempFile("function", ".jar");
+        jar.toFile().deleteOnExit();
+        return jar;
+    }
+
+    private void awaitIdle(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (containerPool.idleCount(function.getName()) < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(containerPool.idleCount(function.getName())).isEqualTo(expected);
+    }
+}
@@ -2,35 +2,46 @@ package hskl.cn.serverless.executor.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.async.ResultCallback;
 import com.github.dockerjava.api.command.*;
 import com.github.dockerjava.api.model.Frame;
 import com.github.dockerjava.api.model.StreamType;
-import hskl.cn.serverless.executor.config.DockerConfig;
+import com.github.dockerjava.api.model.WaitResponse;
+import hskl.cn.serverless.executor.config.CoalescingConfig;
+import hskl.cn.serverless.executor.config.PoolConfig;
+import hskl.cn.serverless.executor.config.ResultCacheConfig;
 import hskl.cn.serverless.executor.dto.ExecutionRequest;
 import hskl.cn.serverless.executor.dto.ExecutionResponse;
 import hskl.cn.serverless.executor.dto.ExecutionResponse.ExecutionStatus;
 import hskl.cn.serverless.executor.dto.FunctionInfo;
 import hskl.cn.serverless.executor.exception.ExecutionException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.minio.GetObjectArgs;
 import io.minio.GetObjectResponse;
-import io.minio.MinioClient;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.ByteArrayInputStream;
+import java.nio.file.Path;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -41,15 +52,37 @@ class DockerExecutionServiceTest {
     private DockerClient dockerClient;
 
     @Mock
-    private DockerConfig dockerConfig;
+    private RegistryClient registryClient;
 
     @Mock
-    private RegistryClient registryClient;
+    private ContainerFactory containerFactory;
+
+    @Mock
+    private JarCache jarCache;
+
+    @Mock
+    private ContainerPool containerPool;
+
+    @Mock
+    private InProcessExecutionService inProcessExecutionService;
+
+    @Mock
+    private CdsArchiveService cdsArchiveService;
+
+    @Mock
+    private LaunchProfileService launchProfileService;
 
     @Mock
-    private MinioClient minioClient;
+    private RuntimeImageBuilder runtimeImageBuilder;
+
+    @Mock
+    private FunctionImageService functionImageService;
 
     private ObjectMapper objectMapper;
+    private ResultCache resultCache;
+    private CoalescingConfig coalescingConfig;
+    private ExecutionCoalescer coalescer;
+    private SimpleMeterRegistry coalescingMeters;
     private DockerExecutionService executionService;
 
     private FunctionInfo testFunctionInfo;
@@ -58,6 +91,12 @@ class DockerExecutionServiceTest {
     @BeforeEach
     void setUp() {
         objectMapper = new ObjectMapper();
+        resultCache = new ResultCache(new ResultCacheConfig(), objectMapper, new SimpleMeterRegistry());
+        resultCache.init();
+        coalescingConfig = new CoalescingConfig();
+        coalescingMeters = new SimpleMeterRegistry();
+        coalescer = new ExecutionCoalescer(coalescingConfig, coalescingMeters);
+        coalescer.init();
 
         testFunctionInfo = FunctionInfo.builder()
                 .id(UUID.randomUUID())
@@ -86,7 +125,9 @@ class DockerExecutionServiceTest {
         void shouldRejectWhenFunctionNotFound() {
             when(registryClient.getFunction("unknown")).thenReturn(Optional.empty());
             DockerExecutionService service = new DockerExecutionService(
-                    dockerClient, dockerConfig, registryClient, objectMapper, minioClient);
+                    dockerClient, dockerClient, registryClient, objectMapper, containerFactory, jarCache, containerPool,
+                    new PoolConfig(), inProcessExecutionService, cdsArchiveService, launchProfileService,
+                    runtimeImageBuilder, functionImageService, resultCache, coalescer);
 
             ExecutionRequest request = ExecutionRequest.builder()
                     .functionName("unknown")
@@ -111,7 +152,9 @@ class DockerExecutionServiceTest {
                     .build();
             when(registryClient.getFunction("pending-function")).thenReturn(Optional.of(pendingFunction));
             DockerExecutionService service = new DockerExecutionService(
-                    dockerClient, dockerConfig, registryClient, objectMapper, minioClient);
+                    dockerClient, dockerClient, registryClient, objectMapper, containerFactory, jarCache, containerPool,
+                    new PoolConfig(), inProcessExecutionService, cdsArchiveService, launchProfileService,
+                    runtimeImageBuilder, functionImageService, resultCache, coalescer);
 
             ExecutionRequest request = ExecutionRequest.builder()
                     .functionName("pending-function")
@@ -136,7 +179,9 @@ class DockerExecutionServiceTest {
                     .build();
             when(registryClient.getFunction("no-jar-function")).thenReturn(Optional.of(noJarFunction));
             DockerExecutionService service = new DockerExecutionService(
-                    dockerClient, dockerConfig, registryClient, objectMapper, minioClient);
+                    dockerClient, dockerClient, registryClient, objectMapper, containerFactory, jarCache, containerPool,
+                    new PoolConfig(), inProcessExecutionService, cdsArchiveService, launchProfileService,
+                    runtimeImageBuilder, functionImageService, resultCache, coalescer);
 
             ExecutionRequest request = ExecutionRequest.builder()
                     .functionName("no-jar-function")
@@ -149,6 +194,254 @@ class DockerExecutionServiceTest {
         }
     }
 
+    @Nested
+    @DisplayName("Runtime Dispatch Tests")
+    class RuntimeDispatchTests {
+
+        @Mock
+        private RuntimeInstance instance;
+
+        private DockerExecutionService service;
+
+        @BeforeEach
+        void setUp() throws Exception {
+            when(registryClient.getFunction("test-function")).thenReturn(Optional.of(testFunctionInfo));
+            service = new DockerExecutionService(
+                    dockerClient, dockerClient, registryClient, objectMapper, containerFactory, jarCache, containerPool,
+                    new PoolConfig(), inProcessExecutionService, cdsArchiveService, launchProfileService,
+                    runtimeImageBuilder, functionImageService, resultCache, coalescer);
+        }
+
+        @Test
+        @DisplayName("should return result and release instance")
+        void shouldReturnResultAndReleaseInstance() throws Exception {
+            when(containerPool.lease(eq(testFunctionInfo), anyLong(), any())).thenReturn(instance);
+            when(instance.invoke("{\"name\":\"World\"}")).thenReturn(CompletableFuture.completedFuture(
+                    hskl.cn.serverless.runtime.Frame.of(1, hskl.cn.serverless.runtime.Frame.RESULT, "Hello, World!\n")));
+
+            ExecutionResponse response = service.execute(executionRequest);
+
+            assertThat(response.getStatus()).isEqualTo(ExecutionStatus.SUCCESS);
+            assertThat(response.getResult()).isEqualTo("Hello, World!");
+            verify(containerPool).release(instance);
+            verify(cdsArchiveService).onSuccess(testFunctionInfo, "{\"name\":\"World\"}");
+            verify(launchProfileService).record(eq(testFunctionInfo), any(), eq("runtime"), anyLong());
+            verify(runtimeImageBuilder).buildIfMissing(testFunctionInfo);
+            verify(functionImageService).bakeIfMissing(testFunctionInfo);
+            verifyNoInteractions(dockerClient);
+        }
+
+        @Test
+        @DisplayName("should serve repeated payloads of deterministic functions from the result cache")
+        void shouldServeDeterministicResultFromCache() throws Exception {
+            testFunctionInfo.setDeterministic(true);
+            when(containerPool.lease(eq(testFunctionInfo), anyLong(), any())).thenReturn(instance);
+            when(instance.invoke("{\"name\":\"World\"}")).thenReturn(CompletableFuture.completedFuture(
+                    hskl.cn.serverless.runtime.Frame.of(1, hskl.cn.serverless.runtime.Frame.RESULT, "Hello, World!\n")));
+
+            ExecutionResponse first = service.execute(executionRequest);
+            ExecutionResponse second = service.execute(executionRequest);
+
+            assertThat(first.isCached()).isFalse();
+            assertThat(second.isCached()).isTrue();
+            assertThat(second.getStatus()).isEqualTo(ExecutionStatus.SUCCESS);
+            assertThat(second.getResult()).isEqualTo("Hello, World!");
+            assertThat(second.getExecutionId()).isNotEqualTo(first.getExecutionId());
+            verify(containerPool, times(1)).lease(eq(testFunctionInfo), anyLong(), any());
+        }
+
+        @Test
+        @DisplayName("should not cache results of functions that are not deterministic")
+        void shouldNotCacheNonDeterministicResults() throws Exception {
+            when(containerPool.lease(eq(testFunctionInfo), anyLong(), any())).thenReturn(instance);
+            when(instance.invoke(anyString())).thenReturn(CompletableFuture.completedFuture(
+                    hskl.cn.serverless.runtime.Frame.of(1, hskl.cn.serverless.runtime.Frame.RESULT, "Hello, World!\n")));
+
+            service.execute(executionRequest);
+            ExecutionResponse second = service.execute(executionRequest);
+
+            assertThat(second.isCached()).isFalse();
+            verify(containerPool, times(2)).lease(eq(testFunctionInfo), anyLong(), any());
+        }
+
+        @Test
+        @DisplayName("should share one invocation between identical concurrent executions when coalescing")
+        void shouldCoalesceIdenticalExecutions() throws Exception {
+            coalescingConfig.setEnabled(true);
+            CompletableFuture<hskl.cn.serverless.runtime.Frame> invocation = new CompletableFuture<>();
+            when(containerPool.lease(eq(testFunctionInfo), anyLong(), any())).thenReturn(instance);
+            when(instance.invoke(anyString())).thenReturn(invocation);
+
+            CompletableFuture<ExecutionResponse> first = CompletableFuture.supplyAsync(() -> service.execute(executionRequest));
+            verify(instance, timeout(5000)).invoke(anyString());
+            CompletableFuture<ExecutionResponse> second = CompletableFuture.supplyAsync(() -> service.execute(executionRequest));
+            await().atMost(5, TimeUnit.SECONDS).until(() -> coalescingMeters.get("executor.coalescing.executions")
+                    .tag("role", "follower").counter().count() == 1);
+            invocation.complete(hskl.cn.serverless.runtime.Frame.of(1, hskl.cn.serverless.runtime.Frame.RESULT, "Hello, World!\n"));
+
+            assertThat(first.get(5, TimeUnit.SECONDS).isCoalesced()).isFalse();
+            assertThat(second.get(5, TimeUnit.SECONDS).isCoalesced()).isTrue();
+            assertThat(second.get().getResult()).isEqualTo("Hello, World!");
+            verify(containerPool, times(1)).lease(eq(testFunctionInfo), anyLong(), any());
+        }
+
+        @Test
+        @DisplayName("should report function errors as FAILED and keep instance")
+        void shouldReportFunctionError() throws Exception {
+            when(containerPool.lease(eq(testFunctionInfo), anyLong(), any())).thenReturn(instance);
+            when(instance.invoke(anyString())).thenReturn(CompletableFuture.completedFuture(
+                    hskl.cn.serverless.runtime.Frame.of(1, hskl.cn.serverless.runtime.Frame.ERROR, "java.lang.IllegalStateException: boom")));
+
+            ExecutionResponse response = service.execute(executionRequest);
+
+            assertThat(response.getStatus()).isEqualTo(ExecutionStatus.FAILED);
+            assertThat(response.getError()).contains("boom");
+            verify(containerPool).release(instance);
+        }
+
+        @Test
+        @DisplayName("should discard instance when it dies during invocation")
+        void shouldDiscardDeadInstance() throws Exception {
+            when(containerPool.lease(eq(testFunctionInfo), anyLong(), any())).thenReturn(instance);
+            when(instance.invoke(anyString())).thenReturn(
+                    CompletableFuture.failedFuture(new ExecutionException("Runtime container exited")));
+
+            ExecutionResponse response = service.execute(executionRequest);
+
+            assertThat(response.getStatus()).isEqualTo(ExecutionStatus.FAILED);
+            assertThat(response.getError()).contains("Runtime container exited");
+            verify(containerPool).discard(instance);
+        }
+
+        @Test
+        @DisplayName("should return TIMEOUT when no instance is available")
+        void shouldTimeoutWithoutInstance() throws Exception {
+            when(containerPool.lease(eq(testFunctionInfo), anyLong(), any())).thenReturn(null);
+
+            ExecutionResponse response = service.execute(executionRequest);
+
+            assertThat(response.getStatus()).isEqualTo(ExecutionStatus.TIMEOUT);
+            assertThat(response.getError()).contains("No instance available");
+        }
+
+        @Test
+        @DisplayName("should report in-process failures without a message as FAILED")
+        void shouldReportInProcessFailureWithoutMessage() throws Exception {
+            when(inProcessExecutionService.supports(testFunctionInfo)).thenReturn(true);
+            when(inProcessExecutionService.invoke(eq(testFunctionInfo), anyString()))
+                    .thenThrow(new IllegalStateException());
+
+            ExecutionResponse response = service.execute(executionRequest);
+
+            assertThat(response.getStatus()).isEqualTo(ExecutionStatus.FAILED);
+            assertThat(response.getError()).isEqualTo("java.lang.IllegalStateException");
+        }
+    }
+
+    @Nested
+    @DisplayName("One-Shot Execution Tests")
+    class OneShotExecutionTests {
+
+        @Mock(answer = Answers.RETURNS_SELF)
+        private AttachContainerCmd attachCmd;
+
+        @Mock
+        private StartContainerCmd startCmd;
+
+        @Mock
+        private WaitContainerCmd waitCmd;
+
+        @Mock
+        private WaitResponse waitResponse;
+
+        private final CompletableFuture<Path> jarFile = CompletableFuture.completedFuture(Path.of("/tmp/test.jar"));
+        private DockerExecutionService service;
+
+        @BeforeEach
+        void setUp() throws Exception {
+            PoolConfig poolConfig = new PoolConfig();
+            poolConfig.setEnabled(false);
+            when(registryClient.getFunction("test-function")).thenReturn(Optional.of(testFunctionInfo));
+            when(containerPool.acquireSlot(eq(testFunctionInfo), anyLong(), any())).thenReturn(true);
+            when(jarCache.acquireAsync(testFunctionInfo)).thenReturn(jarFile);
+            when(containerFactory.createFunctionContainer(eq(testFunctionInfo), eq(jarFile), any(), any(),
+                    eq("{\"name\":\"World\"}"), anyString(), any())).thenReturn("container-1");
+            when(dockerClient.attachContainerCmd("container-1")).thenReturn(attachCmd);
+            when(dockerClient.startContainerCmd("container-1")).thenReturn(startCmd);
+            service = new DockerExecutionService(
+                    dockerClient, dockerClient, registryClient, objectMapper, containerFactory, jarCache, containerPool,
+                    poolConfig, inProcessExecutionService, cdsArchiveService, launchProfileService,
+                    runtimeImageBuilder, functionImageService, resultCache, coalescer);
+        }
+
+        @Test
+        @DisplayName("should take the result from the attach stream and the exit code from wait")
+        void shouldCompleteOnExit() throws Exception {
+            attachOutput(new Frame(StreamType.STDOUT, "Hello, World!\n".getBytes()));
+            exitWith(0);
+
+            ExecutionResponse response = service.execute(executionRequest);
+
+            assertThat(response.getStatus()).isEqualTo(ExecutionStatus.SUCCESS);
+            assertThat(response.getResult()).isEqualTo("Hello, World!");
+            verify(dockerClient, never()).inspectContainerCmd(anyString());
+            verify(dockerClient, never()).stopContainerCmd(anyString());
+            verify(containerFactory).removeContainer("container-1");
+            verify(containerPool).releaseSlot(testFunctionInfo);
+            verify(jarCache).releaseAsync(jarFile);
+        }
+
+        @Test
+        @DisplayName("should report stderr when the container exits with an error")
+        void shouldFailOnNonZeroExit() throws Exception {
+            attachOutput(new Frame(StreamType.STDOUT, "partial".getBytes()),
+                    new Frame(StreamType.STDERR, "java.lang.IllegalStateException: boom\n".getBytes()));
+            exitWith(1);
+
+            ExecutionResponse response = service.execute(executionRequest);
+
+            assertThat(response.getStatus()).isEqualTo(ExecutionStatus.FAILED);
+            assertThat(response.getError()).isEqualTo("java.lang.IllegalStateException: boom");
+        }
+
+        @Test
+        @DisplayName("should time out and remove a container that does not exit")
+        void shouldTimeoutWhenContainerDoesNotExit() throws Exception {
+            testFunctionInfo.setTimeoutSeconds(1);
+            attachOutput();
+            when(dockerClient.waitContainerCmd("container-1")).thenReturn(waitCmd);
+            when(waitCmd.exec(any())).thenAnswer(i -> i.getArgument(0));
+
+            ExecutionResponse response = service.execute(executionRequest);
+
+            assertThat(response.getStatus()).isEqualTo(ExecutionStatus.TIMEOUT);
+            verify(containerFactory).removeContainer("container-1");
+        }
+
+        private void attachOutput(Frame... frames) {
+            when(attachCmd.exec(any())).thenAnswer(i -> {
+                ResultCallback<Frame> callback = i.getArgument(0);
+                callback.onStart(() -> {});
+                for (Frame frame : frames) {
+                    callback.onNext(frame);
+                }
+                callback.onComplete();
+                return callback;
+            });
+        }
+
+        private void exitWith(int exitCode) {
+            when(waitResponse.getStatusCode()).thenReturn(exitCode);
+            when(dockerClient.waitContainerCmd("container-1")).thenReturn(waitCmd);
+            when(waitCmd.exec(any())).thenAnswer(i -> {
+                ResultCallback<WaitResponse> callback = i.getArgument(0);
+                callback.onNext(waitResponse);
+                callback.onComplete();
+                return callback;
+            });
+        }
+    }
+
     @Nested
     @DisplayName("ExecutionRequest Tests")
     class ExecutionRequestTests {
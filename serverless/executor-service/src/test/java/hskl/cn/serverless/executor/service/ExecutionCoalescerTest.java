@@ -0,0 +1,119 @@
+package hskl.cn.serverless.executor.service;
+
+import hskl.cn.serverless.executor.config.CoalescingConfig;
+import hskl.cn.serverless.executor.dto.ExecutionResponse;
+import hskl.cn.serverless.executor.dto.ExecutionResponse.ExecutionStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+@DisplayName("ExecutionCoalescer Tests")
+class ExecutionCoalescerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ExecutionCoalescer coalescer;
+    private ExecutorService callers;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        coalescer = new ExecutionCoalescer(new CoalescingConfig(), meterRegistry);
+        coalescer.init();
+        callers = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("should run identical concurrent executions once and share the response")
+    void shouldShareInFlightExecution() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger executions = new AtomicInteger();
+        List<Future<ExecutionCoalescer.Result>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(callers.submit(() -> coalescer.execute("sum#a", () -> {
+                executions.incrementAndGet();
+                awaitQuietly(release);
+                return ExecutionResponse.builder().status(ExecutionStatus.SUCCESS).result("3").build();
+            })));
+        }
+        await().atMost(5, TimeUnit.SECONDS).until(() -> role("leader") + role("follower") == 4);
+        release.countDown();
+
+        List<ExecutionCoalescer.Result> responses = new ArrayList<>();
+        for (Future<ExecutionCoalescer.Result> result : results) {
+            responses.add(result.get(5, TimeUnit.SECONDS));
+        }
+        assertThat(executions).hasValue(1);
+        assertThat(responses).extracting(r -> r.response().getResult()).containsOnly("3");
+        assertThat(responses).filteredOn(ExecutionCoalescer.Result::joined).hasSize(3);
+        assertThat(coalescer.inFlight()).isZero();
+    }
+
+    @Test
+    @DisplayName("should not merge executions with different keys or that do not overlap")
+    void shouldOnlyMergeOverlappingIdenticalExecutions() {
+        AtomicInteger executions = new AtomicInteger();
+
+        coalescer.execute("sum#a", () -> response(executions));
+        coalescer.execute("sum#a", () -> response(executions));
+        coalescer.execute("sum#b", () -> response(executions));
+
+        assertThat(executions).hasValue(3);
+        assertThat(role("follower")).isZero();
+    }
+
+    @Test
+    @DisplayName("should pass failures on to every waiting caller")
+    void shouldPropagateFailures() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Future<ExecutionCoalescer.Result> leader = callers.submit(() -> coalescer.execute("sum#a", () -> {
+            awaitQuietly(release);
+            throw new IllegalStateException("boom");
+        }));
+        await().atMost(5, TimeUnit.SECONDS).until(() -> coalescer.inFlight() == 1);
+        Future<ExecutionCoalescer.Result> follower = callers.submit(() ->
+                coalescer.execute("sum#a", () -> ExecutionResponse.builder().build()));
+        await().atMost(5, TimeUnit.SECONDS).until(() -> role("follower") == 1);
+        release.countDown();
+
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasRootCauseMessage("boom");
+        assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS)).hasRootCauseMessage("boom");
+        assertThat(coalescer.inFlight()).isZero();
+    }
+
+    private double role(String role) {
+        return meterRegistry.get("executor.coalescing.executions").tag("role", role).counter().count();
+    }
+
+    private static ExecutionResponse response(AtomicInteger executions) {
+        executions.incrementAndGet();
+        return ExecutionResponse.builder().status(ExecutionStatus.SUCCESS).build();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package hskl.cn.serverless.executor.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.dockerjava.api.DockerClient;
+import hskl.cn.serverless.executor.config.CoalescingConfig;
+import hskl.cn.serverless.executor.config.LaunchProfileConfig;
+import hskl.cn.serverless.executor.config.PoolConfig;
+import hskl.cn.serverless.executor.config.ResultCacheConfig;
+import hskl.cn.serverless.executor.dto.ExecutionRequest;
+import hskl.cn.serverless.executor.dto.ExecutionResponse;
+import hskl.cn.serverless.executor.dto.ExecutionResponse.ExecutionStatus;
+import hskl.cn.serverless.executor.dto.FunctionInfo;
+import hskl.cn.serverless.runtime.Frame;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Drives many more synchronous executions than a request thread pool would
+ * hold through the real {@link DockerExecutionService} and
+ * {@link ContainerPool}, with runtime instances that answer after a fixed
+ * delay. Callers run on virtual threads when the JVM supports them, as they
+ * do behind Tomcat with {@code spring.threads.virtual.enabled}.
+ */
+@Slf4j
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("Execution concurrency benchmark")
+class ExecutionConcurrencyBenchmarkTest {
+
+    private static final int CALLERS = 400;
+    private static final int MAX_INSTANCES = 4;
+    private static final int CONCURRENCY = 2;
+    private static final long INVOCATION_MS = 25;
+
+    @Mock
+    private DockerClient dockerClient;
+
+    @Mock
+    private RegistryClient registryClient;
+
+    @Mock
+    private ContainerFactory containerFactory;
+
+    @Mock
+    private JarCache jarCache;
+
+    @Mock
+    private ZygotePool zygotePool;
+
+    @Mock
+    private CdsArchiveService cdsArchiveService;
+
+    @Mock
+    private InProcessExecutionService inProcessExecutionService;
+
+    @Mock
+    private RuntimeImageBuilder runtimeImageBuilder;
+
+    @Mock
+    private FunctionImageService functionImageService;
+
+    private ContainerPool containerPool;
+    private DockerExecutionService executionService;
+    private FunctionInfo function;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ObjectMapper objectMapper = new ObjectMapper();
+        PoolConfig poolConfig = new PoolConfig();
+        LaunchProfileService launchProfileService = new LaunchProfileService(new LaunchProfileConfig(), meterRegistry);
+        containerPool = new ContainerPool(containerFactory, jarCache, registryClient, poolConfig, zygotePool,
+                cdsArchiveService, launchProfileService, meterRegistry);
+        ResultCache resultCache = new ResultCache(new ResultCacheConfig(), objectMapper, meterRegistry);
+        resultCache.init();
+        ExecutionCoalescer coalescer = new ExecutionCoalescer(new CoalescingConfig(), meterRegistry);
+        coalescer.init();
+        executionService = new DockerExecutionService(
+                dockerClient, dockerClient, registryClient, objectMapper, containerFactory, jarCache, containerPool,
+                poolConfig, inProcessExecutionService, cdsArchiveService, launchProfileService,
+                runtimeImageBuilder, functionImageService, resultCache, coalescer);
+
+        function = FunctionInfo.builder()
+                .id(UUID.randomUUID())
+                .name("busy-function")
+                .handler("com.example.Handler::handle")
+                .jarPath("busy-function/busy.jar")
+                .jarHash("hash-v1")
+                .status("READY")
+                .timeoutSeconds(30)
+                .memoryMb(256)
+                .maxInstances(MAX_INSTANCES)
+                .concurrency(CONCURRENCY)
+                .build();
+        when(registryClient.getFunction("busy-function")).thenReturn(Optional.of(function));
+        Path jarFile = Files.createTempFile("busy", ".jar");
+        when(jarCache.acquireAsync(any(FunctionInfo.class))).thenReturn(CompletableFuture.completedFuture(jarFile));
+        when(cdsArchiveService.archiveFor(any())).thenReturn(Optional.empty());
+        when(containerFactory.startRuntimeInstance(any(), any(), any(), any(), anyString(), anyLong()))
+                .thenAnswer(i -> instance(i.getArgument(4)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        containerPool.shutdown();
+    }
+
+    @Test
+    @DisplayName("should be bounded by instance capacity, not by caller threads")
+    void shouldBeBoundedByInstanceCapacity() throws Exception {
+        SimpleAsyncTaskExecutor callers = new SimpleAsyncTaskExecutor("benchmark-caller-");
+        callers.setVirtualThreads(Runtime.version().feature() >= 21);
+
+        long startedAt = System.nanoTime();
+        List<CompletableFuture<ExecutionResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            ExecutionRequest request = ExecutionRequest.builder()
+                    .functionName("busy-function")
+                    .payload(Map.of("n", i))
+                    .build();
+            responses.add(callers.submitCompletable(() -> executionService.execute(request)));
+        }
+        CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new)).get(60, TimeUnit.SECONDS);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+
+        assertThat(responses).allSatisfy(response ->
+                assertThat(response.join().getStatus()).isEqualTo(ExecutionStatus.SUCCESS));
+        assertThat(peakInFlight).hasValue(MAX_INSTANCES * CONCURRENCY);
+        assertThat(containerPool.instanceCount("busy-function")).isEqualTo(MAX_INSTANCES);
+        log.info("{} executions on {} threads, {} in flight at most: {} ms ({}/s)",
+                CALLERS, Runtime.version().feature() >= 21 ? "virtual" : "platform", peakInFlight.get(),
+                elapsedMs, CALLERS * 1000 / Math.max(1, elapsedMs));
+    }
+
+    private RuntimeInstance instance(String version) throws Exception {
+        RuntimeInstance instance = mock(RuntimeInstance.class);
+        when(instance.getContainerId()).thenReturn("container-" + UUID.randomUUID());
+        when(instance.getFunctionName()).thenReturn("busy-function");
+        when(instance.getVersion()).thenReturn(version);
+        when(instance.getLaunchProfile()).thenReturn(LaunchProfile.SHORT_LIVED);
+        when(instance.isAlive()).thenReturn(true);
+        when(instance.getLastUsedAt()).thenReturn(System.currentTimeMillis());
+        when(instance.invoke(anyString())).thenAnswer(i -> {
+            peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            return CompletableFuture.supplyAsync(() -> {
+                inFlight.decrementAndGet();
+                return Frame.of(1, Frame.RESULT, "ok");
+            }, CompletableFuture.delayedExecutor(INVOCATION_MS, TimeUnit.MILLISECONDS));
+        });
+        return instance;
+    }
+}
@@ -0,0 +1,125 @@
+package hskl.cn.serverless.executor.service;
+
+import hskl.cn.serverless.executor.config.FunctionEventConfig;
+import hskl.cn.serverless.executor.dto.FunctionEvent;
+import hskl.cn.serverless.executor.dto.FunctionInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("FunctionEventListener Tests")
+class FunctionEventListenerTest {
+
+    @Mock
+    private RegistryClient registryClient;
+
+    @Mock
+    private JarCache jarCache;
+
+    @Mock
+    private ContainerPool containerPool;
+
+    @Mock
+    private InProcessExecutionService inProcessExecutionService;
+
+    @Mock
+    private ResultCache resultCache;
+
+    private FunctionEventConfig config;
+    private FunctionEventListener listener;
+    private FunctionInfo function;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        config = new FunctionEventConfig();
+        listener = new FunctionEventListener(registryClient, jarCache, containerPool, inProcessExecutionService,
+                config, resultCache);
+        function = FunctionInfo.builder()
+                .name("hello")
+                .jarPath("hello/hello.jar")
+                .jarHash("hash-v2")
+                .status("READY")
+                .build();
+        when(registryClient.getFunction("hello")).thenReturn(Optional.of(function));
+        when(jarCache.acquire(any(FunctionInfo.class))).thenReturn(Path.of("/cache/hello.jar"));
+        when(jarCache.acquireLayers(any())).thenReturn(List.of());
+    }
+
+    @Test
+    @DisplayName("should prefetch a newly uploaded JAR and replace outdated instances")
+    void shouldPrefetchUploadedJar() throws Exception {
+        listener.onEvent(event(FunctionEvent.Type.JAR_UPLOADED, "hello/hello.jar"));
+
+        verify(jarCache).invalidate("hello/hello.jar");
+        verify(jarCache).acquire(function);
+        verify(jarCache).release(Path.of("/cache/hello.jar"));
+        verify(inProcessExecutionService).evictIfOutdated(function);
+        verify(containerPool).refresh(function, false);
+    }
+
+    @Test
+    @DisplayName("should not prefetch when prefetching is disabled")
+    void shouldSkipPrefetchWhenDisabled() throws Exception {
+        config.setPrefetch(false);
+
+        listener.onEvent(event(FunctionEvent.Type.JAR_UPLOADED, "hello/hello.jar"));
+
+        verify(jarCache, never()).acquire(any(FunctionInfo.class));
+        verify(containerPool).refresh(function, false);
+    }
+
+    @Test
+    @DisplayName("should drop everything cached for a deleted function")
+    void shouldEvictDeletedFunction() throws Exception {
+        listener.onEvent(event(FunctionEvent.Type.DELETED, "hello/hello.jar"));
+
+        verify(inProcessExecutionService).evict("hello");
+        verify(containerPool).drain("hello");
+        verify(jarCache).evict("hello/hello.jar");
+        verify(resultCache).evict("hello");
+        verify(registryClient).invalidate("hello");
+        verify(registryClient, never()).getFunction(any());
+    }
+
+    @Test
+    @DisplayName("should unload functions that are no longer ready")
+    void shouldDrainFunctionsNotReady() throws Exception {
+        function.setStatus("DISABLED");
+
+        listener.onEvent(event(FunctionEvent.Type.STATUS_CHANGED, "hello/hello.jar"));
+
+        verify(inProcessExecutionService).evict("hello");
+        verify(containerPool).drain("hello");
+        verify(jarCache, never()).acquire(any(FunctionInfo.class));
+        verify(containerPool, never()).refresh(any(), anyBoolean());
+    }
+
+    @Test
+    @DisplayName("should ignore events when disabled")
+    void shouldIgnoreEventsWhenDisabled() {
+        config.setEnabled(false);
+
+        listener.onEvent(event(FunctionEvent.Type.DELETED, "hello/hello.jar"));
+
+        verifyNoInteractions(inProcessExecutionService, containerPool, jarCache);
+    }
+
+    private static FunctionEvent event(FunctionEvent.Type type, String jarPath) {
+        return FunctionEvent.builder().type(type).functionName("hello").jarPath(jarPath).build();
+    }
+}
@@ -0,0 +1,173 @@
+package hskl.cn.serverless.executor.service;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.command.InspectVolumeResponse;
+import com.github.dockerjava.api.model.Image;
+import hskl.cn.serverless.executor.config.FunctionImageConfig;
+import hskl.cn.serverless.executor.dto.FunctionInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("FunctionImageService Tests")
+class FunctionImageServiceTest {
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private DockerClient dockerClient;
+
+    @Mock
+    private ContainerFactory containerFactory;
+
+    @Mock
+    private JarCache jarCache;
+
+    @Mock
+    private FunctionRuntimeJar functionRuntimeJar;
+
+    private FunctionImageConfig config;
+    private FunctionImageService service;
+    private FunctionInfo function;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        config = new FunctionImageConfig();
+        service = new FunctionImageService(dockerClient, containerFactory, jarCache, functionRuntimeJar, config);
+        function = FunctionInfo.builder()
+                .name("hello")
+                .jarPath("hello/hello.jar")
+                .jarHash("new-hash")
+                .build();
+        when(containerFactory.imageFor(function)).thenReturn("eclipse-temurin:17-jre-alpine");
+        when(containerFactory.bakedImageTag(function)).thenReturn("fn-hello:new-hash");
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    @DisplayName("should not bake when the image exists on this host")
+    void shouldSkipExistingImage() throws Exception {
+        when(containerFactory.bakedImageFor(function)).thenReturn(Optional.of("fn-hello:new-hash"));
+
+        service.bakeIfMissing(function);
+
+        verify(jarCache, never()).acquire(any(FunctionInfo.class));
+    }
+
+    @Test
+    @DisplayName("should bake in the background when the image is missing")
+    void shouldBakeMissingImage() throws Exception {
+        when(containerFactory.bakedImageFor(function)).thenReturn(Optional.empty());
+        when(jarCache.acquire(any(FunctionInfo.class))).thenThrow(new IllegalStateException("offline"));
+
+        service.bakeIfMissing(function);
+
+        verify(jarCache, timeout(2000)).acquire(function);
+        verify(containerFactory, never()).imageBuilt(anyString());
+    }
+
+    @Test
+    @DisplayName("should not retry a failed bake until the retry interval has passed")
+    void shouldNotRetryFailedBake() throws Exception {
+        when(containerFactory.bakedImageFor(function)).thenReturn(Optional.empty());
+        when(jarCache.acquire(any(FunctionInfo.class))).thenThrow(new IllegalStateException("offline"));
+        service.bakeIfMissing(function);
+        verify(jarCache, timeout(2000)).acquire(function);
+        Thread.sleep(100);
+
+        service.bakeIfMissing(function);
+        Thread.sleep(100);
+        verify(jarCache, times(1)).acquire(any(FunctionInfo.class));
+
+        config.setRetryAfterFailureMs(0);
+        service.bakeIfMissing(function);
+        verify(jarCache, timeout(2000).times(2)).acquire(any(FunctionInfo.class));
+    }
+
+    @Test
+    @DisplayName("should remove images of outdated JAR versions")
+    void shouldRemoveStaleVersions() {
+        when(containerFactory.bakedImageFor(function)).thenReturn(Optional.of("fn-hello:new-hash"));
+        service.bakeIfMissing(function);
+        Image current = image("fn-hello:new-hash", "hello", "new-hash", 100, 2);
+        Image stale = image("fn-hello:old-hash", "hello", "old-hash", 100, 1);
+        when(dockerClient.listImagesCmd().withLabelFilter(FunctionImageService.FUNCTION_LABEL).exec())
+                .thenReturn(List.of(current, stale));
+
+        service.collectGarbage();
+
+        verify(dockerClient).removeImageCmd("fn-hello:old-hash");
+        verify(dockerClient, never()).removeImageCmd("fn-hello:new-hash");
+        verify(containerFactory).imageRemoved("fn-hello:old-hash");
+    }
+
+    @Test
+    @DisplayName("should remove the least recently used images when over budget")
+    void shouldRemoveLeastRecentlyUsed() {
+        config.setMaxBytes(150);
+        Image older = image("fn-a:1", "a", "1", 100, 1);
+        Image newer = image("fn-b:1", "b", "1", 100, 2);
+        when(dockerClient.listImagesCmd().withLabelFilter(FunctionImageService.FUNCTION_LABEL).exec())
+                .thenReturn(List.of(newer, older));
+
+        service.collectGarbage();
+
+        verify(dockerClient).removeImageCmd("fn-a:1");
+        verify(dockerClient, never()).removeImageCmd("fn-b:1");
+    }
+
+    @Test
+    @DisplayName("should remove JAR volumes of outdated JAR versions")
+    void shouldRemoveStaleJarVolumes() {
+        when(containerFactory.bakedImageFor(function)).thenReturn(Optional.of("fn-hello:new-hash"));
+        service.bakeIfMissing(function);
+        InspectVolumeResponse current = volume("fn-jar-hello-new", "new-hash");
+        InspectVolumeResponse stale = volume("fn-jar-hello-old", "old-hash");
+        when(dockerClient.listVolumesCmd().withFilter(anyString(), anyList()).exec().getVolumes())
+                .thenReturn(List.of(current, stale));
+
+        service.collectGarbage();
+
+        verify(dockerClient).removeVolumeCmd("fn-jar-hello-old");
+        verify(dockerClient, never()).removeVolumeCmd("fn-jar-hello-new");
+        verify(containerFactory).jarVolumeRemoved("fn-jar-hello-old");
+    }
+
+    private static InspectVolumeResponse volume(String name, String jarHash) {
+        InspectVolumeResponse volume = mock(InspectVolumeResponse.class);
+        when(volume.getName()).thenReturn(name);
+        when(volume.getLabels()).thenReturn(Map.of(FunctionImageService.FUNCTION_LABEL, "hello",
+                FunctionImageService.JAR_HASH_LABEL, jarHash));
+        return volume;
+    }
+
+    private static Image image(String tag, String function, String jarHash, long size, long created) {
+        Image image = mock(Image.class);
+        when(image.getRepoTags()).thenReturn(new String[]{tag});
+        when(image.getLabels()).thenReturn(Map.of(FunctionImageService.FUNCTION_LABEL, function,
+                FunctionImageService.JAR_HASH_LABEL, jarHash));
+        when(image.getSize()).thenReturn(size);
+        when(image.getCreated()).thenReturn(created);
+        return image;
+    }
+}
@@ -0,0 +1,189 @@
+package hskl.cn.serverless.executor.service;
+
+import hskl.cn.serverless.executor.config.InProcessConfig;
+import hskl.cn.serverless.executor.dto.FunctionInfo;
+import hskl.cn.serverless.executor.exception.ExecutionException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("InProcessExecutionService Tests")
+class InProcessExecutionServiceTest {
+
+    public static class CounterFunction {
+        private int calls;
+
+        public String handle(String input) throws InterruptedException {
+            if (input.contains("sleep")) {
+                Thread.sleep(5000);
+            }
+            if (input.contains("nap")) {
+                Thread.sleep(1000);
+            }
+            if (input.contains("fail")) {
+                throw new IllegalStateException("failed on purpose");
+            }
+            return getClass().getClassLoader().getName() + ":" + (++calls);
+        }
+
+        public String echo(String input) {
+            return input;
+        }
+    }
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private JarCache jarCache;
+
+    private InProcessExecutionService service;
+    private FunctionInfo function;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        service = new InProcessExecutionService(jarCache, new InProcessConfig());
+        function = FunctionInfo.builder()
+                .id(UUID.randomUUID())
+                .name("trusted")
+                .handler(CounterFunction.class.getName() + "::handle")
+                .jarPath("trusted/trusted.jar")
+                .jarHash("hash-v1")
+                .isolation(InProcessExecutionService.ISOLATION)
+                .status("READY")
+                .timeoutSeconds(1)
+                .memoryMb(256)
+                .build();
+        when(jarCache.acquire(any(FunctionInfo.class))).thenAnswer(i -> functionJar());
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    @DisplayName("should load the JAR once into its own class loader and reuse the instance")
+    void shouldLoadOnceAndReuse() throws Exception {
+        assertThat(service.supports(function)).isTrue();
+
+        assertThat(service.invoke(function, "{}")).isEqualTo("fn-trusted:1");
+        assertThat(service.invoke(function, "{}")).isEqualTo("fn-trusted:2");
+        verify(jarCache, times(1)).acquire(any(FunctionInfo.class));
+    }
+
+    @Test
+    @DisplayName("should reload when the JAR changes")
+    void shouldReloadOnNewVersion() throws Exception {
+        service.invoke(function, "{}");
+        function.setJarHash("hash-v2");
+
+        assertThat(service.invoke(function, "{}")).isEqualTo("fn-trusted:1");
+        verify(jarCache, times(2)).acquire(any(FunctionInfo.class));
+        verify(jarCache).release(any());
+    }
+
+    @Test
+    @DisplayName("should unload and reload when the handler changes")
+    void shouldReloadOnNewHandler() throws Exception {
+        service.invoke(function, "{}");
+        function.setHandler(CounterFunction.class.getName() + "::echo");
+
+        service.evictIfOutdated(function);
+
+        verify(jarCache).release(any());
+        assertThat(service.invoke(function, "{\"echo\":1}")).isEqualTo("{\"echo\":1}");
+    }
+
+    @Test
+    @DisplayName("should keep a replaced class loader open until running invocations return")
+    void shouldKeepReplacedClassLoaderWhileInUse() throws Exception {
+        function.setTimeoutSeconds(5);
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> {
+            try {
+                return service.invoke(function, "{\"nap\":true}");
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        verify(jarCache, timeout(2000)).acquire(any(FunctionInfo.class));
+        FunctionInfo updated = FunctionInfo.builder()
+                .name("trusted")
+                .handler(function.getHandler())
+                .jarPath("trusted/trusted.jar")
+                .jarHash("hash-v2")
+                .isolation(InProcessExecutionService.ISOLATION)
+                .timeoutSeconds(5)
+                .build();
+
+        assertThat(service.invoke(updated, "{}")).isEqualTo("fn-trusted:1");
+        verify(jarCache, never()).release(any());
+        assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo("fn-trusted:1");
+        verify(jarCache).release(any());
+    }
+
+    @Test
+    @DisplayName("should report handler exceptions with stack trace")
+    void shouldReportHandlerException() {
+        assertThatThrownBy(() -> service.invoke(function, "{\"fail\":true}"))
+                .isInstanceOf(ExecutionException.class)
+                .hasMessageContaining("IllegalStateException: failed on purpose");
+    }
+
+    @Test
+    @DisplayName("should time out slow invocations")
+    void shouldTimeOut() {
+        assertThatThrownBy(() -> service.invoke(function, "{\"sleep\":true}"))
+                .isInstanceOf(TimeoutException.class);
+    }
+
+    @Test
+    @DisplayName("should not handle container-isolated functions")
+    void shouldNotSupportContainerIsolation() {
+        function.setIsolation("CONTAINER");
+
+        assertThat(service.supports(function)).isFalse();
+    }
+
+    /**
+     * Packages {@link CounterFunction} into a JAR so it can be loaded by a
+     * class loader that does not see the test classpath.
+     */
+    private Path functionJar() throws Exception {
+        String entryName = CounterFunction.class.getName().replace('.', '/') + ".class";
+        Path jar = Files.createTempFile(tempDir, "function", ".jar");
+        try (OutputStream out = Files.newOutputStream(jar);
+             JarOutputStream jarOut = new JarOutputStream(out);
+             InputStream classBytes = CounterFunction.class.getClassLoader().getResourceAsStream(entryName)) {
+            jarOut.putNextEntry(new JarEntry(entryName));
+            classBytes.transferTo(jarOut);
+            jarOut.closeEntry();
+        }
+        return jar;
+    }
+}
@@ -0,0 +1,372 @@
+package hskl.cn.serverless.executor.service;
+
+import hskl.cn.serverless.executor.config.JarCacheConfig;
+import hskl.cn.serverless.executor.dto.FunctionInfo;
+import hskl.cn.serverless.executor.dto.LayerInfo;
+import hskl.cn.serverless.executor.exception.ExecutionException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.minio.GetObjectArgs;
+import io.minio.GetObjectResponse;
+import io.minio.MinioClient;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import okhttp3.Headers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("JarCache Tests")
+class JarCacheTest {
+
+    private static final String CONTENT = "jar-content-v1";
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private MinioClient minioClient;
+
+    @Mock
+    private JarPeerService peers;
+
+    private JarCacheConfig config;
+    private SimpleMeterRegistry meterRegistry;
+    private JarCache jarCache;
+    private FunctionInfo function;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        config = new JarCacheConfig();
+        config.setDirectory(tempDir.resolve("cache").toString());
+        meterRegistry = new SimpleMeterRegistry();
+        jarCache = new JarCache(minioClient, config, meterRegistry, peers);
+        ReflectionTestUtils.setField(jarCache, "minioBucket", "functions");
+        jarCache.init();
+        function = FunctionInfo.builder()
+                .id(UUID.randomUUID())
+                .name("cached")
+                .jarPath("cached/cached.jar")
+                .jarHash(sha256(CONTENT))
+                .build();
+        when(minioClient.getObject(any(GetObjectArgs.class))).thenAnswer(i -> response(CONTENT));
+        when(minioClient.statObject(any(StatObjectArgs.class))).thenAnswer(i -> stat(CONTENT.length()));
+    }
+
+    @Test
+    @DisplayName("should download a JAR once and serve it from disk afterwards")
+    void shouldServeRepeatedRequestsFromCache() throws Exception {
+        Path first = jarCache.acquire(function);
+        jarCache.release(first);
+        Path second = jarCache.acquire(function);
+
+        assertThat(second).isEqualTo(first);
+        assertThat(Files.readString(second)).isEqualTo(CONTENT);
+        verify(minioClient, times(1)).getObject(any(GetObjectArgs.class));
+        assertThat(meterRegistry.get("executor.jar.cache.requests").tag("result", "hit").counter().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("executor.jar.cache.requests").tag("result", "miss").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should share one download between concurrent requests")
+    void shouldDeduplicateConcurrentDownloads() throws Exception {
+        CountDownLatch downloading = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        when(minioClient.getObject(any(GetObjectArgs.class))).thenAnswer(i -> {
+            downloading.countDown();
+            proceed.await(5, TimeUnit.SECONDS);
+            return response(CONTENT);
+        });
+
+        CompletableFuture<Path> first = CompletableFuture.supplyAsync(() -> acquire(function));
+        downloading.await(5, TimeUnit.SECONDS);
+        CompletableFuture<Path> second = CompletableFuture.supplyAsync(() -> acquire(function));
+        Thread.sleep(50);
+        proceed.countDown();
+
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo(first.get(5, TimeUnit.SECONDS));
+        verify(minioClient, times(1)).getObject(any(GetObjectArgs.class));
+    }
+
+    @Test
+    @DisplayName("should evict released JARs least-recently-used first when over budget")
+    void shouldEvictLeastRecentlyUsed() throws Exception {
+        config.setMaxBytes(CONTENT.length() * 2L);
+        Path a = jarCache.acquire(other("a"));
+        Path b = jarCache.acquire(other("b"));
+        jarCache.release(a);
+        jarCache.release(b);
+
+        Path c = jarCache.acquire(other("c"));
+
+        assertThat(a).doesNotExist();
+        assertThat(b).exists();
+        assertThat(c).exists();
+        assertThat(jarCache.totalBytes()).isEqualTo(CONTENT.length() * 2L);
+        assertThat(meterRegistry.get("executor.jar.cache.evictions").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should delete TAR archives built from an evicted JAR")
+    void shouldEvictArchives() throws Exception {
+        Path jar = jarCache.acquire(function);
+        Path tar = jar.resolveSibling(jar.getFileName() + ".function.jar.tar");
+        Files.writeString(tar, "tar");
+        config.setMaxBytes(0);
+
+        jarCache.release(jar);
+
+        assertThat(jar).doesNotExist();
+        assertThat(tar).doesNotExist();
+    }
+
+    @Test
+    @DisplayName("should keep JARs in use even when over budget")
+    void shouldNotEvictPinnedJars() throws Exception {
+        config.setMaxBytes(1);
+
+        Path jar = jarCache.acquire(function);
+        assertThat(jar).exists();
+
+        jarCache.release(jar);
+        assertThat(jar).doesNotExist();
+    }
+
+    @Test
+    @DisplayName("should fetch a JAR in the background and pin it until released")
+    void shouldAcquireAsync() throws Exception {
+        config.setMaxBytes(1);
+
+        CompletableFuture<Path> jarFile = jarCache.acquireAsync(function);
+        Path jar = jarFile.get(5, TimeUnit.SECONDS);
+        assertThat(Files.readString(jar)).isEqualTo(CONTENT);
+
+        jarCache.releaseAsync(jarFile);
+        assertThat(jar).doesNotExist();
+    }
+
+    @Test
+    @DisplayName("should release a JAR whose fetch was abandoned once it arrives")
+    void shouldReleaseAbandonedFetch() throws Exception {
+        config.setMaxBytes(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        when(minioClient.getObject(any(GetObjectArgs.class))).thenAnswer(i -> {
+            proceed.await(5, TimeUnit.SECONDS);
+            return response(CONTENT);
+        });
+
+        CompletableFuture<Path> jarFile = jarCache.acquireAsync(function);
+        jarCache.releaseAsync(jarFile);
+        proceed.countDown();
+
+        assertThat(jarFile).isCancelled();
+        await().atMost(5, TimeUnit.SECONDS).until(() ->
+                meterRegistry.get("executor.jar.cache.evictions").counter().count() == 1);
+        assertThat(jarCache.hashes()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("should hand out cached JARs while every fetch thread is busy downloading")
+    void shouldNotQueueCachedJarsBehindDownloads() throws Exception {
+        config.setFetchThreads(1);
+        jarCache = new JarCache(minioClient, config, meterRegistry, peers);
+        ReflectionTestUtils.setField(jarCache, "minioBucket", "functions");
+        jarCache.init();
+        jarCache.release(jarCache.acquire(function));
+        CountDownLatch downloading = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        when(minioClient.getObject(any(GetObjectArgs.class))).thenAnswer(i -> {
+            downloading.countDown();
+            proceed.await(5, TimeUnit.SECONDS);
+            return response(CONTENT);
+        });
+
+        CompletableFuture<Path> slow = jarCache.acquireAsync(other("slow"));
+        assertThat(downloading.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<Path> waiting = jarCache.acquireAsync(other("slow"));
+        CompletableFuture<Path> cached = jarCache.acquireAsync(function);
+
+        assertThat(cached).isDone();
+        assertThat(waiting).isNotDone();
+        proceed.countDown();
+        assertThat(waiting.get(5, TimeUnit.SECONDS)).isEqualTo(slow.get(5, TimeUnit.SECONDS));
+        verify(minioClient, times(2)).getObject(any(GetObjectArgs.class));
+    }
+
+    @Test
+    @DisplayName("should drop the old version once a new JAR is cached")
+    void shouldDropOldVersion() throws Exception {
+        Path v1 = jarCache.acquire(function);
+        jarCache.release(v1);
+
+        function.setJarHash(sha256("jar-content-v2"));
+        when(minioClient.getObject(any(GetObjectArgs.class))).thenAnswer(i -> response("jar-content-v2"));
+        Path v2 = jarCache.acquire(function);
+
+        assertThat(v1).doesNotExist();
+        assertThat(Files.readString(v2)).isEqualTo("jar-content-v2");
+    }
+
+    @Test
+    @DisplayName("should look up the ETag of a JAR without hash once until it is invalidated")
+    void shouldCacheEtags() throws Exception {
+        config.setDownloadThreads(1);
+        function.setJarHash(null);
+        jarCache.release(jarCache.acquire(function));
+        jarCache.release(jarCache.acquire(function));
+        verify(minioClient, times(1)).statObject(any(StatObjectArgs.class));
+
+        jarCache.invalidate(function.getJarPath());
+        jarCache.release(jarCache.acquire(function));
+
+        verify(minioClient, times(2)).statObject(any(StatObjectArgs.class));
+        verify(minioClient, times(1)).getObject(any(GetObjectArgs.class));
+    }
+
+    @Test
+    @DisplayName("should reject downloads that do not match the registered hash")
+    void shouldRejectChecksumMismatch() throws Exception {
+        function.setJarHash(sha256("something else"));
+
+        assertThatThrownBy(() -> jarCache.acquire(function))
+                .isInstanceOf(ExecutionException.class)
+                .hasMessageContaining("Checksum mismatch");
+        assertThat(jarCache.totalBytes()).isZero();
+    }
+
+    @Test
+    @DisplayName("should cache a layer once for all functions using it")
+    void shouldShareLayers() throws Exception {
+        LayerInfo layer = new LayerInfo("gson", "_layers/gson/gson.jar", sha256(CONTENT));
+        function.setLayers(List.of(layer));
+        FunctionInfo second = other("second");
+        second.setLayers(List.of(layer));
+
+        List<Path> first = jarCache.acquireLayers(function);
+        List<Path> shared = jarCache.acquireLayers(second);
+
+        assertThat(shared).isEqualTo(first);
+        verify(minioClient, times(1)).getObject(any(GetObjectArgs.class));
+    }
+
+    @Test
+    @DisplayName("should reject layers without an uploaded JAR")
+    void shouldRejectLayerWithoutJar() {
+        function.setLayers(List.of(new LayerInfo("gson", null, null)));
+
+        assertThatThrownBy(() -> jarCache.acquireLayers(function))
+                .isInstanceOf(ExecutionException.class)
+                .hasMessageContaining("gson");
+    }
+
+    @Test
+    @DisplayName("should fetch JARs from a peer before MinIO and announce them")
+    void shouldPreferPeers() throws Exception {
+        when(peers.download(eq(function.getJarHash()), any(Path.class))).thenAnswer(i -> {
+            Files.writeString(i.getArgument(1), CONTENT);
+            return true;
+        });
+
+        Path jar = jarCache.acquire(function);
+
+        assertThat(Files.readString(jar)).isEqualTo(CONTENT);
+        verify(minioClient, never()).getObject(any(GetObjectArgs.class));
+        verify(peers).announce(List.of(function.getJarHash()));
+        assertThat(jarCache.acquireCached(function.getJarHash())).contains(jar);
+    }
+
+    @Test
+    @DisplayName("should download large JARs with concurrent ranged GETs")
+    void shouldDownloadLargeJarsInParts() throws Exception {
+        String content = "0123456789".repeat(10) + "tail";
+        config.setParallelThresholdBytes(64);
+        config.setMinPartBytes(16);
+        function.setJarHash(sha256(content));
+        when(minioClient.statObject(any(StatObjectArgs.class))).thenAnswer(i -> stat(content.length()));
+        when(minioClient.getObject(any(GetObjectArgs.class))).thenAnswer(i -> {
+            GetObjectArgs args = i.getArgument(0);
+            int from = args.offset().intValue();
+            return response(content.substring(from, from + args.length().intValue()));
+        });
+
+        Path jar = jarCache.acquire(function);
+
+        assertThat(Files.readString(jar)).isEqualTo(content);
+        verify(minioClient, times(4)).getObject(any(GetObjectArgs.class));
+        assertThat(meterRegistry.get("executor.jar.download.throughput").tag("mode", "parallel").summary().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should fail parallel downloads when a part comes back short")
+    void shouldRejectShortRanges() throws Exception {
+        config.setParallelThresholdBytes(8);
+        config.setMinPartBytes(4);
+        when(minioClient.statObject(any(StatObjectArgs.class))).thenAnswer(i -> stat(CONTENT.length()));
+        when(minioClient.getObject(any(GetObjectArgs.class))).thenAnswer(i -> response("x"));
+
+        assertThatThrownBy(() -> jarCache.acquire(function))
+                .hasMessageContaining("Short read");
+        assertThat(jarCache.totalBytes()).isZero();
+    }
+
+    private FunctionInfo other(String name) throws Exception {
+        return FunctionInfo.builder()
+                .name(name)
+                .jarPath(name + "/" + name + ".jar")
+                .jarHash(sha256(CONTENT))
+                .build();
+    }
+
+    private Path acquire(FunctionInfo function) {
+        try {
+            return jarCache.acquire(function);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static GetObjectResponse response(String content) {
+        return new GetObjectResponse(Headers.of(), "functions", "", "cached/cached.jar",
+                new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static StatObjectResponse stat(long size) {
+        return new StatObjectResponse(Headers.of("Content-Length", String.valueOf(size), "ETag", "\"etag\"",
+                "Last-Modified", "Mon, 01 Jan 2024 00:00:00 GMT"), "functions", "", "cached/cached.jar");
+    }
+
+    private static String sha256(String content) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                .digest(content.getBytes(StandardCharsets.UTF_8)));
+    }
+}
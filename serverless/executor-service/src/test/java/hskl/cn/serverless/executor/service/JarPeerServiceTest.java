@@ -0,0 +1,154 @@
+package hskl.cn.serverless.executor.service;
+
+import com.sun.net.httpserver.HttpServer;
+import hskl.cn.serverless.executor.config.JarPeerConfig;
+import hskl.cn.serverless.executor.config.RabbitMQConfig;
+import hskl.cn.serverless.executor.dto.JarAnnouncement;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("JarPeerService Tests")
+class JarPeerServiceTest {
+
+    private static final String CONTENT = "jar-content-v1";
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    private JarPeerConfig config;
+    private JarPeerService peerService;
+    private HttpServer server;
+    private final Map<String, String> served = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        config = new JarPeerConfig();
+        config.setAdvertisedUrl("http://executor-1:8081/");
+        peerService = new JarPeerService(rabbitTemplate, WebClient.builder().build(), config);
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext(JarPeerService.JAR_PATH, exchange -> {
+            String body = served.get(exchange.getRequestURI().getPath());
+            if (body == null) {
+                exchange.sendResponseHeaders(404, -1);
+            } else {
+                byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    @DisplayName("should announce cached hashes under the advertised URL")
+    void shouldAnnounceHashes() {
+        peerService.announce(List.of("abc"));
+
+        ArgumentCaptor<JarAnnouncement> announcement = ArgumentCaptor.forClass(JarAnnouncement.class);
+        verify(rabbitTemplate).convertAndSend(eq(RabbitMQConfig.JAR_PEERS_EXCHANGE), eq(""), announcement.capture());
+        assertThat(announcement.getValue().getUrl()).isEqualTo("http://executor-1:8081");
+        assertThat(announcement.getValue().getHashes()).containsExactly("abc");
+    }
+
+    @Test
+    @DisplayName("should only list peers that announced the hash and forget peers that left")
+    void shouldTrackPeers() {
+        peerService.onAnnouncement(announcement("a", "http://a", "abc"));
+        peerService.onAnnouncement(announcement("b", "http://b", "def"));
+
+        assertThat(peerService.peersWith("abc")).containsExactly("http://a");
+
+        peerService.onAnnouncement(announcement("a", "http://a"));
+        assertThat(peerService.peersWith("abc")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("should forget peers that stopped announcing")
+    void shouldExpirePeers() {
+        config.setPeerTtlMs(-1);
+        peerService.onAnnouncement(announcement("a", "http://a", "abc"));
+
+        assertThat(peerService.peersWith("abc")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("should download a JAR from a peer and verify its hash")
+    void shouldDownloadFromPeer() throws Exception {
+        String hash = sha256(CONTENT);
+        served.put(JarPeerService.JAR_PATH + hash, CONTENT);
+        peerService.onAnnouncement(announcement("a", serverUrl(), hash));
+        Path target = tempDir.resolve("download.part");
+
+        assertThat(peerService.download(hash, target)).isTrue();
+        assertThat(Files.readString(target)).isEqualTo(CONTENT);
+    }
+
+    @Test
+    @DisplayName("should reject a JAR whose hash does not match")
+    void shouldRejectCorruptPeerJar() throws Exception {
+        String hash = sha256(CONTENT);
+        served.put(JarPeerService.JAR_PATH + hash, "tampered");
+        peerService.onAnnouncement(announcement("a", serverUrl(), hash));
+
+        assertThat(peerService.download(hash, tempDir.resolve("download.part"))).isFalse();
+    }
+
+    @Test
+    @DisplayName("should give up when the peer no longer has the JAR")
+    void shouldFallBackWhenPeerMissesJar() throws Exception {
+        String hash = sha256(CONTENT);
+        peerService.onAnnouncement(announcement("a", serverUrl(), hash));
+
+        assertThat(peerService.download(hash, tempDir.resolve("download.part"))).isFalse();
+    }
+
+    private String serverUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    private static JarAnnouncement announcement(String nodeId, String url, String... hashes) {
+        return JarAnnouncement.builder().nodeId(nodeId).url(url).hashes(List.of(hashes)).build();
+    }
+
+    private static String sha256(String content) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                .digest(content.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,65 @@
+package hskl.cn.serverless.executor.service;
+
+import hskl.cn.serverless.executor.config.LaunchProfileConfig;
+import hskl.cn.serverless.executor.dto.FunctionInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("LaunchProfileService Tests")
+class LaunchProfileServiceTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private LaunchProfileService service;
+    private FunctionInfo function;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        service = new LaunchProfileService(new LaunchProfileConfig(), meterRegistry);
+        function = FunctionInfo.builder()
+                .id(UUID.randomUUID())
+                .name("profiled")
+                .memoryMb(256)
+                .launchProfile("AUTO")
+                .build();
+    }
+
+    @Test
+    @DisplayName("should derive the heap from memoryMb")
+    void shouldDeriveHeapFromMemory() {
+        assertThat(service.jvmOptions(LaunchProfile.SHORT_LIVED, 256))
+                .containsExactly("-Xmx192m", "-XX:TieredStopAtLevel=1", "-XX:+UseSerialGC", "-Xss512k");
+        assertThat(service.jvmOptions(LaunchProfile.THROUGHPUT, 1024))
+                .containsExactly("-Xmx768m", "-XX:+UseParallelGC");
+    }
+
+    @Test
+    @DisplayName("should use the registered profile")
+    void shouldUseRegisteredProfile() {
+        function.setLaunchProfile("THROUGHPUT");
+
+        assertThat(service.select(function)).isEqualTo(LaunchProfile.THROUGHPUT);
+    }
+
+    @Test
+    @DisplayName("should switch AUTO functions to throughput once they run long")
+    void shouldSwitchAutoProfileOnObservedDurations() {
+        assertThat(service.select(function)).isEqualTo(LaunchProfile.SHORT_LIVED);
+
+        service.record(function, LaunchProfile.SHORT_LIVED, "one-shot", 100);
+        assertThat(service.select(function)).isEqualTo(LaunchProfile.SHORT_LIVED);
+
+        for (int i = 0; i < 20; i++) {
+            service.record(function, LaunchProfile.SHORT_LIVED, "one-shot", 3000);
+        }
+        assertThat(service.select(function)).isEqualTo(LaunchProfile.THROUGHPUT);
+        assertThat(meterRegistry.get("executor.invocation").tag("profile", "SHORT_LIVED").tag("mode", "one-shot")
+                .timer().count()).isEqualTo(21);
+    }
+}
@@ -0,0 +1,212 @@
+package hskl.cn.serverless.executor.service;
+
+import com.sun.net.httpserver.HttpServer;
+import hskl.cn.serverless.executor.config.RegistryCacheConfig;
+import hskl.cn.serverless.executor.dto.FunctionInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+@DisplayName("RegistryClient Tests")
+class RegistryClientTest {
+
+    private HttpServer server;
+    private RegistryCacheConfig config;
+    private SimpleMeterRegistry meterRegistry;
+    private RegistryClient registryClient;
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+    private volatile int status = 200;
+    private volatile String jarHash = "hash-v1";
+    private volatile CountDownLatch release = new CountDownLatch(0);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/api/v1/functions/name/", exchange -> {
+            requests.incrementAndGet();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            String etag = "\"" + jarHash + "\"";
+            if (status != 200) {
+                exchange.sendResponseHeaders(status, -1);
+            } else if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                byte[] body = ("{\"name\":\"hello\",\"status\":\"READY\",\"jarHash\":\"" + jarHash + "\"}")
+                        .getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.getResponseHeaders().add("ETag", etag);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+
+        config = new RegistryCacheConfig();
+        meterRegistry = new SimpleMeterRegistry();
+        registryClient = new RegistryClient(WebClient.builder()
+                .baseUrl("http://localhost:" + server.getAddress().getPort())
+                .build(), config, meterRegistry);
+        registryClient.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        registryClient.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    @DisplayName("should serve repeated lookups from the cache")
+    void shouldCacheFunction() {
+        assertThat(registryClient.getFunction("hello")).map(FunctionInfo::getJarHash).contains("hash-v1");
+        assertThat(registryClient.getFunction("hello")).map(FunctionInfo::getJarHash).contains("hash-v1");
+
+        assertThat(requests).hasValue(1);
+        assertThat(counter("hit")).isEqualTo(1);
+        assertThat(counter("miss")).isEqualTo(1);
+        assertThat(meterRegistry.get("executor.registry.cache.load").tag("outcome", "found").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should share one registry request between concurrent lookups")
+    void shouldLoadOnceForConcurrentLookups() throws Exception {
+        release = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Optional<FunctionInfo>>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(callers.submit(() -> registryClient.getFunction("hello")));
+            }
+            await().atMost(5, TimeUnit.SECONDS).until(() -> requests.get() == 1 && counter("miss") == 4);
+            release.countDown();
+
+            for (Future<Optional<FunctionInfo>> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isPresent();
+            }
+            assertThat(requests).hasValue(1);
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("should serve stale metadata while refreshing it in the background")
+    void shouldRefreshStaleEntriesInBackground() {
+        config.setRefreshAfterMs(0);
+        registryClient.getFunction("hello");
+        jarHash = "hash-v2";
+
+        assertThat(registryClient.getFunction("hello")).map(FunctionInfo::getJarHash).contains("hash-v1");
+        assertThat(counter("stale")).isEqualTo(1);
+
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() ->
+                assertThat(registryClient.getFunction("hello")).map(FunctionInfo::getJarHash).contains("hash-v2"));
+    }
+
+    @Test
+    @DisplayName("should serve cached metadata when the registry is unavailable")
+    void shouldServeStaleIfError() {
+        config.setRefreshAfterMs(0);
+        config.setExpireAfterMs(0);
+        registryClient.getFunction("hello");
+        status = 503;
+
+        assertThat(registryClient.getFunction("hello")).map(FunctionInfo::getJarHash).contains("hash-v1");
+        assertThat(meterRegistry.get("executor.registry.cache.stale-if-error").counter().count()).isEqualTo(1);
+
+        config.setStaleIfErrorMs(0);
+        assertThatThrownBy(() -> registryClient.getFunction("hello"))
+                .hasMessageContaining("Failed to get function from registry");
+    }
+
+    @Test
+    @DisplayName("should revalidate expired entries with their ETag")
+    void shouldRevalidateWithETag() {
+        config.setRefreshAfterMs(0);
+        config.setExpireAfterMs(0);
+        registryClient.getFunction("hello");
+
+        assertThat(registryClient.getFunction("hello")).map(FunctionInfo::getJarHash).contains("hash-v1");
+        assertThat(notModified).hasValue(1);
+        assertThat(meterRegistry.get("executor.registry.cache.load").tag("outcome", "not_modified").timer().count())
+                .isEqualTo(1);
+
+        jarHash = "hash-v2";
+        assertThat(registryClient.getFunction("hello")).map(FunctionInfo::getJarHash).contains("hash-v2");
+        assertThat(notModified).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("should cache unknown functions briefly")
+    void shouldCacheNotFound() {
+        status = 404;
+
+        assertThat(registryClient.getFunction("hello")).isEmpty();
+        assertThat(registryClient.getFunction("hello")).isEmpty();
+        assertThat(requests).hasValue(1);
+
+        config.setNotFoundTtlMs(0);
+        status = 200;
+        assertThat(registryClient.getFunction("hello")).isPresent();
+    }
+
+    @Test
+    @DisplayName("should reload invalidated functions")
+    void shouldReloadAfterInvalidate() {
+        registryClient.getFunction("hello");
+        jarHash = "hash-v2";
+
+        registryClient.invalidate("hello");
+
+        assertThat(registryClient.getFunction("hello")).map(FunctionInfo::getJarHash).contains("hash-v2");
+        assertThat(requests).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("should evict the least recently used function when full")
+    void shouldBoundCacheSize() {
+        config.setMaxEntries(1);
+        registryClient.getFunction("hello");
+        registryClient.getFunction("other");
+
+        assertThat(registryClient.cacheSize()).isEqualTo(1);
+        registryClient.getFunction("hello");
+        assertThat(requests).hasValue(3);
+    }
+
+    private double counter(String result) {
+        return meterRegistry.get("executor.registry.cache.requests").tag("result", result).counter().count();
+    }
+}
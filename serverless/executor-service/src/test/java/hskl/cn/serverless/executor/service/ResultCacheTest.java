@@ -0,0 +1,129 @@
+package hskl.cn.serverless.executor.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hskl.cn.serverless.executor.config.ResultCacheConfig;
+import hskl.cn.serverless.executor.dto.FunctionInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("ResultCache Tests")
+class ResultCacheTest {
+
+    private ResultCacheConfig config;
+    private SimpleMeterRegistry meterRegistry;
+    private ResultCache resultCache;
+    private FunctionInfo function;
+
+    @BeforeEach
+    void setUp() {
+        config = new ResultCacheConfig();
+        meterRegistry = new SimpleMeterRegistry();
+        resultCache = new ResultCache(config, new ObjectMapper(), meterRegistry);
+        resultCache.init();
+        function = FunctionInfo.builder().name("sum").handler("com.example.Sum::handle").jarHash("hash-v1")
+                .deterministic(true).build();
+    }
+
+    @Test
+    @DisplayName("should serve results for payloads that only differ in key order")
+    void shouldCanonicalizePayload() {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("a", 1);
+        payload.put("b", Map.of("x", List.of(1, 2)));
+        Map<String, Object> reordered = new LinkedHashMap<>();
+        reordered.put("b", Map.of("x", List.of(1, 2)));
+        reordered.put("a", 1);
+
+        resultCache.store(function, payload, "3");
+
+        assertThat(resultCache.lookup(function, reordered)).contains("3");
+        assertThat(resultCache.lookup(function, Map.of("a", 2))).isEmpty();
+        assertThat(meterRegistry.get("executor.result.cache.requests").tag("result", "hit").counter().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("executor.result.cache.requests").tag("result", "miss").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should not serve results of an older JAR")
+    void shouldKeyByVersion() {
+        resultCache.store(function, Map.of("a", 1), "3");
+        function.setJarHash("hash-v2");
+
+        assertThat(resultCache.lookup(function, Map.of("a", 1))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("should not serve results of another handler")
+    void shouldKeyByHandler() {
+        resultCache.store(function, Map.of("a", 1), "3");
+        function.setHandler("com.example.Product::handle");
+
+        assertThat(resultCache.lookup(function, Map.of("a", 1))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("should ignore functions that are not deterministic")
+    void shouldIgnoreNonDeterministicFunctions() {
+        function.setDeterministic(null);
+        resultCache.store(function, Map.of("a", 1), "3");
+        function.setDeterministic(true);
+
+        assertThat(resultCache.lookup(function, Map.of("a", 1))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("should expire results after the TTL")
+    void shouldExpireResults() {
+        config.setTtlMs(0);
+        resultCache.store(function, Map.of("a", 1), "3");
+
+        assertThat(resultCache.lookup(function, Map.of("a", 1))).isEmpty();
+        assertThat(resultCache.totalBytes()).isZero();
+    }
+
+    @Test
+    @DisplayName("should evict least recently used results beyond the memory bound")
+    void shouldBoundMemory() {
+        resultCache.store(function, Map.of("a", 1), "1");
+        long entryBytes = resultCache.totalBytes();
+        config.setMaxBytes(2 * entryBytes);
+
+        resultCache.store(function, Map.of("a", 2), "2");
+        resultCache.lookup(function, Map.of("a", 1));
+        resultCache.store(function, Map.of("a", 3), "3");
+
+        assertThat(resultCache.lookup(function, Map.of("a", 1))).contains("1");
+        assertThat(resultCache.lookup(function, Map.of("a", 2))).isEmpty();
+        assertThat(resultCache.lookup(function, Map.of("a", 3))).contains("3");
+    }
+
+    @Test
+    @DisplayName("should not cache results larger than the per-result limit")
+    void shouldSkipLargeResults() {
+        config.setMaxResultBytes(100);
+        resultCache.store(function, Map.of("a", 1), "x".repeat(1000));
+
+        assertThat(resultCache.lookup(function, Map.of("a", 1))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("should drop all results of an evicted function")
+    void shouldEvictFunction() {
+        resultCache.store(function, Map.of("a", 1), "1");
+        resultCache.store(function, Map.of("a", 2), "2");
+
+        resultCache.evict("sum");
+
+        assertThat(resultCache.lookup(function, Map.of("a", 1))).isEmpty();
+        assertThat(resultCache.totalBytes()).isZero();
+    }
+}
@@ -0,0 +1,120 @@
+package hskl.cn.serverless.executor.service;
+
+import com.github.dockerjava.api.DockerClient;
+import hskl.cn.serverless.executor.config.JlinkConfig;
+import hskl.cn.serverless.executor.dto.FunctionInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("RuntimeImageBuilder Tests")
+class RuntimeImageBuilderTest {
+
+    @Mock
+    private DockerClient dockerClient;
+
+    @Mock
+    private ContainerFactory containerFactory;
+
+    @Mock
+    private JarCache jarCache;
+
+    @Mock
+    private RegistryClient registryClient;
+
+    @Mock
+    private RuntimeImageManager runtimeImageManager;
+
+    private JlinkConfig jlinkConfig;
+    private RuntimeImageBuilder builder;
+    private FunctionInfo function;
+
+    @BeforeEach
+    void setUp() {
+        jlinkConfig = new JlinkConfig();
+        builder = new RuntimeImageBuilder(dockerClient, dockerClient, containerFactory, jarCache, registryClient,
+                jlinkConfig, runtimeImageManager);
+        function = FunctionInfo.builder()
+                .id(UUID.randomUUID())
+                .name("Hello_World")
+                .runtime("java17")
+                .jarPath("hello/hello.jar")
+                .jarHash("3f2a9c1b7d4e8a6f0b5c")
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        builder.shutdown();
+    }
+
+    @Test
+    @DisplayName("should tag images by function name and JAR hash")
+    void shouldTagByNameAndHash() {
+        assertThat(RuntimeImageBuilder.tagFor(function)).isEqualTo("fn-jre-hello_world:3f2a9c1b7d4e");
+    }
+
+    @Test
+    @DisplayName("should link the modules found by jdeps plus the extra modules")
+    void shouldLinkRequiredModules() {
+        String script = builder.jlinkCommand(function).get(2);
+
+        assertThat(script).contains("jdeps --ignore-missing-deps --print-module-deps");
+        assertThat(script).contains("modules=${modules:-java.base},jdk.unsupported");
+        assertThat(script).contains("jlink --add-modules \"$modules\"");
+    }
+
+    @Test
+    @DisplayName("should not build when the image exists on this host")
+    void shouldSkipExistingImage() throws Exception {
+        when(containerFactory.imageFor(function)).thenReturn("fn-jre-hello_world:3f2a9c1b7d4e");
+
+        builder.buildIfMissing(function);
+
+        verify(jarCache, never()).acquire(any(FunctionInfo.class));
+    }
+
+    @Test
+    @DisplayName("should build in the background when the image is missing")
+    void shouldBuildMissingImage() throws Exception {
+        when(containerFactory.imageFor(function)).thenReturn("eclipse-temurin:17-jre-alpine");
+        when(jarCache.acquire(any(FunctionInfo.class))).thenThrow(new IllegalStateException("offline"));
+
+        builder.buildIfMissing(function);
+
+        verify(jarCache, timeout(2000)).acquire(function);
+        verifyNoInteractions(registryClient);
+    }
+
+    @Test
+    @DisplayName("should not retry a failed build until the retry interval has passed")
+    void shouldNotRetryFailedBuild() throws Exception {
+        when(containerFactory.imageFor(any())).thenReturn("eclipse-temurin:17-jre-alpine");
+        when(jarCache.acquire(any(FunctionInfo.class))).thenThrow(new IllegalStateException("offline"));
+        builder.buildIfMissing(function);
+        verify(jarCache, timeout(2000)).acquire(function);
+        Thread.sleep(100);
+
+        builder.buildIfMissing(function);
+        Thread.sleep(100);
+        verify(jarCache, times(1)).acquire(any(FunctionInfo.class));
+
+        function.setJarHash("9c1b7d4e8a6f0b5c3f2a");
+        builder.buildIfMissing(function);
+        verify(jarCache, timeout(2000).times(2)).acquire(any(FunctionInfo.class));
+    }
+}
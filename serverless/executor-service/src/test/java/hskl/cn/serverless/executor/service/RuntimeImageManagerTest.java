@@ -0,0 +1,123 @@
+package hskl.cn.serverless.executor.service;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.command.InspectImageCmd;
+import com.github.dockerjava.api.command.InspectImageResponse;
+import com.github.dockerjava.api.command.PullImageCmd;
+import com.github.dockerjava.api.command.PullImageResultCallback;
+import com.github.dockerjava.api.exception.NotFoundException;
+import hskl.cn.serverless.executor.config.DockerConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.boot.actuate.health.Status;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("RuntimeImageManager Tests")
+class RuntimeImageManagerTest {
+
+    private static final String JAVA17 = "eclipse-temurin:17-jre-alpine";
+    private static final String JAVA21 = "eclipse-temurin:21-jre-alpine@sha256:abc";
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private DockerClient dockerClient;
+
+    @Mock
+    private PullImageCmd pullImageCmd;
+
+    @Mock
+    private PullImageResultCallback pullCallback;
+
+    private DockerConfig dockerConfig;
+    private RuntimeImageManager manager;
+
+    @BeforeEach
+    void setUp() {
+        dockerConfig = new DockerConfig();
+        dockerConfig.setRuntimeImage(JAVA17);
+        dockerConfig.setRuntimeImages(Map.of("java17", JAVA17, "java21", JAVA21));
+        manager = new RuntimeImageManager(dockerClient, dockerConfig);
+        when(dockerClient.inspectImageCmd(JAVA17).exec()).thenReturn(image("eclipse-temurin@sha256:def"));
+        when(dockerClient.inspectImageCmd(JAVA21).exec()).thenThrow(new NotFoundException("missing"));
+        when(dockerClient.pullImageCmd(JAVA21)).thenReturn(pullImageCmd);
+        when(pullImageCmd.exec(any())).thenReturn(pullCallback);
+    }
+
+    @AfterEach
+    void tearDown() {
+        manager.shutdown();
+    }
+
+    @Test
+    @DisplayName("should list every runtime image once in the catalog")
+    void shouldBuildCatalog() {
+        assertThat(dockerConfig.catalog()).containsExactly(JAVA17, JAVA21);
+    }
+
+    @Test
+    @DisplayName("should report not ready while catalog images are missing")
+    void shouldBeDownUntilPulled() throws Exception {
+        manager.ensurePresent(JAVA17);
+
+        assertThat(manager.health().getStatus()).isEqualTo(Status.DOWN);
+        assertThat(manager.missing()).containsExactly(JAVA21);
+        assertThat(manager.health().getDetails().get("images"))
+                .isEqualTo(Map.of(JAVA17, "sha256:def", JAVA21, "pulling"));
+    }
+
+    @Test
+    @DisplayName("should pull missing images and report ready afterwards")
+    void shouldPullMissingImages() throws Exception {
+        InspectImageCmd inspect = dockerClient.inspectImageCmd(JAVA21);
+        doThrow(new NotFoundException("missing")).doReturn(image("eclipse-temurin@sha256:abc")).when(inspect).exec();
+        when(pullCallback.awaitCompletion(anyLong(), any(TimeUnit.class))).thenReturn(true);
+
+        manager.ensurePresent(JAVA17);
+        manager.ensurePresent(JAVA21);
+
+        assertThat(manager.health().getStatus()).isEqualTo(Status.UP);
+        assertThat(manager.missing()).isEmpty();
+        verify(inspect, times(2)).exec();
+    }
+
+    @Test
+    @DisplayName("should report failed pulls")
+    void shouldReportFailedPulls() throws Exception {
+        when(pullCallback.awaitCompletion(anyLong(), any(TimeUnit.class))).thenReturn(false);
+
+        assertThatThrownBy(() -> manager.ensurePresent(JAVA21)).hasMessageContaining("timed out");
+        assertThat(manager.health().getStatus()).isEqualTo(Status.DOWN);
+        Map<?, ?> images = (Map<?, ?>) manager.health().getDetails().get("images");
+        assertThat(String.valueOf(images.get(JAVA21))).startsWith("failed:");
+    }
+
+    @Test
+    @DisplayName("should report ready without pre-pulling when disabled")
+    void shouldBeUpWhenPrePullDisabled() {
+        dockerConfig.setPrePull(false);
+
+        assertThat(manager.health().getStatus()).isEqualTo(Status.UP);
+    }
+
+    private static InspectImageResponse image(String repoDigest) {
+        return new InspectImageResponse().withRepoDigests(List.of(repoDigest));
+    }
+}
@@ -0,0 +1,106 @@
+package hskl.cn.serverless.executor.service;
+
+import hskl.cn.serverless.executor.config.DockerConfig;
+import hskl.cn.serverless.runtime.Frame;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("RuntimeInstance Tests")
+class RuntimeInstanceTest {
+
+    private static final long IDLE_MS = 2500;
+
+    private ServerSocket daemon;
+    private Thread daemonThread;
+    private DockerConfig dockerConfig;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        daemon = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        daemonThread = new Thread(this::serveIdleAttach, "fake-docker-daemon");
+        daemonThread.start();
+        dockerConfig = new DockerConfig();
+        dockerConfig.setHost("tcp://localhost:" + daemon.getLocalPort());
+        dockerConfig.setResponseTimeoutSeconds(1);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        daemon.close();
+        daemonThread.interrupt();
+        daemonThread.join(5000);
+    }
+
+    @Test
+    @DisplayName("should keep an attached instance alive while it is idle longer than the read timeout")
+    void shouldSurviveIdleLongerThanReadTimeout() throws Exception {
+        try (RuntimeInstance instance = new RuntimeInstance("container-1", "hello", "v1", LaunchProfile.THROUGHPUT)) {
+            instance.attach(dockerConfig.streamingDockerClient());
+
+            instance.awaitReady(IDLE_MS + 5000);
+
+            assertThat(instance.isAlive()).isTrue();
+        }
+    }
+
+    @Test
+    @DisplayName("should lose an attachment made with the read timeout once it is idle")
+    void shouldLoseIdleAttachmentWithReadTimeout() throws Exception {
+        try (RuntimeInstance instance = new RuntimeInstance("container-1", "hello", "v1", LaunchProfile.THROUGHPUT)) {
+            instance.attach(dockerConfig.dockerClient());
+
+            assertThatThrownBy(() -> instance.awaitReady(IDLE_MS + 5000))
+                    .hasMessageContaining("Runtime connection failed");
+            assertThat(instance.isAlive()).isFalse();
+        }
+    }
+
+    /**
+     * Answers one attach request like the Docker daemon, stays silent for
+     * {@link #IDLE_MS} and then sends the runtime's READY frame on stdout.
+     */
+    private void serveIdleAttach() {
+        try (Socket socket = daemon.accept()) {
+            readHeaders(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            out.write(("HTTP/1.1 101 UPGRADED\r\n"
+                    + "Content-Type: application/vnd.docker.raw-stream\r\n"
+                    + "Connection: Upgrade\r\n"
+                    + "Upgrade: tcp\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            Thread.sleep(IDLE_MS);
+            byte[] ready = new Frame(0, Frame.READY, new byte[0]).toBytes();
+            out.write(ByteBuffer.allocate(8).put(0, (byte) 1).putInt(4, ready.length).array());
+            out.write(ready);
+            out.flush();
+            Thread.sleep(IDLE_MS);
+        } catch (Exception e) {
+            // the client closed the connection or the test is over
+        }
+    }
+
+    private static void readHeaders(InputStream in) throws Exception {
+        ByteArrayOutputStream headers = new ByteArrayOutputStream();
+        while (!headers.toString(StandardCharsets.US_ASCII).endsWith("\r\n\r\n")) {
+            int b = in.read();
+            if (b < 0) {
+                return;
+            }
+            headers.write(b);
+        }
+    }
+}
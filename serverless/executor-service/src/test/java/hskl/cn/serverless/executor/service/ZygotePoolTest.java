@@ -0,0 +1,69 @@
+package hskl.cn.serverless.executor.service;
+
+import hskl.cn.serverless.executor.config.DockerConfig;
+import hskl.cn.serverless.executor.config.PoolConfig;
+import hskl.cn.serverless.executor.dto.FunctionInfo;
+import hskl.cn.serverless.executor.dto.LayerInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ZygotePool Tests")
+class ZygotePoolTest {
+
+    @Mock
+    private ContainerFactory containerFactory;
+
+    private PoolConfig poolConfig;
+    private ZygotePool zygotePool;
+    private FunctionInfo function;
+
+    @BeforeEach
+    void setUp() {
+        poolConfig = new PoolConfig();
+        zygotePool = new ZygotePool(containerFactory, new DockerConfig(), poolConfig);
+        function = FunctionInfo.builder()
+                .name("hello")
+                .jarHash("hash-v1")
+                .memoryMb(poolConfig.getZygoteMemoryMb())
+                .build();
+    }
+
+    @Test
+    @DisplayName("should host functions with the zygote memory size and the throughput profile")
+    void shouldFitMatchingFunction() {
+        assertThat(zygotePool.fits(function, LaunchProfile.THROUGHPUT)).isTrue();
+    }
+
+    @Test
+    @DisplayName("should not host functions started with the short-lived profile")
+    void shouldNotFitShortLivedProfile() {
+        assertThat(zygotePool.fits(function, LaunchProfile.SHORT_LIVED)).isFalse();
+    }
+
+    @Test
+    @DisplayName("should not host functions with another memory size")
+    void shouldNotFitOtherMemory() {
+        function.setMemoryMb(poolConfig.getZygoteMemoryMb() / 2);
+        assertThat(zygotePool.fits(function, LaunchProfile.THROUGHPUT)).isFalse();
+
+        function.setMemoryMb(poolConfig.getZygoteMemoryMb() * 2);
+        assertThat(zygotePool.fits(function, LaunchProfile.THROUGHPUT)).isFalse();
+    }
+
+    @Test
+    @DisplayName("should not host functions with layers")
+    void shouldNotFitLayers() {
+        function.setLayers(List.of(new LayerInfo()));
+
+        assertThat(zygotePool.fits(function, LaunchProfile.THROUGHPUT)).isFalse();
+    }
+}
@@ -0,0 +1,109 @@
+package hskl.cn.serverless.runtime;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A message exchanged between the executor and a function runtime.
+ *
+ * Frames travel over the container's stdin/stdout and are length-prefixed:
+ * {@code int length | long id | byte type | body}, where {@code length} counts
+ * everything after itself. The id correlates an INVOKE with its RESULT or ERROR;
+ * the body is UTF-8 text (the JSON payload, the result, or the error).
+ */
+public final class Frame {
+
+    public static final byte INVOKE = 1;
+    public static final byte RESULT = 2;
+    public static final byte ERROR = 3;
+    public static final byte READY = 4;
+    public static final byte LOAD = 5;
+
+    static final int HEADER_SIZE = Long.BYTES + 1;
+    static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+
+    private final long id;
+    private final byte type;
+    private final byte[] body;
+
+    public Frame(long id, byte type, byte[] body) {
+        this.id = id;
+        this.type = type;
+        this.body = body;
+    }
+
+    public static Frame of(long id, byte type, String body) {
+        return new Frame(id, type, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Builds a LOAD frame: {@code UTF handler | UTF JAR path}. The JAR has been
+     * copied into the runtime's container at that path. An empty handler
+     * selects {@code handle(String)} on the JAR's Main-Class.
+     */
+    public static Frame load(long id, String handler, String jarPath) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeUTF(handler != null ? handler : "");
+        out.writeUTF(jarPath);
+        return new Frame(id, LOAD, body.toByteArray());
+    }
+
+    public long id() {
+        return id;
+    }
+
+    public byte type() {
+        return type;
+    }
+
+    public byte[] body() {
+        return body;
+    }
+
+    public String bodyAsString() {
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the next frame, or returns null if the stream ended between frames.
+     */
+    public static Frame read(DataInputStream in) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length < HEADER_SIZE || length > MAX_FRAME_SIZE) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        long id = in.readLong();
+        byte type = in.readByte();
+        byte[] body = new byte[length - HEADER_SIZE];
+        in.readFully(body);
+        return new Frame(id, type, body);
+    }
+
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(HEADER_SIZE + body.length);
+        out.writeLong(id);
+        out.writeByte(type);
+        out.write(body);
+    }
+
+    public byte[] toBytes() {
+        byte[] bytes = new byte[Integer.BYTES + HEADER_SIZE + body.length];
+        ByteBuffer.wrap(bytes)
+                .putInt(HEADER_SIZE + body.length)
+                .putLong(id)
+                .put(type)
+                .put(body);
+        return bytes;
+    }
+}
@@ -0,0 +1,51 @@
+package hskl.cn.serverless.runtime;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reassembles frames from arbitrarily split chunks of a byte stream,
+ * e.g. the stdout chunks delivered by a Docker attach session.
+ *
+ * Not thread-safe; feed it from a single reader.
+ */
+public final class FrameDecoder {
+
+    private ByteBuffer buffer = ByteBuffer.allocate(8192);
+
+    public List<Frame> feed(byte[] chunk) throws IOException {
+        ensureCapacity(chunk.length);
+        buffer.put(chunk);
+        buffer.flip();
+
+        List<Frame> frames = new ArrayList<>();
+        while (buffer.remaining() >= Integer.BYTES) {
+            int length = buffer.getInt(buffer.position());
+            if (length < Frame.HEADER_SIZE || length > Frame.MAX_FRAME_SIZE) {
+                throw new IOException("Invalid frame length: " + length);
+            }
+            if (buffer.remaining() < Integer.BYTES + length) {
+                break;
+            }
+            buffer.getInt();
+            long id = buffer.getLong();
+            byte type = buffer.get();
+            byte[] body = new byte[length - Frame.HEADER_SIZE];
+            buffer.get(body);
+            frames.add(new Frame(id, type, body));
+        }
+        buffer.compact();
+        return frames;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (buffer.remaining() < extra) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + extra));
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package hskl.cn.serverless.runtime;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.file.Path;
+import java.util.jar.JarFile;
+
+/**
+ * Calls a function's handler method through a {@link MethodHandle}.
+ *
+ * The handler is resolved once per JVM from the registered
+ * {@code package.ClassName::methodName}; the method must take a single
+ * {@code String}. Instance methods are bound to one instance of the function
+ * class that is reused for every invocation, so the function can keep state
+ * (parsers, caches, connections) between calls. Functions registered without a
+ * handler fall back to {@code handle(String)} on the JAR's {@code Main-Class}.
+ */
+public final class FunctionHandler {
+
+    private static final MethodType INVOKE_TYPE = MethodType.methodType(Object.class, String.class);
+
+    private final String name;
+    private final MethodHandle handle;
+
+    private FunctionHandler(String name, MethodHandle handle) {
+        this.name = name;
+        this.handle = handle;
+    }
+
+    /**
+     * Resolves a handler in the form {@code package.ClassName::methodName}.
+     */
+    public static FunctionHandler forHandler(String handler, ClassLoader classLoader) throws Exception {
+        int separator = handler.indexOf("::");
+        if (separator <= 0 || separator + 2 >= handler.length()) {
+            throw new IllegalArgumentException("Handler must be in format 'package.ClassName::methodName': " + handler);
+        }
+        Class<?> functionClass = Class.forName(handler.substring(0, separator).trim(), true, classLoader);
+        return of(functionClass, handler.substring(separator + 2).trim());
+    }
+
+    /**
+     * Resolves {@code handle(String)} on the {@code Main-Class} of the function JAR.
+     */
+    public static FunctionHandler fromManifest(Path jarFile, ClassLoader classLoader) throws Exception {
+        String mainClass;
+        try (JarFile jar = new JarFile(jarFile.toFile())) {
+            mainClass = jar.getManifest() != null
+                    ? jar.getManifest().getMainAttributes().getValue("Main-Class")
+                    : null;
+        }
+        if (mainClass == null) {
+            throw new IllegalArgumentException("No Main-Class in " + jarFile);
+        }
+        return of(Class.forName(mainClass.trim(), true, classLoader), "handle");
+    }
+
+    /**
+     * Resolves the registered handler if there is one, otherwise the manifest handler.
+     */
+    public static FunctionHandler resolve(String handler, Path jarFile, ClassLoader classLoader) throws Exception {
+        return handler != null && !handler.isBlank()
+                ? forHandler(handler, classLoader)
+                : fromManifest(jarFile, classLoader);
+    }
+
+    static FunctionHandler of(Class<?> functionClass, String methodName) throws Exception {
+        Method method = functionClass.getMethod(methodName, String.class);
+        method.setAccessible(true);
+        MethodHandle handle = MethodHandles.lookup().unreflect(method);
+        if (!Modifier.isStatic(method.getModifiers())) {
+            Constructor<?> constructor = functionClass.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            handle = handle.bindTo(constructor.newInstance());
+        }
+        return new FunctionHandler(functionClass.getName() + "::" + methodName, handle.asType(INVOKE_TYPE));
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public String invoke(String payload) throws Throwable {
+        return String.valueOf((Object) handle.invokeExact(payload));
+    }
+}
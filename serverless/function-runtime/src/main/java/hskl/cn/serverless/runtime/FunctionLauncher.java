@@ -0,0 +1,44 @@
+package hskl.cn.serverless.runtime;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * One-shot launcher: resolves the handler, invokes it once with the payload
+ * file and prints the result.
+ *
+ * Used for executions outside the instance pool, so functions do not need a
+ * {@code main} that parses {@code args[0]}. The result is the only thing
+ * written to stdout; output of the function itself goes to stderr. A failing
+ * handler exits with status 1 and its stack trace on stderr.
+ *
+ * Usage: {@code java -cp function-runtime.jar:function.jar hskl.cn.serverless.runtime.FunctionLauncher function.jar payload.json [handler]}
+ */
+public final class FunctionLauncher {
+
+    private FunctionLauncher() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: FunctionLauncher <function.jar> <payload-file> [handler]");
+            System.exit(2);
+        }
+        PrintStream resultOut = new PrintStream(new FileOutputStream(FileDescriptor.out), true, StandardCharsets.UTF_8);
+        System.setOut(System.err);
+
+        FunctionHandler handler = FunctionHandler.resolve(args.length > 2 ? args[2] : null, Path.of(args[0]),
+                FunctionLauncher.class.getClassLoader());
+        String payload = Files.readString(Path.of(args[1]), StandardCharsets.UTF_8);
+        try {
+            resultOut.println(handler.invoke(payload));
+        } catch (Throwable t) {
+            t.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
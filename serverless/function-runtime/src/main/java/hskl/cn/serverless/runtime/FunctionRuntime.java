@@ -0,0 +1,152 @@
+package hskl.cn.serverless.runtime;
+
+import java.io.*;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-lived bootstrap that serves many invocations in one JVM.
+ *
+ * The runtime loads the function once, announces itself with a READY frame and
+ * then answers every INVOKE frame read from stdin with a RESULT or ERROR frame
+ * on stdout. It exits when stdin is closed. stdout is reserved for frames, so
+ * anything the function prints is redirected to stderr.
+ *
+ * Started without a function JAR, the runtime is a generic "zygote": the JVM is
+ * already booted and waits for a LOAD frame naming the function JAR, which the
+ * executor has copied into the container; the JAR is then loaded through a
+ * fresh class loader. A zygote loads exactly one
+ * function and serves it from then on.
+ *
+ * Invocations are dispatched concurrently, so responses may arrive in any
+ * order; the executor limits how many are in flight (the function's
+ * {@code concurrency}). On Java 21+ each invocation runs on a virtual thread,
+ * on older JVMs on a cached platform thread pool.
+ *
+ * Usage: {@code java -cp function-runtime.jar:function.jar hskl.cn.serverless.runtime.FunctionRuntime function.jar [handler]}
+ * where {@code handler} is the registered {@code package.ClassName::methodName},
+ * or {@code java -cp function-runtime.jar hskl.cn.serverless.runtime.FunctionRuntime} for a zygote.
+ */
+public final class FunctionRuntime {
+
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final ExecutorService workers = newWorkers();
+    private volatile FunctionHandler handler;
+    private volatile ClassLoader functionClassLoader = FunctionRuntime.class.getClassLoader();
+
+    FunctionRuntime(FunctionHandler handler, InputStream in, OutputStream out) {
+        this.handler = handler;
+        this.in = new DataInputStream(new BufferedInputStream(in));
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 2) {
+            System.err.println("Usage: FunctionRuntime [<function.jar> [handler]]");
+            System.exit(2);
+        }
+        OutputStream frameOut = new FileOutputStream(FileDescriptor.out);
+        System.setOut(System.err);
+
+        FunctionHandler handler = args.length == 0 ? null : FunctionHandler.resolve(
+                args.length > 1 ? args[1] : null, Path.of(args[0]), FunctionRuntime.class.getClassLoader());
+        new FunctionRuntime(handler, System.in, frameOut).serve();
+    }
+
+    void serve() throws IOException, InterruptedException {
+        send(new Frame(0, Frame.READY, new byte[0]));
+        try {
+            Frame request;
+            while ((request = Frame.read(in)) != null) {
+                if (request.type() == Frame.INVOKE) {
+                    Frame invocation = request;
+                    FunctionHandler current = handler;
+                    workers.execute(() -> sendQuietly(invoke(invocation, current)));
+                } else if (request.type() == Frame.LOAD) {
+                    send(load(request));
+                }
+            }
+        } finally {
+            workers.shutdown();
+            workers.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Runs an invocation with the handler loaded when its frame was read, so an
+     * INVOKE sent before a LOAD fails even if a worker picks it up afterwards.
+     */
+    private Frame invoke(Frame request, FunctionHandler handler) {
+        if (handler == null) {
+            return Frame.of(request.id(), Frame.ERROR, "No function loaded");
+        }
+        Thread.currentThread().setContextClassLoader(functionClassLoader);
+        try {
+            return Frame.of(request.id(), Frame.RESULT, handler.invoke(request.bodyAsString()));
+        } catch (Throwable t) {
+            return error(request, t);
+        }
+    }
+
+    private Frame load(Frame request) {
+        if (handler != null) {
+            return Frame.of(request.id(), Frame.ERROR, "Function already loaded: " + handler.name());
+        }
+        try {
+            DataInputStream body = new DataInputStream(new ByteArrayInputStream(request.body()));
+            String handlerName = body.readUTF();
+            Path jarFile = Path.of(body.readUTF());
+
+            ClassLoader classLoader = new URLClassLoader("function", new URL[]{jarFile.toUri().toURL()},
+                    FunctionRuntime.class.getClassLoader());
+            Thread.currentThread().setContextClassLoader(classLoader);
+            functionClassLoader = classLoader;
+            handler = FunctionHandler.resolve(handlerName, jarFile, classLoader);
+            return Frame.of(request.id(), Frame.READY, handler.name());
+        } catch (Throwable t) {
+            return error(request, t);
+        }
+    }
+
+    private static Frame error(Frame request, Throwable t) {
+        StringWriter trace = new StringWriter();
+        t.printStackTrace(new PrintWriter(trace));
+        return Frame.of(request.id(), Frame.ERROR, trace.toString());
+    }
+
+    private void send(Frame frame) throws IOException {
+        synchronized (out) {
+            frame.write(out);
+            out.flush();
+        }
+    }
+
+    private void sendQuietly(Frame frame) {
+        try {
+            send(frame);
+        } catch (IOException e) {
+            System.err.println("Could not send response " + frame.id() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Virtual threads when the JVM has them (Java 21+), looked up reflectively
+     * because the runtime is compiled for Java 17.
+     */
+    private static ExecutorService newWorkers() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "function-invocation");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
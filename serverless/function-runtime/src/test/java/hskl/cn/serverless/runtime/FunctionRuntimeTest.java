@@ -0,0 +1,233 @@
+package hskl.cn.serverless.runtime;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("FunctionRuntime Tests")
+class FunctionRuntimeTest {
+
+    public static class UpperFunction {
+        public String handle(String input) {
+            if (input.isEmpty()) {
+                throw new IllegalArgumentException("empty input");
+            }
+            return input.toUpperCase();
+        }
+    }
+
+    public static class CountingFunction {
+        private int calls;
+
+        public int count(String input) {
+            return ++calls;
+        }
+
+        public static String echo(String input) {
+            return input;
+        }
+    }
+
+    @Nested
+    @DisplayName("Handler resolution")
+    class HandlerResolutionTests {
+
+        @Test
+        @DisplayName("should bind instance handler once and reuse the instance")
+        void shouldReuseInstance() throws Throwable {
+            FunctionHandler handler = FunctionHandler.forHandler(
+                    CountingFunction.class.getName() + "::count", getClass().getClassLoader());
+
+            assertThat(handler.invoke("a")).isEqualTo("1");
+            assertThat(handler.invoke("b")).isEqualTo("2");
+        }
+
+        @Test
+        @DisplayName("should invoke static handler")
+        void shouldInvokeStaticHandler() throws Throwable {
+            FunctionHandler handler = FunctionHandler.forHandler(
+                    CountingFunction.class.getName() + "::echo", getClass().getClassLoader());
+
+            assertThat(handler.invoke("{\"a\":1}")).isEqualTo("{\"a\":1}");
+        }
+
+        @Test
+        @DisplayName("should reject malformed handler and missing method")
+        void shouldRejectInvalidHandler() {
+            ClassLoader classLoader = getClass().getClassLoader();
+
+            assertThatThrownBy(() -> FunctionHandler.forHandler("NoSeparator", classLoader))
+                    .isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> FunctionHandler.forHandler(
+                    CountingFunction.class.getName() + "::missing", classLoader))
+                    .isInstanceOf(NoSuchMethodException.class);
+        }
+    }
+
+    @Nested
+    @DisplayName("Frame protocol")
+    class FrameProtocolTests {
+
+        @Test
+        @DisplayName("should decode frames split across chunks")
+        void shouldDecodeSplitFrames() throws Exception {
+            byte[] first = Frame.of(1, Frame.INVOKE, "{\"name\":\"Peter\"}").toBytes();
+            byte[] second = Frame.of(2, Frame.RESULT, "Hello, Peter!").toBytes();
+            byte[] stream = new byte[first.length + second.length];
+            System.arraycopy(first, 0, stream, 0, first.length);
+            System.arraycopy(second, 0, stream, first.length, second.length);
+
+            FrameDecoder decoder = new FrameDecoder();
+            List<Frame> frames = new ArrayList<>();
+            for (int i = 0; i < stream.length; i += 5) {
+                frames.addAll(decoder.feed(Arrays.copyOfRange(stream, i, Math.min(i + 5, stream.length))));
+            }
+
+            assertThat(frames).hasSize(2);
+            assertThat(frames.get(0).id()).isEqualTo(1);
+            assertThat(frames.get(0).type()).isEqualTo(Frame.INVOKE);
+            assertThat(frames.get(0).bodyAsString()).isEqualTo("{\"name\":\"Peter\"}");
+            assertThat(frames.get(1).bodyAsString()).isEqualTo("Hello, Peter!");
+        }
+
+        @Test
+        @DisplayName("should reject invalid frame length")
+        void shouldRejectInvalidLength() {
+            FrameDecoder decoder = new FrameDecoder();
+
+            assertThatThrownBy(() -> decoder.feed(new byte[]{0, 0, 0, 1}))
+                    .hasMessageContaining("Invalid frame length");
+        }
+    }
+
+    @Nested
+    @DisplayName("serve")
+    class ServeTests {
+
+        @Test
+        @DisplayName("should announce readiness and answer every invocation")
+        void shouldAnswerInvocations() throws Exception {
+            List<Frame> responses = serve(
+                    Frame.of(1, Frame.INVOKE, "hello"),
+                    Frame.of(2, Frame.INVOKE, "world"));
+
+            assertThat(responses).hasSize(3);
+            assertThat(responses.get(0).type()).isEqualTo(Frame.READY);
+            assertThat(response(responses, 1).type()).isEqualTo(Frame.RESULT);
+            assertThat(response(responses, 1).bodyAsString()).isEqualTo("HELLO");
+            assertThat(response(responses, 2).bodyAsString()).isEqualTo("WORLD");
+        }
+
+        @Test
+        @DisplayName("should report handler exceptions without stopping")
+        void shouldReportErrors() throws Exception {
+            List<Frame> responses = serve(
+                    Frame.of(1, Frame.INVOKE, ""),
+                    Frame.of(2, Frame.INVOKE, "ok"));
+
+            assertThat(response(responses, 1).type()).isEqualTo(Frame.ERROR);
+            assertThat(response(responses, 1).bodyAsString()).contains("IllegalArgumentException: empty input");
+            assertThat(response(responses, 2).type()).isEqualTo(Frame.RESULT);
+            assertThat(response(responses, 2).bodyAsString()).isEqualTo("OK");
+        }
+    }
+
+    @Nested
+    @DisplayName("zygote")
+    class ZygoteTests {
+
+        @Test
+        @DisplayName("should load a JAR copied into the container and then serve it")
+        void shouldLoadCopiedJar(@TempDir Path tempDir) throws Exception {
+            Path emptyJar = tempDir.resolve("function.jar");
+            new JarOutputStream(Files.newOutputStream(emptyJar)).close();
+
+            List<Frame> responses = serveWith(null,
+                    Frame.of(1, Frame.INVOKE, "early"),
+                    Frame.load(2, UpperFunction.class.getName() + "::handle", emptyJar.toString()),
+                    Frame.of(3, Frame.INVOKE, "hello"),
+                    Frame.load(4, UpperFunction.class.getName() + "::handle", emptyJar.toString()));
+
+            assertThat(response(responses, 1).type()).isEqualTo(Frame.ERROR);
+            assertThat(response(responses, 1).bodyAsString()).isEqualTo("No function loaded");
+            assertThat(response(responses, 2).type()).isEqualTo(Frame.READY);
+            assertThat(response(responses, 3).bodyAsString()).isEqualTo("HELLO");
+            assertThat(response(responses, 4).type()).isEqualTo(Frame.ERROR);
+            assertThat(response(responses, 4).bodyAsString()).contains("already loaded");
+        }
+    }
+
+    @Nested
+    @DisplayName("concurrency")
+    class ConcurrencyTests {
+
+        @Test
+        @DisplayName("should run invocations concurrently")
+        void shouldRunInvocationsConcurrently() throws Exception {
+            BarrierFunction.barrier = new CyclicBarrier(3);
+            FunctionHandler handler = FunctionHandler.of(BarrierFunction.class, "handle");
+
+            List<Frame> responses = serveWith(handler,
+                    Frame.of(1, Frame.INVOKE, "a"),
+                    Frame.of(2, Frame.INVOKE, "b"),
+                    Frame.of(3, Frame.INVOKE, "c"));
+
+            assertThat(responses).hasSize(4);
+            assertThat(response(responses, 1).bodyAsString()).isEqualTo("a");
+            assertThat(response(responses, 2).bodyAsString()).isEqualTo("b");
+            assertThat(response(responses, 3).bodyAsString()).isEqualTo("c");
+        }
+    }
+
+    /**
+     * Only returns once three invocations wait at the barrier at the same time.
+     */
+    public static class BarrierFunction {
+        static CyclicBarrier barrier;
+
+        public String handle(String input) throws Exception {
+            barrier.await(5, TimeUnit.SECONDS);
+            return input;
+        }
+    }
+
+    private static Frame response(List<Frame> responses, long id) {
+        return responses.stream()
+                .filter(frame -> frame.id() == id)
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No response for " + id));
+    }
+
+    private List<Frame> serve(Frame... requests) throws Exception {
+        return serveWith(FunctionHandler.of(UpperFunction.class, "handle"), requests);
+    }
+
+    private List<Frame> serveWith(FunctionHandler handler, Frame... requests) throws Exception {
+        ByteArrayOutputStream requestBytes = new ByteArrayOutputStream();
+        DataOutputStream requestOut = new DataOutputStream(requestBytes);
+        for (Frame request : requests) {
+            request.write(requestOut);
+        }
+
+        ByteArrayOutputStream responseBytes = new ByteArrayOutputStream();
+        new FunctionRuntime(handler, new ByteArrayInputStream(requestBytes.toByteArray()), responseBytes).serve();
+
+        return new FrameDecoder().feed(responseBytes.toByteArray());
+    }
+}
@@ -0,0 +1,22 @@
+package hskl.cn.serverless.registry.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Settings for the cache of serialized functions served by name.
+ *
+ * Entries are invalidated by every write through the registry; {@code ttlMs}
+ * only bounds how long changes made around the registry (e.g. directly in
+ * the database) stay invisible.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "function-cache")
+public class FunctionCacheConfig {
+
+    private boolean enabled = true;
+    private int maxEntries = 1000;
+    private long ttlMs = 60000;
+}
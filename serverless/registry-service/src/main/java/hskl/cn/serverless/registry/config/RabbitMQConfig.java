@@ -0,0 +1,23 @@
+package hskl.cn.serverless.registry.config;
+
+import org.springframework.amqp.core.FanoutExchange;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class RabbitMQConfig {
+
+    public static final String FUNCTION_EVENTS_EXCHANGE = "function.events";
+
+    @Bean
+    public FanoutExchange functionEventsExchange() {
+        return new FanoutExchange(FUNCTION_EVENTS_EXCHANGE);
+    }
+
+    @Bean
+    public MessageConverter jsonMessageConverter() {
+        return new Jackson2JsonMessageConverter();
+    }
+}
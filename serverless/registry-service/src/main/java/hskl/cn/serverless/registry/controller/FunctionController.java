@@ -2,6 +2,8 @@ package hskl.cn.serverless.registry.controller;
 
 import hskl.cn.serverless.registry.dto.CreateFunctionRequest;
 import hskl.cn.serverless.registry.dto.FunctionResponse;
+import hskl.cn.serverless.registry.dto.RuntimeImageRequest;
+import hskl.cn.serverless.registry.service.FunctionResponseCache;
 import hskl.cn.serverless.registry.service.FunctionService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -13,11 +15,13 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import jakarta.validation.groups.Default;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -32,6 +36,7 @@ import java.util.UUID;
 public class FunctionController {
 
     private final FunctionService functionService;
+    private final FunctionResponseCache responseCache;
 
     @Operation(summary = "Neue Function erstellen", 
                description = "Registriert eine neue Serverless Function im System. Nach dem Erstellen ist die Function im Status PENDING bis eine JAR-Datei hochgeladen wird.")
@@ -84,7 +89,8 @@ public class FunctionController {
             )
     )
     @PostMapping
-    public ResponseEntity<FunctionResponse> createFunction(@Valid @RequestBody CreateFunctionRequest request) {
+    public ResponseEntity<FunctionResponse> createFunction(
+            @Validated({CreateFunctionRequest.OnCreate.class, Default.class}) @RequestBody CreateFunctionRequest request) {
         log.info("POST /api/v1/functions - Creating function: {}", request.getName());
         FunctionResponse response = functionService.createFunction(request);
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
@@ -117,19 +123,28 @@ public class FunctionController {
     }
 
     @Operation(summary = "Function nach Name abrufen", 
-               description = "Gibt eine Function anhand ihres Namens zurück. Dies ist die bevorzugte Methode.")
+               description = "Gibt eine Function anhand ihres Namens zurück. Dies ist die bevorzugte Methode. "
+                       + "Die Antwort enthält einen ETag; mit If-None-Match antwortet die Registry mit 304, "
+                       + "solange sich die Function nicht geändert hat.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Function gefunden",
                     content = @Content(schema = @Schema(implementation = FunctionResponse.class))),
+            @ApiResponse(responseCode = "304", description = "Function unverändert (ETag aus If-None-Match ist aktuell)",
+                    content = @Content),
             @ApiResponse(responseCode = "404", description = "Function nicht gefunden",
                     content = @Content(examples = @ExampleObject(value = "{\"message\": \"Function not found: hello\"}")))
     })
     @GetMapping("/name/{name}")
-    public ResponseEntity<FunctionResponse> getFunctionByName(
+    public ResponseEntity<byte[]> getFunctionByName(
             @Parameter(description = "Name der Function", example = "hello") 
             @PathVariable("name") String name) {
-        log.info("GET /api/v1/functions/name/{} - Getting function by name", name);
-        return ResponseEntity.ok(functionService.getFunctionByName(name));
+        log.debug("GET /api/v1/functions/name/{} - Getting function by name", name);
+        FunctionResponseCache.CachedResponse response =
+                responseCache.get(name, () -> functionService.getFunctionByName(name));
+        return ResponseEntity.ok()
+                .eTag(response.etag())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(response.body());
     }
 
     @Operation(summary = "JAR-Datei hochladen (per ID)", 
@@ -185,17 +200,35 @@ public class FunctionController {
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Function aktualisiert",
                     content = @Content(schema = @Schema(implementation = FunctionResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Ungültige Eingabedaten", content = @Content),
             @ApiResponse(responseCode = "404", description = "Function nicht gefunden", content = @Content)
     })
     @PutMapping("/name/{name}")
     public ResponseEntity<FunctionResponse> updateFunctionByName(
             @Parameter(description = "Name der Function", example = "hello") 
             @PathVariable("name") String name,
-            @RequestBody CreateFunctionRequest request) {
+            @Valid @RequestBody CreateFunctionRequest request) {
         log.info("PUT /api/v1/functions/name/{} - Updating function", name);
         return ResponseEntity.ok(functionService.updateFunctionByName(name, request));
     }
 
+    @Operation(summary = "Runtime-Image eintragen", 
+               description = "Wird vom Executor aufgerufen, nachdem er ein minimiertes Runtime-Image (jlink) für die aktuelle JAR gebaut hat. Images für veraltete JARs werden ignoriert.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Runtime-Image eingetragen",
+                    content = @Content(schema = @Schema(implementation = FunctionResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Ungültige Eingabedaten", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Function nicht gefunden", content = @Content)
+    })
+    @PutMapping("/name/{name}/runtime-image")
+    public ResponseEntity<FunctionResponse> updateRuntimeImage(
+            @Parameter(description = "Name der Function", example = "hello") 
+            @PathVariable("name") String name,
+            @Valid @RequestBody RuntimeImageRequest request) {
+        log.info("PUT /api/v1/functions/name/{}/runtime-image - {}", name, request.getImage());
+        return ResponseEntity.ok(functionService.updateRuntimeImage(name, request));
+    }
+
     @Operation(summary = "Function löschen (per Name)", 
                description = "Löscht eine Function und ihre JAR-Datei aus MinIO")
     @ApiResponses(value = {
@@ -0,0 +1,114 @@
+package hskl.cn.serverless.registry.controller;
+
+import hskl.cn.serverless.registry.dto.CreateLayerRequest;
+import hskl.cn.serverless.registry.dto.LayerResponse;
+import hskl.cn.serverless.registry.service.LayerService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.ExampleObject;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.List;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/v1/layers")
+@RequiredArgsConstructor
+@Tag(name = "Layer Management", description = "API für gemeinsam genutzte Bibliotheks-JARs (Layer)")
+public class LayerController {
+
+    private final LayerService layerService;
+
+    @Operation(summary = "Neuen Layer anlegen", 
+               description = "Legt einen Layer an. Die JAR-Datei wird anschließend hochgeladen; Functions referenzieren den Layer über seinen Namen.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Layer erfolgreich angelegt",
+                    content = @Content(schema = @Schema(implementation = LayerResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Ungültige Eingabedaten", content = @Content),
+            @ApiResponse(responseCode = "409", description = "Layer mit diesem Namen existiert bereits",
+                    content = @Content(examples = @ExampleObject(value = "{\"message\": \"Layer already exists with name: gson-2-10\"}")))
+    })
+    @PostMapping
+    public ResponseEntity<LayerResponse> createLayer(@Valid @RequestBody CreateLayerRequest request) {
+        log.info("POST /api/v1/layers - Creating layer: {}", request.getName());
+        return ResponseEntity.status(HttpStatus.CREATED).body(layerService.createLayer(request));
+    }
+
+    @Operation(summary = "Alle Layer auflisten", 
+               description = "Gibt eine Liste aller Layer zurück")
+    @ApiResponse(responseCode = "200", description = "Liste der Layer",
+            content = @Content(array = @ArraySchema(schema = @Schema(implementation = LayerResponse.class))))
+    @GetMapping
+    public ResponseEntity<List<LayerResponse>> getAllLayers() {
+        log.info("GET /api/v1/layers - Listing all layers");
+        return ResponseEntity.ok(layerService.getAllLayers());
+    }
+
+    @Operation(summary = "Layer nach Name abrufen", 
+               description = "Gibt einen Layer anhand seines Namens zurück")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Layer gefunden",
+                    content = @Content(schema = @Schema(implementation = LayerResponse.class))),
+            @ApiResponse(responseCode = "404", description = "Layer nicht gefunden", content = @Content)
+    })
+    @GetMapping("/{name}")
+    public ResponseEntity<LayerResponse> getLayer(
+            @Parameter(description = "Name des Layers", example = "gson-2-10") 
+            @PathVariable("name") String name) {
+        log.info("GET /api/v1/layers/{} - Getting layer", name);
+        return ResponseEntity.ok(layerService.getLayerByName(name));
+    }
+
+    @Operation(summary = "Layer-JAR hochladen", 
+               description = "Lädt die JAR-Datei eines Layers hoch. Eine geänderte JAR gilt für alle Functions, die den Layer verwenden.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "JAR erfolgreich hochgeladen",
+                    content = @Content(schema = @Schema(implementation = LayerResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Ungültige Datei (leer oder keine .jar)", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Layer nicht gefunden", content = @Content)
+    })
+    @PostMapping(value = "/{name}/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<LayerResponse> uploadJar(
+            @Parameter(description = "Name des Layers", example = "gson-2-10") 
+            @PathVariable("name") String name,
+            @Parameter(description = "JAR-Datei (max. 50MB)") 
+            @RequestParam("file") MultipartFile file) {
+        log.info("POST /api/v1/layers/{}/upload - Uploading JAR: {}", name, file.getOriginalFilename());
+        if (file.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!file.getOriginalFilename().endsWith(".jar")) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(layerService.uploadJar(name, file));
+    }
+
+    @Operation(summary = "Layer löschen", 
+               description = "Löscht einen Layer und seine JAR-Datei aus MinIO. Layer, die noch von Functions verwendet werden, können nicht gelöscht werden.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Layer gelöscht"),
+            @ApiResponse(responseCode = "404", description = "Layer nicht gefunden", content = @Content),
+            @ApiResponse(responseCode = "409", description = "Layer wird noch verwendet", content = @Content)
+    })
+    @DeleteMapping("/{name}")
+    public ResponseEntity<Void> deleteLayer(
+            @Parameter(description = "Name des Layers", example = "gson-2-10") 
+            @PathVariable("name") String name) {
+        log.info("DELETE /api/v1/layers/{} - Deleting layer", name);
+        layerService.deleteLayer(name);
+        return ResponseEntity.noContent().build();
+    }
+}
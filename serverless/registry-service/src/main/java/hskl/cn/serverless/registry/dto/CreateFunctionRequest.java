@@ -1,5 +1,6 @@
 package hskl.cn.serverless.registry.dto;
 
+import hskl.cn.serverless.registry.model.Function;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
@@ -10,6 +11,14 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
+/**
+ * Body of create (POST) and update (PUT) requests. An update only changes the
+ * fields it sets, so fields without a value stay null here and
+ * {@code FunctionService.createFunction} applies the defaults. Constraints
+ * that only make sense for a new function are in the {@link OnCreate} group.
+ */
 @Data
 @Builder
 @NoArgsConstructor
@@ -17,7 +26,7 @@ import lombok.NoArgsConstructor;
 @Schema(description = "Request zum Erstellen einer neuen Serverless Function")
 public class CreateFunctionRequest {
 
-    @NotBlank(message = "Function name is required")
+    @NotBlank(message = "Function name is required", groups = OnCreate.class)
     @Size(min = 3, max = 100, message = "Name must be between 3 and 100 characters")
     @Pattern(regexp = "^[a-z0-9-]+$", message = "Name must contain only lowercase letters, numbers, and hyphens")
     @Schema(description = "Eindeutiger Name der Function", 
@@ -31,7 +40,7 @@ public class CreateFunctionRequest {
             example = "Gibt eine Begrüßung zurück")
     private String description;
 
-    @NotBlank(message = "Runtime is required")
+    @NotBlank(message = "Runtime is required", groups = OnCreate.class)
     @Builder.Default
     @Schema(description = "Runtime-Umgebung für die Function", 
             example = "java17", 
@@ -39,7 +48,7 @@ public class CreateFunctionRequest {
             allowableValues = {"java17", "java21"})
     private String runtime = "java17";
 
-    @NotBlank(message = "Handler is required")
+    @NotBlank(message = "Handler is required", groups = OnCreate.class)
     @Pattern(regexp = "^[a-zA-Z][a-zA-Z0-9_.]*::[a-zA-Z][a-zA-Z0-9_]*$",
             message = "Handler must be in format 'package.ClassName::methodName'")
     @Schema(description = "Handler im Format 'package.ClassName::methodName'", 
@@ -49,18 +58,65 @@ public class CreateFunctionRequest {
     private String handler;
 
     @Min(value = 1, message = "Timeout must be at least 1 second")
-    @Builder.Default
     @Schema(description = "Timeout in Sekunden", 
             example = "30", 
             defaultValue = "30",
             minimum = "1")
-    private Integer timeoutSeconds = 30;
+    private Integer timeoutSeconds;
 
     @Min(value = 128, message = "Memory must be at least 128 MB")
-    @Builder.Default
     @Schema(description = "Memory-Limit in MB", 
             example = "256", 
             defaultValue = "256",
             minimum = "128")
-    private Integer memoryMb = 256;
+    private Integer memoryMb;
+
+    @Min(value = 0, message = "Min instances cannot be negative")
+    @Schema(description = "Anzahl vorgewärmter Container, die der Executor bereithält", 
+            example = "2", 
+            defaultValue = "0",
+            minimum = "0")
+    private Integer minInstances;
+
+    @Min(value = 1, message = "Max instances must be at least 1")
+    @Schema(description = "Maximale Anzahl gleichzeitig laufender Container", 
+            example = "10", 
+            defaultValue = "10",
+            minimum = "1")
+    private Integer maxInstances;
+
+    @Min(value = 1, message = "Concurrency must be at least 1")
+    @Schema(description = "Maximale Anzahl gleichzeitiger Aufrufe pro Container (Handler muss bei > 1 thread-safe sein)", 
+            example = "1", 
+            defaultValue = "1",
+            minimum = "1")
+    private Integer concurrency;
+
+    @Schema(description = "Isolation der Ausführung: CONTAINER (Docker) oder CLASSLOADER (im Executor-Prozess, nur für vertrauenswürdige Functions)", 
+            example = "CONTAINER", 
+            defaultValue = "CONTAINER",
+            allowableValues = {"CONTAINER", "CLASSLOADER"})
+    private Function.Isolation isolation;
+
+    @Schema(description = "JVM-Startprofil: SHORT_LIVED (schneller Start), THROUGHPUT (Durchsatz) oder AUTO (anhand gemessener Laufzeiten)", 
+            example = "AUTO", 
+            defaultValue = "AUTO",
+            allowableValues = {"AUTO", "SHORT_LIVED", "THROUGHPUT"})
+    private Function.LaunchProfile launchProfile;
+
+    @Schema(description = "Ergebnis hängt nur vom Payload ab (keine Seiteneffekte, keine Zeit- oder Zufallsabhängigkeit); "
+            + "der Executor darf Ergebnisse für gleiche Payloads aus dem Cache liefern", 
+            example = "false", 
+            defaultValue = "false")
+    private Boolean deterministic;
+
+    @Schema(description = "Namen der Layer (gemeinsam genutzte Bibliotheks-JARs) in Classpath-Reihenfolge", 
+            example = "[\"gson-2-10\"]")
+    private List<String> layers;
+
+    /**
+     * Validation group of constraints checked only when a function is created.
+     */
+    public interface OnCreate {
+    }
 }
@@ -0,0 +1,32 @@
+package hskl.cn.serverless.registry.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Request zum Anlegen eines Layers (gemeinsam genutzte Bibliotheks-JAR)")
+public class CreateLayerRequest {
+
+    @NotBlank(message = "Layer name is required")
+    @Size(min = 3, max = 100, message = "Name must be between 3 and 100 characters")
+    @Pattern(regexp = "^[a-z0-9-]+$", message = "Name must contain only lowercase letters, numbers, and hyphens")
+    @Schema(description = "Eindeutiger Name des Layers", 
+            example = "gson-2-10", 
+            requiredMode = Schema.RequiredMode.REQUIRED,
+            pattern = "^[a-z0-9-]+$")
+    private String name;
+
+    @Size(max = 1000, message = "Description cannot exceed 1000 characters")
+    @Schema(description = "Optionale Beschreibung des Layers", 
+            example = "Gson 2.10.1")
+    private String description;
+}
@@ -0,0 +1,44 @@
+package hskl.cn.serverless.registry.dto;
+
+import hskl.cn.serverless.registry.model.Function;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * Change of a function, published to the executors after the transaction
+ * that made it has committed.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FunctionEvent {
+
+    private Type type;
+    private UUID functionId;
+    private String functionName;
+    private String jarPath;
+    private String jarHash;
+    private String status;
+    private long timestamp;
+
+    public static FunctionEvent of(Type type, Function function) {
+        return FunctionEvent.builder()
+                .type(type)
+                .functionId(function.getId())
+                .functionName(function.getName())
+                .jarPath(function.getJarPath())
+                .jarHash(function.getJarHash())
+                .status(function.getStatus() != null ? function.getStatus().name() : null)
+                .timestamp(System.currentTimeMillis())
+                .build();
+    }
+
+    public enum Type {
+        CREATED, UPDATED, JAR_UPLOADED, STATUS_CHANGED, DELETED
+    }
+}
@@ -8,6 +8,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
 
 @Data
@@ -49,6 +50,39 @@ public class FunctionResponse {
     @Schema(description = "Memory-Limit in MB", 
             example = "256")
     private Integer memoryMb;
+
+    @Schema(description = "Anzahl vorgewärmter Container im Executor", 
+            example = "2")
+    private Integer minInstances;
+
+    @Schema(description = "Maximale Anzahl gleichzeitiger Container", 
+            example = "10")
+    private Integer maxInstances;
+
+    @Schema(description = "Maximale Anzahl gleichzeitiger Aufrufe pro Container", 
+            example = "1")
+    private Integer concurrency;
+
+    @Schema(description = "Isolation der Ausführung", 
+            example = "CONTAINER",
+            allowableValues = {"CONTAINER", "CLASSLOADER"})
+    private String isolation;
+
+    @Schema(description = "JVM-Startprofil", 
+            example = "AUTO",
+            allowableValues = {"AUTO", "SHORT_LIVED", "THROUGHPUT"})
+    private String launchProfile;
+
+    @Schema(description = "Ergebnisse dürfen für gleiche Payloads aus dem Cache geliefert werden", 
+            example = "false")
+    private Boolean deterministic;
+
+    @Schema(description = "Für die aktuelle JAR gebautes, minimiertes Runtime-Image (jlink)", 
+            example = "fn-jre-hello:3f2a9c1b7d4e")
+    private String runtimeImage;
+    
+    @Schema(description = "Layer auf dem Classpath der Function, in Classpath-Reihenfolge")
+    private List<LayerResponse> layers;
     
     @Schema(description = "Pfad zur JAR-Datei in MinIO", 
             example = "functions/hello/hello-function.jar")
@@ -57,6 +91,10 @@ public class FunctionResponse {
     @Schema(description = "Größe der JAR-Datei in Bytes", 
             example = "280576")
     private Long jarSize;
+
+    @Schema(description = "SHA-256 der JAR-Datei (Version für Caches und Warm Pools)", 
+            example = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08")
+    private String jarHash;
     
     @Schema(description = "Erstellungszeitpunkt", 
             example = "2026-01-23T21:48:02")
@@ -77,7 +115,19 @@ public class FunctionResponse {
                 .timeoutSeconds(function.getTimeoutSeconds())
                 .jarPath(function.getJarPath())
                 .memoryMb(function.getMemoryMb())
+                .minInstances(function.getMinInstances())
+                .maxInstances(function.getMaxInstances())
+                .concurrency(function.getConcurrency())
+                .isolation(function.getIsolation() != null
+                        ? function.getIsolation().name() : Function.Isolation.CONTAINER.name())
+                .launchProfile(function.getLaunchProfile() != null
+                        ? function.getLaunchProfile().name() : Function.LaunchProfile.AUTO.name())
+                .deterministic(Boolean.TRUE.equals(function.getDeterministic()))
+                .runtimeImage(function.getRuntimeImage())
+                .layers(function.getLayers() != null
+                        ? function.getLayers().stream().map(LayerResponse::from).toList() : List.of())
                 .jarSize(function.getJarSize())
+                .jarHash(function.getJarHash())
                 .createdAt(function.getCreatedAt())
                 .updatedAt(function.getUpdatedAt())
                 .build();
@@ -0,0 +1,64 @@
+package hskl.cn.serverless.registry.dto;
+
+import hskl.cn.serverless.registry.model.Layer;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Response mit Layer-Details")
+public class LayerResponse {
+
+    @Schema(description = "Eindeutige ID des Layers", 
+            example = "7c9e6679-7425-40de-944b-e07fc1f90ae7")
+    private UUID id;
+
+    @Schema(description = "Name des Layers", 
+            example = "gson-2-10")
+    private String name;
+
+    @Schema(description = "Beschreibung des Layers", 
+            example = "Gson 2.10.1")
+    private String description;
+
+    @Schema(description = "Pfad zur JAR-Datei in MinIO", 
+            example = "_layers/gson-2-10/gson-2.10.1.jar")
+    private String jarPath;
+
+    @Schema(description = "Größe der JAR-Datei in Bytes", 
+            example = "283367")
+    private Long jarSize;
+
+    @Schema(description = "SHA-256 der JAR-Datei", 
+            example = "4241c14a7727c34feea6507ec801318a3d4a90f070e4525681079fb94ee4c593")
+    private String jarHash;
+
+    @Schema(description = "Erstellungszeitpunkt", 
+            example = "2026-01-23T21:48:02")
+    private LocalDateTime createdAt;
+
+    @Schema(description = "Letzter Aktualisierungszeitpunkt", 
+            example = "2026-01-23T21:48:15")
+    private LocalDateTime updatedAt;
+
+    public static LayerResponse from(Layer layer) {
+        return LayerResponse.builder()
+                .id(layer.getId())
+                .name(layer.getName())
+                .description(layer.getDescription())
+                .jarPath(layer.getJarPath())
+                .jarSize(layer.getJarSize())
+                .jarHash(layer.getJarHash())
+                .createdAt(layer.getCreatedAt())
+                .updatedAt(layer.getUpdatedAt())
+                .build();
+    }
+}
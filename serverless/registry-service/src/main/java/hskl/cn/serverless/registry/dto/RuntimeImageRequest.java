@@ -0,0 +1,26 @@
+package hskl.cn.serverless.registry.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Vom Executor gebautes Runtime-Image einer Function")
+public class RuntimeImageRequest {
+
+    @NotBlank(message = "Image is required")
+    @Schema(description = "Tag des lokal gebauten Images", 
+            example = "fn-jre-hello:3f2a9c1b7d4e")
+    private String image;
+
+    @NotBlank(message = "JAR hash is required")
+    @Schema(description = "SHA-256 der JAR, für die das Image gebaut wurde", 
+            example = "3f2a9c1b7d4e8a6f0b5c2d1e9f8a7b6c5d4e3f2a1b0c9d8e7f6a5b4c3d2e1f0a")
+    private String jarHash;
+}
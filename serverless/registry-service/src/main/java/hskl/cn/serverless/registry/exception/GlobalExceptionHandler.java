@@ -36,6 +36,19 @@ public class GlobalExceptionHandler {
         );
     }
 
+    @ExceptionHandler(InvalidFunctionConfigException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidFunctionConfig(InvalidFunctionConfigException ex) {
+        log.warn("Invalid function configuration: {}", ex.getMessage());
+        return ResponseEntity.badRequest().body(
+                ErrorResponse.builder()
+                        .timestamp(LocalDateTime.now())
+                        .status(HttpStatus.BAD_REQUEST.value())
+                        .error("Bad Request")
+                        .message(ex.getMessage())
+                        .build()
+        );
+    }
+
     @ExceptionHandler(FunctionNotFoundException.class)
     public ResponseEntity<ErrorResponse> handleFunctionNotFound(FunctionNotFoundException ex) {
         log.warn("Function not found: {}", ex.getMessage());
@@ -62,6 +75,32 @@ public class GlobalExceptionHandler {
         );
     }
 
+    @ExceptionHandler(LayerNotFoundException.class)
+    public ResponseEntity<ErrorResponse> handleLayerNotFound(LayerNotFoundException ex) {
+        log.warn("Layer not found: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
+                ErrorResponse.builder()
+                        .timestamp(LocalDateTime.now())
+                        .status(HttpStatus.NOT_FOUND.value())
+                        .error("Not Found")
+                        .message(ex.getMessage())
+                        .build()
+        );
+    }
+
+    @ExceptionHandler({LayerAlreadyExistsException.class, LayerInUseException.class})
+    public ResponseEntity<ErrorResponse> handleLayerConflict(RuntimeException ex) {
+        log.warn("Layer conflict: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(
+                ErrorResponse.builder()
+                        .timestamp(LocalDateTime.now())
+                        .status(HttpStatus.CONFLICT.value())
+                        .error("Conflict")
+                        .message(ex.getMessage())
+                        .build()
+        );
+    }
+
     @ExceptionHandler(StorageException.class)
     public ResponseEntity<ErrorResponse> handleStorageException(StorageException ex) {
         log.error("Storage error: {}", ex.getMessage(), ex);
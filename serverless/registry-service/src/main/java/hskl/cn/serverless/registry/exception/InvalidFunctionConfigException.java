@@ -0,0 +1,12 @@
+package hskl.cn.serverless.registry.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidFunctionConfigException extends RuntimeException {
+
+    public InvalidFunctionConfigException(String message) {
+        super(message);
+    }
+}
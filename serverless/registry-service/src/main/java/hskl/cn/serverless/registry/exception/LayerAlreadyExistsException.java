@@ -0,0 +1,12 @@
+package hskl.cn.serverless.registry.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class LayerAlreadyExistsException extends RuntimeException {
+
+    public LayerAlreadyExistsException(String name) {
+        super("Layer already exists with name: " + name);
+    }
+}
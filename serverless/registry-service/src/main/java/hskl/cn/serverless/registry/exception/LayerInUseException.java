@@ -0,0 +1,14 @@
+package hskl.cn.serverless.registry.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.List;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class LayerInUseException extends RuntimeException {
+
+    public LayerInUseException(String name, List<String> functions) {
+        super("Layer " + name + " is still used by functions: " + String.join(", ", functions));
+    }
+}
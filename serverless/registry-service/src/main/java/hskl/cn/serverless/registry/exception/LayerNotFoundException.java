@@ -0,0 +1,12 @@
+package hskl.cn.serverless.registry.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class LayerNotFoundException extends RuntimeException {
+
+    public LayerNotFoundException(String name) {
+        super("Layer not found with name: " + name);
+    }
+}
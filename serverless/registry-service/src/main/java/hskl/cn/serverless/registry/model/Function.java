@@ -9,6 +9,8 @@ import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 @Entity
@@ -41,6 +43,9 @@ public class Function {
     @Column(name = "jar_size")
     private Long jarSize;
 
+    @Column(name = "jar_hash", length = 64)
+    private String jarHash;
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     @Builder.Default
@@ -54,6 +59,53 @@ public class Function {
     @Builder.Default
     private Integer memoryMb = 256;
 
+    @Column(name = "min_instances")
+    @Builder.Default
+    private Integer minInstances = 0;
+
+    @Column(name = "max_instances")
+    @Builder.Default
+    private Integer maxInstances = 10;
+
+    @Column(name = "concurrency")
+    @Builder.Default
+    private Integer concurrency = 1;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "isolation")
+    @Builder.Default
+    private Isolation isolation = Isolation.CONTAINER;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "launch_profile")
+    @Builder.Default
+    private LaunchProfile launchProfile = LaunchProfile.AUTO;
+
+    /**
+     * Whether the result depends on the payload only, so executors may serve
+     * repeated invocations from their result cache.
+     */
+    @Column(name = "deterministic")
+    @Builder.Default
+    private Boolean deterministic = false;
+
+    /**
+     * Minimal runtime image built by the executor for the current JAR, or null.
+     */
+    @Column(name = "runtime_image")
+    private String runtimeImage;
+
+    /**
+     * Shared library JARs on the function's classpath, in classpath order.
+     */
+    @ManyToMany
+    @JoinTable(name = "function_layers",
+            joinColumns = @JoinColumn(name = "function_id"),
+            inverseJoinColumns = @JoinColumn(name = "layer_id"))
+    @OrderColumn(name = "position")
+    @Builder.Default
+    private List<Layer> layers = new ArrayList<>();
+
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
@@ -68,4 +120,25 @@ public class Function {
         DISABLED,
         ERROR
     }
+
+    /**
+     * How the executor isolates invocations of the function. CLASSLOADER runs
+     * the function inside the executor JVM and is only meant for trusted code.
+     */
+    public enum Isolation {
+        CONTAINER,
+        CLASSLOADER
+    }
+
+    /**
+     * JVM options the executor starts the function's containers with.
+     * SHORT_LIVED favours startup (C1 only, Serial GC), THROUGHPUT favours
+     * steady-state latency (C2, Parallel GC); AUTO picks one from the
+     * observed execution durations.
+     */
+    public enum LaunchProfile {
+        AUTO,
+        SHORT_LIVED,
+        THROUGHPUT
+    }
 }
@@ -0,0 +1,53 @@
+package hskl.cn.serverless.registry.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A shared library JAR that functions reference instead of bundling it. The
+ * executor caches each layer once per node and puts it on the classpath of
+ * every function that uses it.
+ */
+@Entity
+@Table(name = "layers")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class Layer {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(nullable = false, unique = true)
+    private String name;
+
+    @Column(length = 1000)
+    private String description;
+
+    @Column(name = "jar_path")
+    private String jarPath;
+
+    @Column(name = "jar_size")
+    private Long jarSize;
+
+    @Column(name = "jar_hash", length = 64)
+    private String jarHash;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
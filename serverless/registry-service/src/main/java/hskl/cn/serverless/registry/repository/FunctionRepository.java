@@ -19,4 +19,6 @@ public interface FunctionRepository extends JpaRepository<Function, UUID> {
     List<Function> findByStatus(FunctionStatus status);
 
     List<Function> findByRuntime(String runtime);
+
+    List<Function> findByLayers_Name(String layerName);
 }
@@ -0,0 +1,16 @@
+package hskl.cn.serverless.registry.repository;
+
+import hskl.cn.serverless.registry.model.Layer;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface LayerRepository extends JpaRepository<Layer, UUID> {
+
+    Optional<Layer> findByName(String name);
+
+    boolean existsByName(String name);
+}
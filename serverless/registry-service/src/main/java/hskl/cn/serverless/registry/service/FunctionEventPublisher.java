@@ -0,0 +1,42 @@
+package hskl.cn.serverless.registry.service;
+
+import hskl.cn.serverless.registry.config.RabbitMQConfig;
+import hskl.cn.serverless.registry.dto.FunctionEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Forwards {@link FunctionEvent}s to the {@link RabbitMQConfig#FUNCTION_EVENTS_EXCHANGE}
+ * fanout exchange once the transaction that raised them has committed, so
+ * executors never see changes that were rolled back.
+ *
+ * Publishing is best effort: executors also pick up changes from their
+ * periodic registry sync, so a lost event only delays them.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FunctionEventPublisher {
+
+    private final ObjectProvider<AmqpTemplate> amqpTemplate;
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void publish(FunctionEvent event) {
+        AmqpTemplate template = amqpTemplate.getIfAvailable();
+        if (template == null) {
+            return;
+        }
+        try {
+            template.convertAndSend(RabbitMQConfig.FUNCTION_EVENTS_EXCHANGE, "", event);
+            log.debug("Published {} event for function {}", event.getType(), event.getFunctionName());
+        } catch (Exception e) {
+            log.warn("Could not publish {} event for function {}: {}", event.getType(),
+                    event.getFunctionName(), e.getMessage());
+        }
+    }
+}
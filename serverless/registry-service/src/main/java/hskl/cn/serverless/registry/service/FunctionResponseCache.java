@@ -0,0 +1,129 @@
+package hskl.cn.serverless.registry.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hskl.cn.serverless.registry.config.FunctionCacheConfig;
+import hskl.cn.serverless.registry.dto.FunctionResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Cache of functions looked up by name, kept as serialized JSON together with
+ * a strong ETag over those bytes.
+ *
+ * Executors read the same few functions many times a minute; a hit neither
+ * queries the database nor serializes the response, and lets the controller
+ * answer {@code If-None-Match} with 304. Writes through {@link FunctionService}
+ * and {@link LayerService} call {@link #invalidate}, which drops the entry
+ * right away and again once the writing transaction has completed, so a
+ * concurrent read of the old row cannot put it back.
+ */
+@Service
+@RequiredArgsConstructor
+public class FunctionResponseCache {
+
+    private final ObjectMapper objectMapper;
+    private final FunctionCacheConfig config;
+
+    private final LinkedHashMap<String, CachedResponse> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long generation;
+
+    public record CachedResponse(byte[] body, String etag, long cachedAt) {
+    }
+
+    /**
+     * Returns the cached response for the function, loading and serializing
+     * it with the given loader on a miss.
+     */
+    public CachedResponse get(String name, Supplier<FunctionResponse> loader) {
+        if (config.isEnabled()) {
+            CachedResponse cached = cached(name);
+            if (cached != null && System.currentTimeMillis() - cached.cachedAt() < config.getTtlMs()) {
+                return cached;
+            }
+        }
+        long loadedInGeneration = generation();
+        CachedResponse response = serialize(loader.get());
+        if (config.isEnabled()) {
+            store(name, loadedInGeneration, response);
+        }
+        return response;
+    }
+
+    /**
+     * Drops the cached response of the function. Inside a transaction the
+     * entry is dropped again after the transaction completed.
+     */
+    public void invalidate(String name) {
+        evict(name);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(name);
+                }
+            });
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        generation++;
+    }
+
+    private CachedResponse serialize(FunctionResponse response) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(response);
+            return new CachedResponse(body, etag(body), System.currentTimeMillis());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize function " + response.getName(), e);
+        }
+    }
+
+    private static String etag(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private synchronized CachedResponse cached(String name) {
+        return entries.get(name);
+    }
+
+    /**
+     * Caches a loaded response unless any entry was invalidated since the
+     * load started, in which case it may predate the change.
+     */
+    private synchronized void store(String name, long loadedInGeneration, CachedResponse response) {
+        if (loadedInGeneration != generation) {
+            return;
+        }
+        entries.put(name, response);
+        Iterator<String> eldest = entries.keySet().iterator();
+        while (entries.size() > config.getMaxEntries() && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    private synchronized void evict(String name) {
+        entries.remove(name);
+        generation++;
+    }
+
+    private synchronized long generation() {
+        return generation;
+    }
+}
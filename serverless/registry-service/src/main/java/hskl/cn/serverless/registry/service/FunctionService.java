@@ -1,19 +1,28 @@
 package hskl.cn.serverless.registry.service;
 
 import hskl.cn.serverless.registry.dto.CreateFunctionRequest;
+import hskl.cn.serverless.registry.dto.FunctionEvent;
 import hskl.cn.serverless.registry.dto.FunctionResponse;
+import hskl.cn.serverless.registry.dto.RuntimeImageRequest;
 import hskl.cn.serverless.registry.exception.FunctionAlreadyExistsException;
 import hskl.cn.serverless.registry.exception.FunctionNotFoundException;
+import hskl.cn.serverless.registry.exception.InvalidFunctionConfigException;
+import hskl.cn.serverless.registry.exception.LayerNotFoundException;
 import hskl.cn.serverless.registry.model.Function;
 import hskl.cn.serverless.registry.model.Function.FunctionStatus;
+import hskl.cn.serverless.registry.model.Layer;
 import hskl.cn.serverless.registry.repository.FunctionRepository;
+import hskl.cn.serverless.registry.repository.LayerRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
 
 @Slf4j
@@ -23,6 +32,9 @@ public class FunctionService {
 
     private final FunctionRepository functionRepository;
     private final StorageService storageService;
+    private final LayerRepository layerRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final FunctionResponseCache responseCache;
 
     @Transactional
     public FunctionResponse createFunction(CreateFunctionRequest request) {
@@ -30,16 +42,28 @@ public class FunctionService {
         if (functionRepository.existsByName(request.getName())) {
             throw new FunctionAlreadyExistsException(request.getName());
         }
+        int minInstances = request.getMinInstances() != null ? request.getMinInstances() : 0;
+        int maxInstances = request.getMaxInstances() != null ? request.getMaxInstances() : 10;
+        validateInstances(minInstances, maxInstances);
         Function function = Function.builder()
                 .name(request.getName())
                 .description(request.getDescription())
                 .runtime(request.getRuntime())
                 .handler(request.getHandler())
-                .timeoutSeconds(request.getTimeoutSeconds())
-                .memoryMb(request.getMemoryMb())
+                .timeoutSeconds(request.getTimeoutSeconds() != null ? request.getTimeoutSeconds() : 30)
+                .memoryMb(request.getMemoryMb() != null ? request.getMemoryMb() : 256)
+                .minInstances(minInstances)
+                .maxInstances(maxInstances)
+                .concurrency(request.getConcurrency() != null ? request.getConcurrency() : 1)
+                .isolation(request.getIsolation() != null ? request.getIsolation() : Function.Isolation.CONTAINER)
+                .launchProfile(request.getLaunchProfile() != null
+                        ? request.getLaunchProfile() : Function.LaunchProfile.AUTO)
+                .deterministic(Boolean.TRUE.equals(request.getDeterministic()))
+                .layers(resolveLayers(request.getLayers()))
                 .status(FunctionStatus.PENDING)
                 .build();
         function = functionRepository.save(function);
+        eventPublisher.publishEvent(FunctionEvent.of(FunctionEvent.Type.CREATED, function));
         log.info("Created function with id: {}", function.getId());
         return FunctionResponse.from(function);
     }
@@ -70,11 +94,18 @@ public class FunctionService {
         log.info("Uploading JAR for function: {}", id);
         Function function = functionRepository.findById(id)
                 .orElseThrow(() -> FunctionNotFoundException.byId(id));
+        String jarHash = storageService.checksum(file);
         String jarPath = storageService.uploadJar(function.getName(), file);
         function.setJarPath(jarPath);
         function.setJarSize(file.getSize());
+        if (!Objects.equals(jarHash, function.getJarHash())) {
+            function.setRuntimeImage(null);
+        }
+        function.setJarHash(jarHash);
         function.setStatus(FunctionStatus.READY);
         function = functionRepository.save(function);
+        responseCache.invalidate(function.getName());
+        eventPublisher.publishEvent(FunctionEvent.of(FunctionEvent.Type.JAR_UPLOADED, function));
         log.info("Function {} is now READY", function.getName());
         return FunctionResponse.from(function);
     }
@@ -92,6 +123,8 @@ public class FunctionService {
             }
         }
         functionRepository.delete(function);
+        responseCache.invalidate(function.getName());
+        eventPublisher.publishEvent(FunctionEvent.of(FunctionEvent.Type.DELETED, function));
         log.info("Deleted function: {}", function.getName());
     }
 
@@ -101,6 +134,8 @@ public class FunctionService {
                 .orElseThrow(() -> FunctionNotFoundException.byId(id));
         function.setStatus(status);
         function = functionRepository.save(function);
+        responseCache.invalidate(function.getName());
+        eventPublisher.publishEvent(FunctionEvent.of(FunctionEvent.Type.STATUS_CHANGED, function));
         log.info("Updated function {} status to {}", function.getName(), status);
         return FunctionResponse.from(function);
     }
@@ -113,11 +148,18 @@ public class FunctionService {
         log.info("Uploading JAR for function: {}", name);
         Function function = functionRepository.findByName(name)
                 .orElseThrow(() -> FunctionNotFoundException.byName(name));
+        String jarHash = storageService.checksum(file);
         String jarPath = storageService.uploadJar(function.getName(), file);
         function.setJarPath(jarPath);
         function.setJarSize(file.getSize());
+        if (!Objects.equals(jarHash, function.getJarHash())) {
+            function.setRuntimeImage(null);
+        }
+        function.setJarHash(jarHash);
         function.setStatus(FunctionStatus.READY);
         function = functionRepository.save(function);
+        responseCache.invalidate(function.getName());
+        eventPublisher.publishEvent(FunctionEvent.of(FunctionEvent.Type.JAR_UPLOADED, function));
         log.info("Function {} is now READY", function.getName());
         return FunctionResponse.from(function);
     }
@@ -130,6 +172,9 @@ public class FunctionService {
         log.info("Updating function: {}", name);
         Function function = functionRepository.findByName(name)
                 .orElseThrow(() -> FunctionNotFoundException.byName(name));
+        validateInstances(
+                request.getMinInstances() != null ? request.getMinInstances() : function.getMinInstances(),
+                request.getMaxInstances() != null ? request.getMaxInstances() : function.getMaxInstances());
         
         if (request.getDescription() != null) {
             function.setDescription(request.getDescription());
@@ -143,12 +188,72 @@ public class FunctionService {
         if (request.getMemoryMb() != null) {
             function.setMemoryMb(request.getMemoryMb());
         }
+        if (request.getMinInstances() != null) {
+            function.setMinInstances(request.getMinInstances());
+        }
+        if (request.getMaxInstances() != null) {
+            function.setMaxInstances(request.getMaxInstances());
+        }
+        if (request.getConcurrency() != null) {
+            function.setConcurrency(request.getConcurrency());
+        }
+        if (request.getIsolation() != null) {
+            function.setIsolation(request.getIsolation());
+        }
+        if (request.getLaunchProfile() != null) {
+            function.setLaunchProfile(request.getLaunchProfile());
+        }
+        if (request.getDeterministic() != null) {
+            function.setDeterministic(request.getDeterministic());
+        }
+        if (request.getLayers() != null) {
+            List<Layer> layers = resolveLayers(request.getLayers());
+            if (!layers.equals(function.getLayers())) {
+                function.setRuntimeImage(null);
+            }
+            function.setLayers(layers);
+        }
         
         function = functionRepository.save(function);
+        responseCache.invalidate(function.getName());
+        eventPublisher.publishEvent(FunctionEvent.of(FunctionEvent.Type.UPDATED, function));
         log.info("Updated function: {}", function.getName());
         return FunctionResponse.from(function);
     }
 
+    /**
+     * Records the runtime image the executor built for the function. The image
+     * is ignored if it was built for a JAR that has been replaced since.
+     */
+    @Transactional
+    public FunctionResponse updateRuntimeImage(String name, RuntimeImageRequest request) {
+        Function function = functionRepository.findByName(name)
+                .orElseThrow(() -> FunctionNotFoundException.byName(name));
+        if (!request.getJarHash().equals(function.getJarHash())) {
+            log.info("Ignoring runtime image {} for outdated JAR of function {}", request.getImage(), name);
+            return FunctionResponse.from(function);
+        }
+        function.setRuntimeImage(request.getImage());
+        function = functionRepository.save(function);
+        responseCache.invalidate(name);
+        log.info("Function {} uses runtime image {}", name, request.getImage());
+        return FunctionResponse.from(function);
+    }
+
+    /**
+     * Looks up the named layers, keeping their classpath order.
+     */
+    private List<Layer> resolveLayers(List<String> names) {
+        List<Layer> layers = new ArrayList<>();
+        if (names != null) {
+            for (String name : names.stream().distinct().toList()) {
+                layers.add(layerRepository.findByName(name)
+                        .orElseThrow(() -> new LayerNotFoundException(name)));
+            }
+        }
+        return layers;
+    }
+
     /**
      * Delete function by name.
      */
@@ -165,6 +270,19 @@ public class FunctionService {
             }
         }
         functionRepository.delete(function);
+        responseCache.invalidate(function.getName());
+        eventPublisher.publishEvent(FunctionEvent.of(FunctionEvent.Type.DELETED, function));
         log.info("Deleted function: {}", name);
     }
+
+    /**
+     * Rejects more warm instances than the function may run at all. Either
+     * value may be null for functions stored before the fields existed.
+     */
+    private static void validateInstances(Integer minInstances, Integer maxInstances) {
+        if (minInstances != null && maxInstances != null && minInstances > maxInstances) {
+            throw new InvalidFunctionConfigException("minInstances (" + minInstances
+                    + ") must not exceed maxInstances (" + maxInstances + ")");
+        }
+    }
 }
@@ -0,0 +1,119 @@
+package hskl.cn.serverless.registry.service;
+
+import hskl.cn.serverless.registry.dto.CreateFunctionRequest;
+import hskl.cn.serverless.registry.dto.CreateLayerRequest;
+import hskl.cn.serverless.registry.dto.FunctionEvent;
+import hskl.cn.serverless.registry.dto.LayerResponse;
+import hskl.cn.serverless.registry.exception.LayerAlreadyExistsException;
+import hskl.cn.serverless.registry.exception.LayerInUseException;
+import hskl.cn.serverless.registry.exception.LayerNotFoundException;
+import hskl.cn.serverless.registry.model.Function;
+import hskl.cn.serverless.registry.model.Layer;
+import hskl.cn.serverless.registry.repository.FunctionRepository;
+import hskl.cn.serverless.registry.repository.LayerRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Manages layers: shared library JARs that are uploaded once and attached to
+ * functions by name (see {@link CreateFunctionRequest#getLayers()}).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LayerService {
+
+    private final LayerRepository layerRepository;
+    private final FunctionRepository functionRepository;
+    private final StorageService storageService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final FunctionResponseCache responseCache;
+
+    @Transactional
+    public LayerResponse createLayer(CreateLayerRequest request) {
+        log.info("Creating layer: {}", request.getName());
+        if (layerRepository.existsByName(request.getName())) {
+            throw new LayerAlreadyExistsException(request.getName());
+        }
+        Layer layer = layerRepository.save(Layer.builder()
+                .name(request.getName())
+                .description(request.getDescription())
+                .build());
+        log.info("Created layer with id: {}", layer.getId());
+        return LayerResponse.from(layer);
+    }
+
+    @Transactional(readOnly = true)
+    public List<LayerResponse> getAllLayers() {
+        return layerRepository.findAll().stream()
+                .map(LayerResponse::from)
+                .toList();
+    }
+
+    @Transactional(readOnly = true)
+    public LayerResponse getLayerByName(String name) {
+        return layerRepository.findByName(name)
+                .map(LayerResponse::from)
+                .orElseThrow(() -> new LayerNotFoundException(name));
+    }
+
+    /**
+     * Uploads the layer's JAR. A changed JAR invalidates the runtime images of
+     * the functions using the layer, because jlink linked them for the old one.
+     */
+    @Transactional
+    public LayerResponse uploadJar(String name, MultipartFile file) {
+        log.info("Uploading JAR for layer: {}", name);
+        Layer layer = layerRepository.findByName(name)
+                .orElseThrow(() -> new LayerNotFoundException(name));
+        String jarHash = storageService.checksum(file);
+        String jarPath = storageService.uploadLayerJar(name, file);
+        boolean changed = !Objects.equals(jarHash, layer.getJarHash());
+        layer.setJarPath(jarPath);
+        layer.setJarSize(file.getSize());
+        layer.setJarHash(jarHash);
+        layer = layerRepository.save(layer);
+        if (changed) {
+            for (Function function : functionRepository.findByLayers_Name(name)) {
+                function.setRuntimeImage(null);
+                functionRepository.save(function);
+                responseCache.invalidate(function.getName());
+                eventPublisher.publishEvent(FunctionEvent.of(FunctionEvent.Type.UPDATED, function));
+            }
+        }
+        return LayerResponse.from(layer);
+    }
+
+    /**
+     * Deletes a layer and its JAR. Layers still attached to functions cannot
+     * be deleted.
+     */
+    @Transactional
+    public void deleteLayer(String name) {
+        log.info("Deleting layer: {}", name);
+        Layer layer = layerRepository.findByName(name)
+                .orElseThrow(() -> new LayerNotFoundException(name));
+        List<String> users = functionRepository.findByLayers_Name(name).stream()
+                .map(Function::getName)
+                .toList();
+        if (!users.isEmpty()) {
+            throw new LayerInUseException(name, users);
+        }
+        if (layer.getJarPath() != null) {
+            try {
+                storageService.deleteJar(layer.getJarPath());
+            } catch (Exception e) {
+                log.warn("Failed to delete JAR for layer {}: {}", name, e.getMessage());
+            }
+        }
+        layerRepository.delete(layer);
+        log.info("Deleted layer: {}", name);
+    }
+}
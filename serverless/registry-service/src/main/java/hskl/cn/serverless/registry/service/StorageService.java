@@ -11,12 +11,16 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.HexFormat;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class StorageService {
 
+    private static final String LAYER_PREFIX = "_layers/";
+
     private final MinioClient minioClient;
     private final MinioConfig minioConfig;
 
@@ -44,7 +48,18 @@ public class StorageService {
     }
 
     public String uploadJar(String functionName, MultipartFile file) {
-        String objectName = functionName + "/" + file.getOriginalFilename();
+        return upload(functionName, functionName + "/" + file.getOriginalFilename(), file);
+    }
+
+    /**
+     * Uploads a layer JAR below {@value #LAYER_PREFIX}, which cannot clash
+     * with a function name because those may not contain underscores.
+     */
+    public String uploadLayerJar(String layerName, MultipartFile file) {
+        return upload(layerName, LAYER_PREFIX + layerName + "/" + file.getOriginalFilename(), file);
+    }
+
+    private String upload(String owner, String objectName, MultipartFile file) {
         try {
             minioClient.putObject(
                     PutObjectArgs.builder()
@@ -54,14 +69,33 @@ public class StorageService {
                             .contentType("application/java-archive")
                             .build()
             );
-            log.info("Uploaded JAR for function '{}': {}", functionName, objectName);
+            log.info("Uploaded JAR for '{}': {}", owner, objectName);
             return objectName;
         } catch (Exception e) {
-            log.error("Failed to upload JAR for function '{}': {}", functionName, e.getMessage());
+            log.error("Failed to upload JAR for '{}': {}", owner, e.getMessage());
             throw new StorageException("Failed to upload JAR file", e);
         }
     }
 
+    /**
+     * Computes the SHA-256 of an uploaded JAR. The executor uses it to tell
+     * JAR versions apart, e.g. to retire warm containers after a re-upload.
+     */
+    public String checksum(MultipartFile file) {
+        try (InputStream is = file.getInputStream()) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (Exception e) {
+            log.error("Failed to compute checksum for '{}': {}", file.getOriginalFilename(), e.getMessage());
+            throw new StorageException("Failed to compute JAR checksum", e);
+        }
+    }
+
     public InputStream downloadJar(String objectPath) {
         try {
             return minioClient.getObject(
@@ -5,6 +5,7 @@ import hskl.cn.serverless.registry.dto.CreateFunctionRequest;
 import hskl.cn.serverless.registry.model.Function;
 import hskl.cn.serverless.registry.model.Function.FunctionStatus;
 import hskl.cn.serverless.registry.repository.FunctionRepository;
+import hskl.cn.serverless.registry.service.FunctionResponseCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -45,12 +46,16 @@ class FunctionControllerIntegrationTest {
     @Autowired
     private FunctionRepository functionRepository;
 
+    @Autowired
+    private FunctionResponseCache responseCache;
+
     @MockBean
     private MinioClient minioClient;
 
     @BeforeEach
     void setUp() {
         functionRepository.deleteAll();
+        responseCache.clear();
     }
 
 
@@ -221,6 +226,88 @@ class FunctionControllerIntegrationTest {
             mockMvc.perform(get("/api/v1/functions/name/{name}", "unknown"))
                     .andExpect(status().isNotFound());
         }
+
+        @Test
+        @DisplayName("should answer If-None-Match with 304 while the function is unchanged")
+        void shouldReturn304ForCurrentETag() throws Exception {
+            createAndSaveFunction("my-function");
+
+            String etag = mockMvc.perform(get("/api/v1/functions/name/{name}", "my-function"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().exists("ETag"))
+                    .andReturn().getResponse().getHeader("ETag");
+
+            mockMvc.perform(get("/api/v1/functions/name/{name}", "my-function").header("If-None-Match", etag))
+                    .andExpect(status().isNotModified())
+                    .andExpect(content().string(""));
+        }
+
+        @Test
+        @DisplayName("should serve a new ETag after the function was updated")
+        void shouldChangeETagOnUpdate() throws Exception {
+            createAndSaveFunction("my-function");
+            String etag = mockMvc.perform(get("/api/v1/functions/name/{name}", "my-function"))
+                    .andReturn().getResponse().getHeader("ETag");
+
+            mockMvc.perform(put("/api/v1/functions/name/{name}", "my-function")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"memoryMb\": 512}"))
+                    .andExpect(status().isOk());
+
+            mockMvc.perform(get("/api/v1/functions/name/{name}", "my-function").header("If-None-Match", etag))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("ETag", not(etag)))
+                    .andExpect(jsonPath("$.memoryMb").value(512));
+        }
+    }
+
+    @Nested
+    @DisplayName("PUT /api/v1/functions/name/{name}")
+    class UpdateFunctionEndpoint {
+
+        @Test
+        @DisplayName("should keep fields the request does not set")
+        void shouldKeepUnsetFields() throws Exception {
+            Function function = createFunction("my-function", "java17", "com.example.Handler::handle",
+                    FunctionStatus.PENDING);
+            function.setMinInstances(2);
+            function.setConcurrency(4);
+            functionRepository.save(function);
+
+            mockMvc.perform(put("/api/v1/functions/name/{name}", "my-function")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"timeoutSeconds\": 60}"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.timeoutSeconds").value(60))
+                    .andExpect(jsonPath("$.memoryMb").value(256))
+                    .andExpect(jsonPath("$.minInstances").value(2))
+                    .andExpect(jsonPath("$.maxInstances").value(10))
+                    .andExpect(jsonPath("$.concurrency").value(4));
+        }
+
+        @Test
+        @DisplayName("should return 400 for invalid values")
+        void shouldReturn400ForInvalidValues() throws Exception {
+            createAndSaveFunction("my-function");
+
+            mockMvc.perform(put("/api/v1/functions/name/{name}", "my-function")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"maxInstances\": 0}"))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.details.maxInstances").exists());
+        }
+
+        @Test
+        @DisplayName("should return 400 for more min instances than max instances")
+        void shouldReturn400ForMinAboveMax() throws Exception {
+            createAndSaveFunction("my-function");
+
+            mockMvc.perform(put("/api/v1/functions/name/{name}", "my-function")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"minInstances\": 11}"))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.message").value(containsString("minInstances")));
+        }
     }
 
     @Nested
@@ -1,12 +1,19 @@
 package hskl.cn.serverless.registry.service;
 
 import hskl.cn.serverless.registry.dto.CreateFunctionRequest;
+import hskl.cn.serverless.registry.dto.FunctionEvent;
 import hskl.cn.serverless.registry.dto.FunctionResponse;
+import hskl.cn.serverless.registry.dto.LayerResponse;
+import hskl.cn.serverless.registry.dto.RuntimeImageRequest;
 import hskl.cn.serverless.registry.exception.FunctionAlreadyExistsException;
 import hskl.cn.serverless.registry.exception.FunctionNotFoundException;
+import hskl.cn.serverless.registry.exception.InvalidFunctionConfigException;
+import hskl.cn.serverless.registry.exception.LayerNotFoundException;
 import hskl.cn.serverless.registry.model.Function;
 import hskl.cn.serverless.registry.model.Function.FunctionStatus;
+import hskl.cn.serverless.registry.model.Layer;
 import hskl.cn.serverless.registry.repository.FunctionRepository;
+import hskl.cn.serverless.registry.repository.LayerRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -15,6 +22,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
@@ -37,6 +45,15 @@ class FunctionServiceTest {
     @Mock
     private StorageService storageService;
 
+    @Mock
+    private LayerRepository layerRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private FunctionResponseCache responseCache;
+
     @InjectMocks
     private FunctionService functionService;
 
@@ -96,6 +113,170 @@ class FunctionServiceTest {
             verify(functionRepository).save(any(Function.class));
         }
 
+        @Test
+        @DisplayName("should apply defaults for instance settings that are not set")
+        void shouldApplyInstanceDefaults() {
+            // Given
+            createRequest = CreateFunctionRequest.builder()
+                    .name("test-function")
+                    .runtime("java17")
+                    .handler("com.example.Handler::handle")
+                    .build();
+            when(functionRepository.existsByName(anyString())).thenReturn(false);
+            when(functionRepository.save(any(Function.class))).thenAnswer(i -> i.getArgument(0));
+
+            // When
+            FunctionResponse response = functionService.createFunction(createRequest);
+
+            // Then
+            assertThat(response.getTimeoutSeconds()).isEqualTo(30);
+            assertThat(response.getMemoryMb()).isEqualTo(256);
+            assertThat(response.getMinInstances()).isEqualTo(0);
+            assertThat(response.getMaxInstances()).isEqualTo(10);
+            assertThat(response.getConcurrency()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("should store requested instance settings")
+        void shouldStoreRequestedInstanceSettings() {
+            // Given
+            createRequest.setMinInstances(2);
+            createRequest.setMaxInstances(4);
+            createRequest.setConcurrency(8);
+            when(functionRepository.existsByName(anyString())).thenReturn(false);
+            when(functionRepository.save(any(Function.class))).thenAnswer(i -> i.getArgument(0));
+
+            // When
+            FunctionResponse response = functionService.createFunction(createRequest);
+
+            // Then
+            assertThat(response.getMinInstances()).isEqualTo(2);
+            assertThat(response.getMaxInstances()).isEqualTo(4);
+            assertThat(response.getConcurrency()).isEqualTo(8);
+        }
+
+        @Test
+        @DisplayName("should reject more min instances than max instances")
+        void shouldRejectMinAboveMax() {
+            // Given
+            createRequest.setMinInstances(5);
+            createRequest.setMaxInstances(2);
+            when(functionRepository.existsByName(anyString())).thenReturn(false);
+
+            // When/Then
+            assertThatThrownBy(() -> functionService.createFunction(createRequest))
+                    .isInstanceOf(InvalidFunctionConfigException.class)
+                    .hasMessageContaining("minInstances");
+            verify(functionRepository, never()).save(any());
+        }
+
+        @Test
+        @DisplayName("should isolate in a container by default")
+        void shouldIsolateInContainerByDefault() {
+            // Given
+            when(functionRepository.existsByName(anyString())).thenReturn(false);
+            when(functionRepository.save(any(Function.class))).thenAnswer(i -> i.getArgument(0));
+
+            // When
+            FunctionResponse response = functionService.createFunction(createRequest);
+
+            // Then
+            assertThat(response.getIsolation()).isEqualTo("CONTAINER");
+        }
+
+        @Test
+        @DisplayName("should store requested isolation")
+        void shouldStoreRequestedIsolation() {
+            // Given
+            createRequest.setIsolation(Function.Isolation.CLASSLOADER);
+            when(functionRepository.existsByName(anyString())).thenReturn(false);
+            when(functionRepository.save(any(Function.class))).thenAnswer(i -> i.getArgument(0));
+
+            // When
+            FunctionResponse response = functionService.createFunction(createRequest);
+
+            // Then
+            assertThat(response.getIsolation()).isEqualTo("CLASSLOADER");
+        }
+
+        @Test
+        @DisplayName("should store deterministic flag")
+        void shouldStoreDeterministicFlag() {
+            // Given
+            createRequest.setDeterministic(true);
+            when(functionRepository.existsByName(anyString())).thenReturn(false);
+            when(functionRepository.save(any(Function.class))).thenAnswer(i -> i.getArgument(0));
+
+            // When
+            FunctionResponse response = functionService.createFunction(createRequest);
+
+            // Then
+            assertThat(response.getDeterministic()).isTrue();
+        }
+
+        @Test
+        @DisplayName("should choose the launch profile automatically by default")
+        void shouldUseAutoLaunchProfileByDefault() {
+            // Given
+            when(functionRepository.existsByName(anyString())).thenReturn(false);
+            when(functionRepository.save(any(Function.class))).thenAnswer(i -> i.getArgument(0));
+
+            // When
+            FunctionResponse response = functionService.createFunction(createRequest);
+
+            // Then
+            assertThat(response.getLaunchProfile()).isEqualTo("AUTO");
+        }
+
+        @Test
+        @DisplayName("should store requested launch profile")
+        void shouldStoreRequestedLaunchProfile() {
+            // Given
+            createRequest.setLaunchProfile(Function.LaunchProfile.THROUGHPUT);
+            when(functionRepository.existsByName(anyString())).thenReturn(false);
+            when(functionRepository.save(any(Function.class))).thenAnswer(i -> i.getArgument(0));
+
+            // When
+            FunctionResponse response = functionService.createFunction(createRequest);
+
+            // Then
+            assertThat(response.getLaunchProfile()).isEqualTo("THROUGHPUT");
+        }
+
+        @Test
+        @DisplayName("should attach requested layers in classpath order")
+        void shouldAttachLayersInOrder() {
+            // Given
+            Layer gson = Layer.builder().name("gson").jarHash("aaa").build();
+            Layer commons = Layer.builder().name("commons").jarHash("bbb").build();
+            createRequest.setLayers(List.of("gson", "commons"));
+            when(functionRepository.existsByName(anyString())).thenReturn(false);
+            when(layerRepository.findByName("gson")).thenReturn(Optional.of(gson));
+            when(layerRepository.findByName("commons")).thenReturn(Optional.of(commons));
+            when(functionRepository.save(any(Function.class))).thenAnswer(i -> i.getArgument(0));
+
+            // When
+            FunctionResponse response = functionService.createFunction(createRequest);
+
+            // Then
+            assertThat(response.getLayers()).extracting(LayerResponse::getName).containsExactly("gson", "commons");
+        }
+
+        @Test
+        @DisplayName("should reject unknown layers")
+        void shouldRejectUnknownLayer() {
+            // Given
+            createRequest.setLayers(List.of("missing"));
+            when(functionRepository.existsByName(anyString())).thenReturn(false);
+            when(layerRepository.findByName("missing")).thenReturn(Optional.empty());
+
+            // When/Then
+            assertThatThrownBy(() -> functionService.createFunction(createRequest))
+                    .isInstanceOf(LayerNotFoundException.class)
+                    .hasMessageContaining("missing");
+            verify(functionRepository, never()).save(any());
+        }
+
         @Test
         @DisplayName("should throw exception when function already exists")
         void shouldThrowExceptionWhenFunctionExists() {
@@ -233,6 +414,10 @@ class FunctionServiceTest {
             assertThat(response.getJarPath()).isEqualTo("test-function/test.jar");
             assertThat(response.getJarSize()).isEqualTo(1024L);
             verify(storageService).uploadJar(eq("test-function"), any(MultipartFile.class));
+            verify(responseCache).invalidate("test-function");
+            verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof FunctionEvent e
+                    && e.getType() == FunctionEvent.Type.JAR_UPLOADED
+                    && "test-function/test.jar".equals(e.getJarPath())));
         }
 
         @Test
@@ -249,6 +434,134 @@ class FunctionServiceTest {
         }
     }
 
+    @Nested
+    @DisplayName("updateFunctionByName")
+    class UpdateFunctionByNameTests {
+
+        @Test
+        @DisplayName("should change only the fields set in the request")
+        void shouldKeepUnsetFields() {
+            // Given
+            testFunction.setMinInstances(2);
+            testFunction.setMaxInstances(4);
+            testFunction.setConcurrency(8);
+            when(functionRepository.findByName("test-function")).thenReturn(Optional.of(testFunction));
+            when(functionRepository.save(any(Function.class))).thenAnswer(i -> i.getArgument(0));
+
+            // When
+            FunctionResponse response = functionService.updateFunctionByName("test-function",
+                    CreateFunctionRequest.builder().memoryMb(512).build());
+
+            // Then
+            assertThat(response.getMemoryMb()).isEqualTo(512);
+            assertThat(response.getTimeoutSeconds()).isEqualTo(30);
+            assertThat(response.getMinInstances()).isEqualTo(2);
+            assertThat(response.getMaxInstances()).isEqualTo(4);
+            assertThat(response.getConcurrency()).isEqualTo(8);
+        }
+
+        @Test
+        @DisplayName("should update instance settings")
+        void shouldUpdateInstanceSettings() {
+            // Given
+            when(functionRepository.findByName("test-function")).thenReturn(Optional.of(testFunction));
+            when(functionRepository.save(any(Function.class))).thenAnswer(i -> i.getArgument(0));
+
+            // When
+            FunctionResponse response = functionService.updateFunctionByName("test-function",
+                    CreateFunctionRequest.builder().minInstances(3).maxInstances(6).concurrency(2).build());
+
+            // Then
+            assertThat(response.getMinInstances()).isEqualTo(3);
+            assertThat(response.getMaxInstances()).isEqualTo(6);
+            assertThat(response.getConcurrency()).isEqualTo(2);
+        }
+
+        @Test
+        @DisplayName("should keep the isolation when the request does not set it")
+        void shouldKeepIsolation() {
+            // Given
+            testFunction.setIsolation(Function.Isolation.CLASSLOADER);
+            when(functionRepository.findByName("test-function")).thenReturn(Optional.of(testFunction));
+            when(functionRepository.save(any(Function.class))).thenAnswer(i -> i.getArgument(0));
+
+            // When
+            FunctionResponse response = functionService.updateFunctionByName("test-function",
+                    CreateFunctionRequest.builder().memoryMb(512).build());
+
+            // Then
+            assertThat(response.getIsolation()).isEqualTo("CLASSLOADER");
+        }
+
+        @Test
+        @DisplayName("should keep the launch profile when the request does not set it")
+        void shouldKeepLaunchProfile() {
+            // Given
+            testFunction.setLaunchProfile(Function.LaunchProfile.THROUGHPUT);
+            when(functionRepository.findByName("test-function")).thenReturn(Optional.of(testFunction));
+            when(functionRepository.save(any(Function.class))).thenAnswer(i -> i.getArgument(0));
+
+            // When
+            FunctionResponse response = functionService.updateFunctionByName("test-function",
+                    CreateFunctionRequest.builder().memoryMb(512).build());
+
+            // Then
+            assertThat(response.getLaunchProfile()).isEqualTo("THROUGHPUT");
+        }
+
+        @Test
+        @DisplayName("should reject min instances above the stored max instances")
+        void shouldRejectMinAboveStoredMax() {
+            // Given
+            testFunction.setMaxInstances(4);
+            when(functionRepository.findByName("test-function")).thenReturn(Optional.of(testFunction));
+
+            // When/Then
+            assertThatThrownBy(() -> functionService.updateFunctionByName("test-function",
+                    CreateFunctionRequest.builder().minInstances(5).build()))
+                    .isInstanceOf(InvalidFunctionConfigException.class);
+            assertThat(testFunction.getMinInstances()).isEqualTo(0);
+            verify(functionRepository, never()).save(any());
+        }
+    }
+
+    @Nested
+    @DisplayName("updateRuntimeImage")
+    class UpdateRuntimeImageTests {
+
+        @Test
+        @DisplayName("should record runtime image built for the current JAR")
+        void shouldRecordRuntimeImage() {
+            // Given
+            testFunction.setJarHash("hash-v1");
+            when(functionRepository.findByName("test-function")).thenReturn(Optional.of(testFunction));
+            when(functionRepository.save(any(Function.class))).thenAnswer(i -> i.getArgument(0));
+
+            // When
+            FunctionResponse response = functionService.updateRuntimeImage("test-function",
+                    new RuntimeImageRequest("fn-jre-test-function:hash-v1", "hash-v1"));
+
+            // Then
+            assertThat(response.getRuntimeImage()).isEqualTo("fn-jre-test-function:hash-v1");
+        }
+
+        @Test
+        @DisplayName("should ignore runtime image built for a replaced JAR")
+        void shouldIgnoreOutdatedRuntimeImage() {
+            // Given
+            testFunction.setJarHash("hash-v2");
+            when(functionRepository.findByName("test-function")).thenReturn(Optional.of(testFunction));
+
+            // When
+            FunctionResponse response = functionService.updateRuntimeImage("test-function",
+                    new RuntimeImageRequest("fn-jre-test-function:hash-v1", "hash-v1"));
+
+            // Then
+            assertThat(response.getRuntimeImage()).isNull();
+            verify(functionRepository, never()).save(any());
+        }
+    }
+
     @Nested
     @DisplayName("deleteFunction")
     class DeleteFunctionTests {
@@ -268,6 +581,8 @@ class FunctionServiceTest {
             // Then
             verify(storageService).deleteJar("test-function/test.jar");
             verify(functionRepository).delete(testFunction);
+            verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof FunctionEvent e
+                    && e.getType() == FunctionEvent.Type.DELETED && "test-function".equals(e.getFunctionName())));
         }
 
         @Test
@@ -0,0 +1,159 @@
+package hskl.cn.serverless.registry.service;
+
+import hskl.cn.serverless.registry.dto.CreateLayerRequest;
+import hskl.cn.serverless.registry.dto.LayerResponse;
+import hskl.cn.serverless.registry.exception.LayerAlreadyExistsException;
+import hskl.cn.serverless.registry.exception.LayerInUseException;
+import hskl.cn.serverless.registry.model.Function;
+import hskl.cn.serverless.registry.model.Layer;
+import hskl.cn.serverless.registry.repository.FunctionRepository;
+import hskl.cn.serverless.registry.repository.LayerRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("LayerService Tests")
+class LayerServiceTest {
+
+    @Mock
+    private LayerRepository layerRepository;
+
+    @Mock
+    private FunctionRepository functionRepository;
+
+    @Mock
+    private StorageService storageService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private FunctionResponseCache responseCache;
+
+    @InjectMocks
+    private LayerService layerService;
+
+    private Layer testLayer;
+
+    @BeforeEach
+    void setUp() {
+        testLayer = Layer.builder()
+                .id(UUID.randomUUID())
+                .name("gson")
+                .jarPath("_layers/gson/gson-2.10.1.jar")
+                .jarHash("old-hash")
+                .build();
+    }
+
+    @Nested
+    @DisplayName("createLayer")
+    class CreateLayerTests {
+
+        @Test
+        @DisplayName("should create layer successfully")
+        void shouldCreateLayer() {
+            // Given
+            when(layerRepository.existsByName("gson")).thenReturn(false);
+            when(layerRepository.save(any(Layer.class))).thenAnswer(i -> i.getArgument(0));
+
+            // When
+            LayerResponse response = layerService.createLayer(
+                    CreateLayerRequest.builder().name("gson").description("Gson").build());
+
+            // Then
+            assertThat(response.getName()).isEqualTo("gson");
+            assertThat(response.getJarPath()).isNull();
+        }
+
+        @Test
+        @DisplayName("should throw exception when layer already exists")
+        void shouldRejectDuplicate() {
+            // Given
+            when(layerRepository.existsByName("gson")).thenReturn(true);
+
+            // When/Then
+            assertThatThrownBy(() -> layerService.createLayer(CreateLayerRequest.builder().name("gson").build()))
+                    .isInstanceOf(LayerAlreadyExistsException.class);
+        }
+    }
+
+    @Nested
+    @DisplayName("uploadJar")
+    class UploadJarTests {
+
+        @Test
+        @DisplayName("should clear runtime images of functions using a changed layer")
+        void shouldInvalidateRuntimeImages() {
+            // Given
+            MultipartFile file = mock(MultipartFile.class);
+            when(file.getSize()).thenReturn(1024L);
+            Function function = Function.builder().name("hello").runtimeImage("fn-jre-hello:abc").build();
+            when(layerRepository.findByName("gson")).thenReturn(Optional.of(testLayer));
+            when(storageService.checksum(file)).thenReturn("new-hash");
+            when(storageService.uploadLayerJar("gson", file)).thenReturn("_layers/gson/gson-2.11.0.jar");
+            when(layerRepository.save(any(Layer.class))).thenAnswer(i -> i.getArgument(0));
+            when(functionRepository.findByLayers_Name("gson")).thenReturn(List.of(function));
+
+            // When
+            LayerResponse response = layerService.uploadJar("gson", file);
+
+            // Then
+            assertThat(response.getJarHash()).isEqualTo("new-hash");
+            assertThat(response.getJarPath()).isEqualTo("_layers/gson/gson-2.11.0.jar");
+            assertThat(function.getRuntimeImage()).isNull();
+            verify(functionRepository).save(function);
+        }
+    }
+
+    @Nested
+    @DisplayName("deleteLayer")
+    class DeleteLayerTests {
+
+        @Test
+        @DisplayName("should delete unused layer and its JAR")
+        void shouldDeleteUnusedLayer() {
+            // Given
+            when(layerRepository.findByName("gson")).thenReturn(Optional.of(testLayer));
+            when(functionRepository.findByLayers_Name("gson")).thenReturn(List.of());
+
+            // When
+            layerService.deleteLayer("gson");
+
+            // Then
+            verify(storageService).deleteJar("_layers/gson/gson-2.10.1.jar");
+            verify(layerRepository).delete(testLayer);
+        }
+
+        @Test
+        @DisplayName("should refuse to delete a layer that is still in use")
+        void shouldRefuseLayerInUse() {
+            // Given
+            when(layerRepository.findByName("gson")).thenReturn(Optional.of(testLayer));
+            when(functionRepository.findByLayers_Name("gson"))
+                    .thenReturn(List.of(Function.builder().name("hello").build()));
+
+            // When/Then
+            assertThatThrownBy(() -> layerService.deleteLayer("gson"))
+                    .isInstanceOf(LayerInUseException.class)
+                    .hasMessageContaining("hello");
+            verify(layerRepository, never()).delete(any());
+        }
+    }
+}